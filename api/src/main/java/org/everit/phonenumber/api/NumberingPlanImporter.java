@@ -0,0 +1,54 @@
+package org.everit.phonenumber.api;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.io.Reader;
+
+import org.everit.phonenumber.api.dto.NumberingPlanImportResult;
+
+/**
+ * Service for loading the countries and areas of a numbering plan in bulk.
+ */
+public interface NumberingPlanImporter {
+
+    /**
+     * Importing a numbering plan in CSV format in one transaction. Every line of the plan describes an area with the
+     * following comma separated columns: countryISO3166A2Code, countryCallCode, iddPrefix, nddPrefix,
+     * areaCallNumber, areaName, subscriberNumberLength. A column may be quoted with double quotes, the empty lines
+     * and the lines starting with <code>#</code> are skipped.
+     * <p>
+     * The plan is compared with the stored data of the countries listed in the plan. The missing countries and
+     * areas are saved, the changed countries and areas are updated and the active areas of the listed countries
+     * which are not in the plan are inactivated. The countries not listed in the plan are not modified.
+     * 
+     * @param reader
+     *            the reader of the CSV content. Cannot be <code>null</code>. Not closed by the method.
+     * @return the number of the modified records.
+     * 
+     * @throws IllegalArgumentException
+     *             if the reader is <code>null</code>.
+     * @throws InvalidNumberingPlanException
+     *             if a line of the plan is invalid. Nothing is modified in this case.
+     */
+    NumberingPlanImportResult importNumberingPlan(final Reader reader);
+
+}
@@ -21,12 +21,20 @@ package org.everit.phonenumber.api;
  * MA 02110-1301  USA
  */
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import org.everit.phonenumber.api.dto.Area;
 import org.everit.phonenumber.api.dto.CallablePhoneNumber;
 import org.everit.phonenumber.api.dto.Country;
+import org.everit.phonenumber.api.dto.ParsedPhoneNumber;
+import org.everit.phonenumber.api.dto.PhoneNumberBatchSaveResult;
+import org.everit.phonenumber.api.dto.PhoneNumberData;
+import org.everit.phonenumber.api.dto.VerificationRequestBatchResult;
+import org.everit.phonenumber.api.util.PhoneNumberSet;
 import org.everit.verifiabledata.api.enums.VerificationLengthBase;
 
 /**
@@ -35,7 +43,9 @@ import org.everit.verifiabledata.api.enums.VerificationLengthBase;
 public interface PhoneNumberService {
 
     /**
-     * Create verification request and send SMS to verify the phone number.
+     * Create verification request and send SMS to verify the phone number. No request is created for the suppressed
+     * phone numbers, see {@link #replaceSuppressedPhoneNumbers(PhoneNumberSet)}. The number of the requests per phone
+     * number and per country is limited, the excess requests are rejected before any database work.
      * 
      * @param phoneNumberId
      *            the id of the phone number. Must be exist.
@@ -53,12 +63,130 @@ public interface PhoneNumberService {
      *             if the messageTemplate or tokenValidityEndData or verificationLengthBase is <code>null</code>.
      * @throws NoSuchPhoneNumberException
      *             if not exist the phone number record.
+     * @throws SuppressedPhoneNumberException
+     *             if the phone number is suppressed.
+     * @throws VerificationRateLimitExceededException
+     *             if too many requests were created for the phone number or its country recently.
      * @throws NonPositiveVerificationLength
      *             if the verificationLength is not positive.
      */
     void createVerificationRequestViaSMS(long phoneNumberId, String messagetemplate,
             Date tokenValidityEndDate, long verificationLength, VerificationLengthBase verificationLengthBase);
 
+    /**
+     * Create verification requests and send SMS to verify the phone numbers with the same message template and
+     * validity. The requests are created in one transaction and the messages are sent after the commit. The
+     * duplicated ids are processed only once. After the commit the calling thread hands the messages over to the SMS
+     * delivery and waits while the SMS queue is full, so a large batch returns at the speed of the SMS gateway.
+     * 
+     * @param phoneNumberIds
+     *            the ids of the phone numbers. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @param messagetemplate
+     *            the messageTemplate. Replace the $acceptToken to the verify token and the $rejectToken to the reject
+     *            token, if exist this variables in the messageTemplate. Cannot be <code>null</code>.
+     * @param tokenValidityEndDate
+     *            the token validity end date. Cannot be <code>null</code>.
+     * @param verificationLength
+     *            the verification length in seconds. Must be positive.
+     * @param verificationLengthBase
+     *            the {@link VerificationLengthBase}. Cannot be <code>null</code>.
+     * @return the {@link VerificationRequestBatchResult} listing the ids of the phone numbers which do not exist, are
+     *         suppressed or exceeded the rate limit in separate lists, no verification request is created for them. The
+     *         ids of the phone numbers whose SMS could not be queued for the delivery are added to its undelivered
+     *         list after the commit, their verification requests exist.
+     * 
+     * @throws IllegalArgumentException
+     *             if the phoneNumberIds or messageTemplate or tokenValidityEndData or verificationLengthBase is
+     *             <code>null</code> or the phoneNumberIds contains <code>null</code>.
+     * @throws NonPositiveVerificationLength
+     *             if the verificationLength is not positive.
+     */
+    VerificationRequestBatchResult createVerificationRequestsViaSMS(Collection<Long> phoneNumberIds,
+            String messagetemplate, Date tokenValidityEndDate, long verificationLength,
+            VerificationLengthBase verificationLengthBase);
+
+    /**
+     * Fills the E.164 number of the phone numbers saved before the E.164 number was stored. Call it repeatedly, each
+     * call in its own transaction, until it returns <code>0</code>. The phone numbers without E.164 number are not
+     * found by the {@link #findPhoneNumberIdsByE164(String)} method.
+     * 
+     * @param maxResultCount
+     *            the maximum number of the phone numbers filled by the call. Must be positive.
+     * @return the number of the filled phone numbers.
+     * 
+     * @throws IllegalArgumentException
+     *             if the maxResultCount is not positive.
+     */
+    int fillMissingE164Numbers(final int maxResultCount);
+
+    /**
+     * Returns the id of the phone number with the given parts or saves the phone number if it does not exist. The
+     * concurrent calls with the same parts return the same id, the first call saves the phone number and the others
+     * wait for its transaction. The calls creating phone numbers in the same area are serialized until the end of
+     * their transactions.
+     * 
+     * @param areaId
+     *            the id of the area. Must be exist active area.
+     * @param subscriberNumber
+     *            the number of subscriber. Cannot be <code>null</code>.
+     * @param extension
+     *            the extension number. May be <code>null</code>.
+     * @return the id of the found or saved phone number.
+     * 
+     * @throws IllegalArgumentException
+     *             if the subscriber number parameter is <code>null</code>.
+     * @throws NoSuchAreaException
+     *             if not exist active area.
+     * @throws InvalidPhoneNumberException
+     *             if the number length is not correct.
+     */
+    long findOrCreatePhoneNumber(final long areaId, final String subscriberNumber, final String extension);
+
+    /**
+     * Finds the phone number by its parts. The <code>null</code> extension matches the phone numbers without
+     * extension only.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @param subscriberNumber
+     *            the number of subscriber. Cannot be <code>null</code>.
+     * @param extension
+     *            the extension number. May be <code>null</code>.
+     * @return the id of the phone number or <code>null</code> if not exist.
+     * 
+     * @throws IllegalArgumentException
+     *             if the subscriber number parameter is <code>null</code>.
+     */
+    Long findPhoneNumberId(final long areaId, final String subscriberNumber, final String extension);
+
+    /**
+     * Finds the phone numbers by the E.164 number: "+", the country call code, the area call number and the
+     * subscriber number, without separators. The phone numbers of the same number with different extensions are all
+     * returned.
+     * 
+     * @param e164Number
+     *            the E.164 number. Cannot be <code>null</code>.
+     * @return the ids of the phone numbers in the order of the ids. If there is no such phone number return empty
+     *         list.
+     * 
+     * @throws IllegalArgumentException
+     *             if the e164Number parameter is <code>null</code>.
+     */
+    List<Long> findPhoneNumberIdsByE164(final String e164Number);
+
+    /**
+     * Finds the phone numbers by the E.164 numbers in bulk. See {@link #findPhoneNumberIdsByE164(String)}.
+     * 
+     * @param e164Numbers
+     *            the E.164 numbers. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @return the ids of the phone numbers in the order of the ids by the E.164 numbers. The not existing numbers are
+     *         missing from the map.
+     * 
+     * @throws IllegalArgumentException
+     *             if the e164Numbers parameter is <code>null</code> or contains <code>null</code>.
+     */
+    Map<String, List<Long>> findPhoneNumberIdsByE164(final Collection<String> e164Numbers);
+
     /**
      * Finds and getting the area based on country code and area call number.
      * 
@@ -100,6 +228,41 @@ public interface PhoneNumberService {
      */
     CallablePhoneNumber getCallablePhoneNumberByVerifiableId(long verifiablePhoneId);
 
+    /**
+     * Getting the callable phone numbers based on the phone number ids in bulk. The callable phone numbers of the same
+     * area share the country and area parts.
+     * 
+     * @param phoneNumberIds
+     *            the ids of the phone numbers. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @return the {@link CallablePhoneNumber} objects by the phone number ids. The not existing ids are missing from
+     *         the map.
+     * 
+     * @throws IllegalArgumentException
+     *             if the phoneNumberIds parameter is <code>null</code> or contains <code>null</code>.
+     */
+    Map<Long, CallablePhoneNumber> getCallablePhoneNumbers(final Collection<Long> phoneNumberIds);
+
+    /**
+     * Getting the callable phone numbers in the order of the phone number ids, starting after the given id. Walking
+     * through all of the phone numbers page by page (passing the last id of the previous page) costs the same for
+     * every page, independently of the number of the preceding phone numbers. The phone numbers saved during the walk
+     * with greater id than the last returned id are included in the later pages. See also
+     * {@link org.everit.phonenumber.api.util.CallablePhoneNumberIterator}.
+     * 
+     * @param afterPhoneNumberId
+     *            the phone numbers with greater id are returned. Use <code>0</code> to start from the first phone
+     *            number.
+     * @param maxResultCount
+     *            the maximum number of the returned phone numbers. Must be positive.
+     * @return the {@link CallablePhoneNumber} objects by the phone number ids in the order of the ids. If there is no
+     *         more phone number return empty map.
+     * 
+     * @throws IllegalArgumentException
+     *             if the maxResultCount is not positive.
+     */
+    SortedMap<Long, CallablePhoneNumber> getCallablePhoneNumbersAfter(final long afterPhoneNumberId,
+            final int maxResultCount);
+
     /**
      * Getting the country based on countryISO3166A2Code.
      * 
@@ -114,23 +277,60 @@ public interface PhoneNumberService {
     Country getCountry(final String countryISO3166A2Code);
 
     /**
-     * Deactivating the area. Cancel all number which belongs to area.
+     * Loads the phone numbers into a {@link PhoneNumberSet} in bulk, for example to build the suppressed phone
+     * numbers. The phone numbers are queried in chunks, only the set is held in the memory.
+     * 
+     * @param phoneNumberIds
+     *            the ids of the phone numbers. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @return the set of the phone numbers. The not existing phone numbers are missing from the set.
+     * 
+     * @throws IllegalArgumentException
+     *             if the phoneNumberIds parameter is <code>null</code> or contains <code>null</code> or a phone number
+     *             cannot be encoded (see {@link PhoneNumberSet#encode(String, String, String)}), so no phone number
+     *             is left out of a suppression list silently.
+     */
+    PhoneNumberSet getPhoneNumberSet(final Collection<Long> phoneNumberIds);
+
+    /**
+     * Deactivating the area. Cancel all number which belongs to area. Inactivating an inactive area has no effect.
      * 
      * @param areaId
      *            the id of the area.
+     * 
+     * @throws NoSuchAreaException
+     *             if not exist the area.
      */
     void inactivateArea(final long areaId);
 
     /**
-     * Deactivating the country. Cancel all number which belongs to country.
+     * Deactivating the areas with one bulk update. The ids of the not existing or already inactive areas are
+     * ignored.
+     * 
+     * @param areaIds
+     *            the ids of the areas. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @return the number of the inactivated areas.
+     * 
+     * @throws IllegalArgumentException
+     *             if the areaIds is <code>null</code> or contains <code>null</code>.
+     */
+    int inactivateAreas(final Collection<Long> areaIds);
+
+    /**
+     * Deactivating the country and all of its areas. Cancel all number which belongs to country. Inactivating an
+     * inactive country has no effect, the same way as {@link #inactivateArea(long)}.
      * 
      * @param countryISO3166A2Code
-     *            the country code.
+     *            the country code. Cannot be <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the countryISO3166A2Code is <code>null</code>.
+     * @throws NoSuchCountryException
+     *             if not exist the country.
      */
     void inactivateCountry(final String countryISO3166A2Code);
 
     /**
-     * Listing active areas based on the countryISO3166A2Code.
+     * Listing active areas based on the countryISO3166A2Code in the order of the call numbers.
      * 
      * @param countryISO3166A2Code
      *            the country code. Cannot be null.
@@ -147,7 +347,28 @@ public interface PhoneNumberService {
             final Long maxResultCount);
 
     /**
-     * Listing the available active country.
+     * Listing active areas based on the countryISO3166A2Code in the order of the call numbers, starting after the
+     * given call number. Unlike the offset based paging of
+     * {@link #listActiveAreasBycountryISO3166A2Code(String, Long, Long)}, the pages are stable if areas are saved
+     * during the paging (an area saved before the last returned call number is not returned, the others are
+     * returned in the later pages) and the cost of a page does not depend on its position.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code. Cannot be <code>null</code>.
+     * @param afterCallNumber
+     *            the last call number of the previous page or <code>null</code> to get the first page.
+     * @param maxResultCount
+     *            the maximum number of elements. Must be positive.
+     * @return the {@link Area}s in list. If no one return empty list.
+     * 
+     * @throws IllegalArgumentException
+     *             if country code parameter is <code>null</code> or the maxResultCount is not positive.
+     */
+    List<Area> listActiveAreasBycountryISO3166A2CodeAfter(final String countryISO3166A2Code,
+            final String afterCallNumber, final int maxResultCount);
+
+    /**
+     * Listing the available active country in the order of the country codes.
      * 
      * @param startPosition
      *            the first index of the list or null if not defined.
@@ -157,6 +378,68 @@ public interface PhoneNumberService {
      */
     List<Country> listActiveCountries(final Long startPosition, final Long maxResultCount);
 
+    /**
+     * Listing the available active country in the order of the country codes, starting after the given country code.
+     * The pages are stable if countries are saved during the paging.
+     * 
+     * @param afterCountryISO3166A2Code
+     *            the last country code of the previous page or <code>null</code> to get the first page.
+     * @param maxResultCount
+     *            the maximum number of elements. Must be positive.
+     * @return the Country list. If no one return empty list.
+     * 
+     * @throws IllegalArgumentException
+     *             if the maxResultCount is not positive.
+     */
+    List<Country> listActiveCountriesAfter(final String afterCountryISO3166A2Code, final int maxResultCount);
+
+    /**
+     * Parsing the raw phone number into country, area and subscriber parts. The number is resolved in international
+     * form, the leading "+" or any IDD prefix of the known countries is accepted. Spaces, dashes, dots, slashes and
+     * parentheses are skipped. Only the active countries and areas are considered.
+     * 
+     * @param rawNumber
+     *            the raw phone number. Cannot be <code>null</code>.
+     * @return the {@link ParsedPhoneNumber} object if the number belongs to an active area and the length of the
+     *         subscriber number is correct, otherwise <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the rawNumber parameter is <code>null</code>.
+     */
+    ParsedPhoneNumber parse(final String rawNumber);
+
+    /**
+     * Parsing the raw phone number into country, area and subscriber parts, dialed from the given country. The IDD
+     * prefix of the caller country introduces the international form and the NDD prefix of the caller country
+     * introduces the national form. A number starting with "+" is always resolved in international form.
+     * 
+     * @param rawNumber
+     *            the raw phone number. Cannot be <code>null</code>.
+     * @param callerCountryISO3166A2Code
+     *            the country code of the caller. If <code>null</code> or not an active country, the number is parsed
+     *            as by {@link #parse(String)}.
+     * @return the {@link ParsedPhoneNumber} object if the number belongs to an active area and the length of the
+     *         subscriber number is correct, otherwise <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the rawNumber parameter is <code>null</code>.
+     */
+    ParsedPhoneNumber parse(final String rawNumber, final String callerCountryISO3166A2Code);
+
+    /**
+     * Replaces the suppressed phone numbers. The verification requests are not created for the suppressed phone
+     * numbers. The suppressed phone numbers are held in the memory of the service instance, every instance of the
+     * cluster has to be given the set. No phone number is suppressed by default.
+     * 
+     * @param suppressedPhoneNumbers
+     *            the suppressed phone numbers. Cannot be <code>null</code>, use {@link PhoneNumberSet#EMPTY} to
+     *            suppress nothing.
+     * 
+     * @throws IllegalArgumentException
+     *             if the suppressedPhoneNumbers parameter is <code>null</code>.
+     */
+    void replaceSuppressedPhoneNumbers(final PhoneNumberSet suppressedPhoneNumbers);
+
     /**
      * Create and saving the area.
      * 
@@ -201,7 +484,10 @@ public interface PhoneNumberService {
             final String ndd, final String countryCallCode);
 
     /**
-     * Saving the phone number in the database.
+     * Saving the phone number in the database. The same area, subscriber number and extension cannot be saved
+     * twice, use the {@link #findOrCreatePhoneNumber(long, String, String)} method if the phone number may exist.
+     * The area is locked until the end of the transaction, so the concurrent saves of the same phone number cannot
+     * both pass the duplicate check.
      * 
      * @param areaId
      *            the id of the area. Must be exist area.
@@ -217,9 +503,30 @@ public interface PhoneNumberService {
      *             if not exist area.
      * @throws InvalidPhoneNumberException
      *             if the number length is not correct.
+     * @throws DuplicatePhoneNumberException
+     *             if the phone number with the same area, subscriber number and extension already exists.
      */
     long savePhoneNumber(final long areaId, final String subscriberNumber, final String extension);
 
+    /**
+     * Saving the phone numbers in the database in batch. The invalid phone numbers are not saved, the reason of the
+     * failure is returned instead of throwing an exception, so the valid phone numbers are saved anyway. The areas
+     * of the phone numbers are locked until the end of the transaction and the existing phone numbers are probed in
+     * chunks.
+     * 
+     * @param phoneNumbers
+     *            the data of the phone numbers. Cannot be <code>null</code>.
+     * @return the {@link PhoneNumberBatchSaveResult} object. The failure of a phone number is an
+     *         IllegalArgumentException if the data or the subscriber number is <code>null</code>, a
+     *         NoSuchAreaException if not exist the area, an InvalidPhoneNumberException if the subscriber number
+     *         length is not correct or a DuplicatePhoneNumberException if the phone number already exists or occurs
+     *         earlier in the list.
+     * 
+     * @throws IllegalArgumentException
+     *             if the phoneNumbers parameter is <code>null</code>.
+     */
+    PhoneNumberBatchSaveResult savePhoneNumbers(final List<PhoneNumberData> phoneNumbers);
+
     /**
      * Updating the phone number. All verification request which belong to the phone number and the old phone number to
      * be invalid.
@@ -241,6 +548,8 @@ public interface PhoneNumberService {
      *             if not exist area.
      * @throws InvalidPhoneNumberException
      *             if the subscriber number length is not correct.
+     * @throws DuplicatePhoneNumberException
+     *             if an other phone number with the same area, subscriber number and extension already exists.
      */
     void updatePhoneNumber(final long phoneNumberId, final long areaId, final String subscriberNumber,
             final String extension);
@@ -0,0 +1,64 @@
+package org.everit.phonenumber.api;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Map;
+
+import org.everit.phonenumber.api.dto.OperationStatistics;
+import org.everit.phonenumber.api.enums.PhoneNumberConfirmationResult;
+
+/**
+ * The runtime statistics of the {@link PhoneNumberService}. Available as an OSGi service and as an MXBean.
+ */
+public interface PhoneNumberServiceMetrics {
+
+    /**
+     * Returns the number of the phone number confirmations by the result.
+     * 
+     * @return the number of the confirmations by the {@link PhoneNumberConfirmationResult}.
+     */
+    Map<PhoneNumberConfirmationResult, Long> getConfirmationResultCounts();
+
+    /**
+     * Returns the inclusive upper bounds of the latency histogram buckets in nanoseconds. The histograms have one
+     * more bucket for the latencies above the last bound.
+     * 
+     * @return the upper bounds of the buckets in ascending order.
+     */
+    long[] getLatencyBucketBounds();
+
+    /**
+     * Returns the statistics of the operations. The keys are the method names of the {@link PhoneNumberService}
+     * and the names of the measured stages of the methods: <code>velocity.merge</code> for the rendering of the
+     * message, <code>velocity.mergeAll</code> for the rendering of a batch of messages and
+     * <code>smsSender.sendMessage</code> for the sending of the SMS.
+     * 
+     * @return the statistics by the name of the operation, sorted by the name.
+     */
+    Map<String, OperationStatistics> getOperationStatistics();
+
+    /**
+     * Resets all statistics to zero.
+     */
+    void reset();
+
+}
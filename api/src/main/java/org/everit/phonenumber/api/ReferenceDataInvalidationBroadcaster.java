@@ -0,0 +1,58 @@
+package org.everit.phonenumber.api;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+/**
+ * Propagates the modifications of the countries and areas between the nodes of a cluster that share the same
+ * database. Every node caching the reference data registers a listener, the node modifying the reference data calls
+ * the {@link #broadcast()} method and the listeners of the other nodes are notified within a delay bounded by the
+ * implementation.
+ */
+public interface ReferenceDataInvalidationBroadcaster {
+
+    /**
+     * Registering a listener. The listener is notified about the modifications of every node, including the
+     * modifications of the current node.
+     * 
+     * @param listener
+     *            the listener. Cannot be <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the listener is <code>null</code>.
+     */
+    void addListener(final ReferenceDataInvalidationListener listener);
+
+    /**
+     * Announcing a modification of the reference data. Must be called in the transaction of the modification if
+     * there is one, the other nodes are notified only if the transaction commits.
+     */
+    void broadcast();
+
+    /**
+     * Removing a registered listener. Nothing happens if the listener is not registered.
+     * 
+     * @param listener
+     *            the listener.
+     */
+    void removeListener(final ReferenceDataInvalidationListener listener);
+
+}
@@ -0,0 +1,134 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+/**
+ * The number of the records modified by a numbering plan import.
+ */
+public class NumberingPlanImportResult {
+
+    /**
+     * The number of the saved countries.
+     */
+    private int insertedCountryCount;
+
+    /**
+     * The number of the updated or reactivated countries.
+     */
+    private int updatedCountryCount;
+
+    /**
+     * The number of the saved areas.
+     */
+    private int insertedAreaCount;
+
+    /**
+     * The number of the updated areas.
+     */
+    private int updatedAreaCount;
+
+    /**
+     * The number of the inactivated areas.
+     */
+    private int inactivatedAreaCount;
+
+    /**
+     * The number of the areas of the plan which did not change.
+     */
+    private int unchangedAreaCount;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param insertedCountryCount
+     *            the number of the saved countries.
+     * @param updatedCountryCount
+     *            the number of the updated or reactivated countries.
+     * @param insertedAreaCount
+     *            the number of the saved areas.
+     * @param updatedAreaCount
+     *            the number of the updated areas.
+     * @param inactivatedAreaCount
+     *            the number of the inactivated areas.
+     * @param unchangedAreaCount
+     *            the number of the areas of the plan which did not change.
+     */
+    public NumberingPlanImportResult(final int insertedCountryCount, final int updatedCountryCount,
+            final int insertedAreaCount, final int updatedAreaCount, final int inactivatedAreaCount,
+            final int unchangedAreaCount) {
+        this.insertedCountryCount = insertedCountryCount;
+        this.updatedCountryCount = updatedCountryCount;
+        this.insertedAreaCount = insertedAreaCount;
+        this.updatedAreaCount = updatedAreaCount;
+        this.inactivatedAreaCount = inactivatedAreaCount;
+        this.unchangedAreaCount = unchangedAreaCount;
+    }
+
+    public int getInactivatedAreaCount() {
+        return inactivatedAreaCount;
+    }
+
+    public int getInsertedAreaCount() {
+        return insertedAreaCount;
+    }
+
+    public int getInsertedCountryCount() {
+        return insertedCountryCount;
+    }
+
+    public int getUnchangedAreaCount() {
+        return unchangedAreaCount;
+    }
+
+    public int getUpdatedAreaCount() {
+        return updatedAreaCount;
+    }
+
+    public int getUpdatedCountryCount() {
+        return updatedCountryCount;
+    }
+
+    public void setInactivatedAreaCount(final int inactivatedAreaCount) {
+        this.inactivatedAreaCount = inactivatedAreaCount;
+    }
+
+    public void setInsertedAreaCount(final int insertedAreaCount) {
+        this.insertedAreaCount = insertedAreaCount;
+    }
+
+    public void setInsertedCountryCount(final int insertedCountryCount) {
+        this.insertedCountryCount = insertedCountryCount;
+    }
+
+    public void setUnchangedAreaCount(final int unchangedAreaCount) {
+        this.unchangedAreaCount = unchangedAreaCount;
+    }
+
+    public void setUpdatedAreaCount(final int updatedAreaCount) {
+        this.updatedAreaCount = updatedAreaCount;
+    }
+
+    public void setUpdatedCountryCount(final int updatedCountryCount) {
+        this.updatedCountryCount = updatedCountryCount;
+    }
+
+}
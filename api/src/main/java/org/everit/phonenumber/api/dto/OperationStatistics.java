@@ -0,0 +1,135 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Map;
+
+/**
+ * The statistics of a measured operation.
+ */
+public class OperationStatistics {
+
+    /**
+     * The number of the invocations.
+     */
+    private long count;
+
+    /**
+     * The number of the invocations which threw an exception.
+     */
+    private long errorCount;
+
+    /**
+     * The number of the failed invocations by the simple name of the exception class.
+     */
+    private Map<String, Long> errorCountsByType;
+
+    /**
+     * The sum of the latencies in nanoseconds.
+     */
+    private long totalNanos;
+
+    /**
+     * The highest latency in nanoseconds.
+     */
+    private long maxNanos;
+
+    /**
+     * The number of the invocations by the latency histogram buckets.
+     */
+    private long[] latencyHistogram;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param count
+     *            the number of the invocations.
+     * @param errorCount
+     *            the number of the invocations which threw an exception.
+     * @param errorCountsByType
+     *            the number of the failed invocations by the simple name of the exception class.
+     * @param totalNanos
+     *            the sum of the latencies in nanoseconds.
+     * @param maxNanos
+     *            the highest latency in nanoseconds.
+     * @param latencyHistogram
+     *            the number of the invocations by the latency histogram buckets.
+     */
+    public OperationStatistics(final long count, final long errorCount, final Map<String, Long> errorCountsByType,
+            final long totalNanos, final long maxNanos, final long[] latencyHistogram) {
+        this.count = count;
+        this.errorCount = errorCount;
+        this.errorCountsByType = errorCountsByType;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public Map<String, Long> getErrorCountsByType() {
+        return errorCountsByType;
+    }
+
+    public long[] getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public void setCount(final long count) {
+        this.count = count;
+    }
+
+    public void setErrorCount(final long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public void setErrorCountsByType(final Map<String, Long> errorCountsByType) {
+        this.errorCountsByType = errorCountsByType;
+    }
+
+    public void setLatencyHistogram(final long[] latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    public void setMaxNanos(final long maxNanos) {
+        this.maxNanos = maxNanos;
+    }
+
+    public void setTotalNanos(final long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+}
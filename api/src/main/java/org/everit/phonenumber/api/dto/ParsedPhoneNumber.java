@@ -0,0 +1,117 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+/**
+ * The parts of a parsed phone number.
+ */
+public class ParsedPhoneNumber {
+
+    /**
+     * The country code.
+     */
+    private String countryISO3166A2Code;
+
+    /**
+     * The country call code.
+     */
+    private String countryCallCode;
+
+    /**
+     * The id of the area.
+     */
+    private long areaId;
+
+    /**
+     * The country area call number.
+     */
+    private String areaCallNumber;
+
+    /**
+     * The number of the subscriber.
+     */
+    private String subscriberNumber;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code.
+     * @param countryCallCode
+     *            the country call code.
+     * @param areaId
+     *            the id of the area.
+     * @param areaCallNumber
+     *            the country area call number.
+     * @param subscriberNumber
+     *            the number of the subscriber.
+     */
+    public ParsedPhoneNumber(final String countryISO3166A2Code, final String countryCallCode, final long areaId,
+            final String areaCallNumber, final String subscriberNumber) {
+        this.countryISO3166A2Code = countryISO3166A2Code;
+        this.countryCallCode = countryCallCode;
+        this.areaId = areaId;
+        this.areaCallNumber = areaCallNumber;
+        this.subscriberNumber = subscriberNumber;
+    }
+
+    public String getAreaCallNumber() {
+        return areaCallNumber;
+    }
+
+    public long getAreaId() {
+        return areaId;
+    }
+
+    public String getCountryCallCode() {
+        return countryCallCode;
+    }
+
+    public String getCountryISO3166A2Code() {
+        return countryISO3166A2Code;
+    }
+
+    public String getSubscriberNumber() {
+        return subscriberNumber;
+    }
+
+    public void setAreaCallNumber(final String areaCallNumber) {
+        this.areaCallNumber = areaCallNumber;
+    }
+
+    public void setAreaId(final long areaId) {
+        this.areaId = areaId;
+    }
+
+    public void setCountryCallCode(final String countryCallCode) {
+        this.countryCallCode = countryCallCode;
+    }
+
+    public void setCountryISO3166A2Code(final String countryISO3166A2Code) {
+        this.countryISO3166A2Code = countryISO3166A2Code;
+    }
+
+    public void setSubscriberNumber(final String subscriberNumber) {
+        this.subscriberNumber = subscriberNumber;
+    }
+
+}
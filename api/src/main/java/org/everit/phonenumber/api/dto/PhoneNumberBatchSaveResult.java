@@ -0,0 +1,72 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of saving phone numbers in batch.
+ */
+public class PhoneNumberBatchSaveResult {
+
+    /**
+     * The ids of the saved phone numbers in the order of the saved data. The element is <code>null</code> if the
+     * phone number at the same index was not saved.
+     */
+    private List<Long> phoneNumberIds;
+
+    /**
+     * The reason of the failures by the index of the phone numbers which were not saved.
+     */
+    private Map<Integer, RuntimeException> failures;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param phoneNumberIds
+     *            the ids of the saved phone numbers in the order of the saved data.
+     * @param failures
+     *            the reason of the failures by the index of the phone numbers which were not saved.
+     */
+    public PhoneNumberBatchSaveResult(final List<Long> phoneNumberIds, final Map<Integer, RuntimeException> failures) {
+        this.phoneNumberIds = phoneNumberIds;
+        this.failures = failures;
+    }
+
+    public Map<Integer, RuntimeException> getFailures() {
+        return failures;
+    }
+
+    public List<Long> getPhoneNumberIds() {
+        return phoneNumberIds;
+    }
+
+    public void setFailures(final Map<Integer, RuntimeException> failures) {
+        this.failures = failures;
+    }
+
+    public void setPhoneNumberIds(final List<Long> phoneNumberIds) {
+        this.phoneNumberIds = phoneNumberIds;
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+/**
+ * The data of a phone number to save.
+ */
+public class PhoneNumberData {
+
+    /**
+     * The id of the area.
+     */
+    private long areaId;
+
+    /**
+     * The number of the subscriber.
+     */
+    private String subscriberNumber;
+
+    /**
+     * The extension number. Optional.
+     */
+    private String extension;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @param subscriberNumber
+     *            the number of the subscriber.
+     * @param extension
+     *            the extension number. Optional.
+     */
+    public PhoneNumberData(final long areaId, final String subscriberNumber, final String extension) {
+        this.areaId = areaId;
+        this.subscriberNumber = subscriberNumber;
+        this.extension = extension;
+    }
+
+    public long getAreaId() {
+        return areaId;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getSubscriberNumber() {
+        return subscriberNumber;
+    }
+
+    public void setAreaId(final long areaId) {
+        this.areaId = areaId;
+    }
+
+    public void setExtension(final String extension) {
+        this.extension = extension;
+    }
+
+    public void setSubscriberNumber(final String subscriberNumber) {
+        this.subscriberNumber = subscriberNumber;
+    }
+
+}
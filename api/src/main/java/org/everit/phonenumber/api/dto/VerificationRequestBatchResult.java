@@ -0,0 +1,106 @@
+package org.everit.phonenumber.api.dto;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.List;
+
+/**
+ * The result of creating verification requests in batch. The ids of the phone numbers without a verification request
+ * are listed by the reason.
+ */
+public class VerificationRequestBatchResult {
+
+    /**
+     * The ids of the phone numbers which do not exist.
+     */
+    private List<Long> missingPhoneNumberIds;
+
+    /**
+     * The ids of the phone numbers which are suppressed.
+     */
+    private List<Long> suppressedPhoneNumberIds;
+
+    /**
+     * The ids of the phone numbers which exceeded the rate limit of the phone number or of the country call code.
+     */
+    private List<Long> rateLimitedPhoneNumberIds;
+
+    /**
+     * The ids of the phone numbers whose verification request is created, but the SMS could not be handed over to the
+     * delivery because the SMS queue stayed full. The list is filled after the commit of the transaction.
+     */
+    private List<Long> undeliveredPhoneNumberIds;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param missingPhoneNumberIds
+     *            the ids of the phone numbers which do not exist.
+     * @param suppressedPhoneNumberIds
+     *            the ids of the phone numbers which are suppressed.
+     * @param rateLimitedPhoneNumberIds
+     *            the ids of the phone numbers which exceeded the rate limit.
+     * @param undeliveredPhoneNumberIds
+     *            the ids of the phone numbers whose SMS could not be handed over to the delivery.
+     */
+    public VerificationRequestBatchResult(final List<Long> missingPhoneNumberIds,
+            final List<Long> suppressedPhoneNumberIds, final List<Long> rateLimitedPhoneNumberIds,
+            final List<Long> undeliveredPhoneNumberIds) {
+        this.missingPhoneNumberIds = missingPhoneNumberIds;
+        this.suppressedPhoneNumberIds = suppressedPhoneNumberIds;
+        this.rateLimitedPhoneNumberIds = rateLimitedPhoneNumberIds;
+        this.undeliveredPhoneNumberIds = undeliveredPhoneNumberIds;
+    }
+
+    public List<Long> getMissingPhoneNumberIds() {
+        return missingPhoneNumberIds;
+    }
+
+    public List<Long> getRateLimitedPhoneNumberIds() {
+        return rateLimitedPhoneNumberIds;
+    }
+
+    public List<Long> getSuppressedPhoneNumberIds() {
+        return suppressedPhoneNumberIds;
+    }
+
+    public List<Long> getUndeliveredPhoneNumberIds() {
+        return undeliveredPhoneNumberIds;
+    }
+
+    public void setMissingPhoneNumberIds(final List<Long> missingPhoneNumberIds) {
+        this.missingPhoneNumberIds = missingPhoneNumberIds;
+    }
+
+    public void setRateLimitedPhoneNumberIds(final List<Long> rateLimitedPhoneNumberIds) {
+        this.rateLimitedPhoneNumberIds = rateLimitedPhoneNumberIds;
+    }
+
+    public void setSuppressedPhoneNumberIds(final List<Long> suppressedPhoneNumberIds) {
+        this.suppressedPhoneNumberIds = suppressedPhoneNumberIds;
+    }
+
+    public void setUndeliveredPhoneNumberIds(final List<Long> undeliveredPhoneNumberIds) {
+        this.undeliveredPhoneNumberIds = undeliveredPhoneNumberIds;
+    }
+
+}
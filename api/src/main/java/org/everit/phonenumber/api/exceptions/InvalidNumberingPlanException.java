@@ -0,0 +1,45 @@
+package org.everit.phonenumber.api.exceptions;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+/**
+ * InvalidNumberingPlanException is throw when a line of the imported numbering plan is invalid.
+ */
+public class InvalidNumberingPlanException extends RuntimeException {
+
+    /**
+     * Generated serial version UID.
+     */
+    private static final long serialVersionUID = 2896405519276613409L;
+
+    /**
+     * The constructor with "The numbering plan is invalid at line [lineNumber]: [reason]" error message.
+     * 
+     * @param lineNumber
+     *            the number of the invalid line, starting from 1.
+     * @param reason
+     *            the reason of the error.
+     */
+    public InvalidNumberingPlanException(final int lineNumber, final String reason) {
+        super("The numbering plan is invalid at line " + lineNumber + ": " + reason);
+    }
+}
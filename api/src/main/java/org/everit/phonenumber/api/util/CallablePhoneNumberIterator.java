@@ -0,0 +1,113 @@
+package org.everit.phonenumber.api.util;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+
+import org.everit.phonenumber.api.PhoneNumberService;
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+
+/**
+ * Iterating over all of the phone numbers in the order of the phone number ids. The phone numbers are loaded page by
+ * page with {@link PhoneNumberService#getCallablePhoneNumbersAfter(long, int)}, so only one page is held in the
+ * memory and every page is loaded in its own transaction if the service is transactional.
+ */
+public class CallablePhoneNumberIterator implements Iterator<Map.Entry<Long, CallablePhoneNumber>> {
+
+    /**
+     * The {@link PhoneNumberService} instance.
+     */
+    private final PhoneNumberService phoneNumberService;
+
+    /**
+     * The maximum number of the phone numbers loaded at once.
+     */
+    private final int pageSize;
+
+    /**
+     * The id of the last loaded phone number.
+     */
+    private long lastPhoneNumberId = 0;
+
+    /**
+     * The iterator of the current page or <code>null</code> if no page is loaded yet.
+     */
+    private Iterator<Map.Entry<Long, CallablePhoneNumber>> currentPage;
+
+    /**
+     * <code>true</code> if the current page is the last one.
+     */
+    private boolean lastPage = false;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param phoneNumberService
+     *            the {@link PhoneNumberService} instance. Cannot be <code>null</code>.
+     * @param pageSize
+     *            the maximum number of the phone numbers loaded at once. Must be positive.
+     * 
+     * @throws IllegalArgumentException
+     *             if the phoneNumberService is <code>null</code> or the pageSize is not positive.
+     */
+    public CallablePhoneNumberIterator(final PhoneNumberService phoneNumberService, final int pageSize) {
+        if ((phoneNumberService == null) || (pageSize < 1)) {
+            throw new IllegalArgumentException("The phoneNumberService is null or the pageSize is not positive.");
+        }
+        this.phoneNumberService = phoneNumberService;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ((currentPage == null) || !currentPage.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            SortedMap<Long, CallablePhoneNumber> page = phoneNumberService.getCallablePhoneNumbersAfter(
+                    lastPhoneNumberId, pageSize);
+            lastPage = page.size() < pageSize;
+            if (page.isEmpty()) {
+                return false;
+            }
+            lastPhoneNumberId = page.lastKey();
+            currentPage = page.entrySet().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<Long, CallablePhoneNumber> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,343 @@
+package org.everit.phonenumber.api.util;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+import org.everit.phonenumber.api.dto.Country;
+
+/**
+ * Formatting the {@link CallablePhoneNumber} into a caller supplied {@link StringBuilder} or {@link CharBuffer}. The
+ * parts of the phone number are appended one by one, no intermediate string is created. The extension is not part of
+ * the formats, it cannot be dialed. The <code>null</code> IDD and NDD prefixes are formatted as empty prefixes.
+ */
+public final class PhoneNumberFormatter {
+
+    /**
+     * The prefix of the E.164 form.
+     */
+    private static final char E164_PREFIX = '+';
+
+    /**
+     * Appends the char to the target.
+     * 
+     * @param target
+     *            the {@link StringBuilder} or {@link CharBuffer}.
+     * @param c
+     *            the char to append.
+     */
+    private static void append(final Appendable target, final char c) {
+        try {
+            target.append(c);
+        } catch (IOException e) {
+            // neither StringBuilder nor CharBuffer throws IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends the characters to the target.
+     * 
+     * @param target
+     *            the {@link StringBuilder} or {@link CharBuffer}.
+     * @param csq
+     *            the characters to append. <code>null</code> appends nothing.
+     */
+    private static void append(final Appendable target, final CharSequence csq) {
+        if (csq == null) {
+            return;
+        }
+        try {
+            target.append(csq);
+        } catch (IOException e) {
+            // neither StringBuilder nor CharBuffer throws IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends the phone number in the form dialed from the caller country: the national form if the phone number is
+     * in the caller country, otherwise the international form with the IDD prefix of the caller country.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param callerCountry
+     *            the country of the caller. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or callerCountry or target is <code>null</code>.
+     * @throws java.nio.BufferOverflowException
+     *             if the remaining space of the target is not enough.
+     */
+    public static CharBuffer appendDialable(final CallablePhoneNumber callablePhoneNumber,
+            final Country callerCountry, final CharBuffer target) {
+        PhoneNumberFormatter.writeDialable(callablePhoneNumber, callerCountry, target);
+        return target;
+    }
+
+    /**
+     * Appends the phone number in the form dialed from the caller country: the national form if the phone number is
+     * in the caller country, otherwise the international form with the IDD prefix of the caller country.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param callerCountry
+     *            the country of the caller. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or callerCountry or target is <code>null</code>.
+     */
+    public static StringBuilder appendDialable(final CallablePhoneNumber callablePhoneNumber,
+            final Country callerCountry, final StringBuilder target) {
+        PhoneNumberFormatter.writeDialable(callablePhoneNumber, callerCountry, target);
+        return target;
+    }
+
+    /**
+     * Appends the E.164 form of the phone number: "+", the country call code, the area call number and the subscriber
+     * number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     * @throws java.nio.BufferOverflowException
+     *             if the remaining space of the target is not enough.
+     */
+    public static CharBuffer appendE164(final CallablePhoneNumber callablePhoneNumber, final CharBuffer target) {
+        PhoneNumberFormatter.writeE164(callablePhoneNumber, target);
+        return target;
+    }
+
+    /**
+     * Appends the E.164 form of the phone number: "+", the country call code, the area call number and the subscriber
+     * number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     */
+    public static StringBuilder appendE164(final CallablePhoneNumber callablePhoneNumber,
+            final StringBuilder target) {
+        PhoneNumberFormatter.writeE164(callablePhoneNumber, target);
+        return target;
+    }
+
+    /**
+     * Appends the international form of the phone number: the IDD prefix, the country call code, the area call number
+     * and the subscriber number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param iddPrefix
+     *            the IDD prefix of the country the phone number is dialed from. <code>null</code> means empty
+     *            prefix.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     * @throws java.nio.BufferOverflowException
+     *             if the remaining space of the target is not enough.
+     */
+    public static CharBuffer appendInternational(final CallablePhoneNumber callablePhoneNumber,
+            final String iddPrefix, final CharBuffer target) {
+        PhoneNumberFormatter.writeInternational(callablePhoneNumber, iddPrefix, target);
+        return target;
+    }
+
+    /**
+     * Appends the international form of the phone number: the IDD prefix, the country call code, the area call number
+     * and the subscriber number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param iddPrefix
+     *            the IDD prefix of the country the phone number is dialed from. <code>null</code> means empty
+     *            prefix.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     */
+    public static StringBuilder appendInternational(final CallablePhoneNumber callablePhoneNumber,
+            final String iddPrefix, final StringBuilder target) {
+        PhoneNumberFormatter.writeInternational(callablePhoneNumber, iddPrefix, target);
+        return target;
+    }
+
+    /**
+     * Appends the national form of the phone number: the NDD prefix of the country of the phone number, the area
+     * call number and the subscriber number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     * @throws java.nio.BufferOverflowException
+     *             if the remaining space of the target is not enough.
+     */
+    public static CharBuffer appendNational(final CallablePhoneNumber callablePhoneNumber, final CharBuffer target) {
+        PhoneNumberFormatter.writeNational(callablePhoneNumber, target);
+        return target;
+    }
+
+    /**
+     * Appends the national form of the phone number: the NDD prefix of the country of the phone number, the area
+     * call number and the subscriber number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @param target
+     *            the target. Cannot be <code>null</code>.
+     * @return the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     */
+    public static StringBuilder appendNational(final CallablePhoneNumber callablePhoneNumber,
+            final StringBuilder target) {
+        PhoneNumberFormatter.writeNational(callablePhoneNumber, target);
+        return target;
+    }
+
+    /**
+     * Checks the parameters shared by all formats.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number.
+     * @param target
+     *            the target.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber or target is <code>null</code>.
+     */
+    private static void checkParameters(final CallablePhoneNumber callablePhoneNumber, final Appendable target) {
+        if ((callablePhoneNumber == null) || (target == null)) {
+            throw new IllegalArgumentException("The callablePhoneNumber or target parameter is null.");
+        }
+    }
+
+    /**
+     * Writes the dialable form.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number.
+     * @param callerCountry
+     *            the country of the caller.
+     * @param target
+     *            the target.
+     */
+    private static void writeDialable(final CallablePhoneNumber callablePhoneNumber, final Country callerCountry,
+            final Appendable target) {
+        if (callerCountry == null) {
+            throw new IllegalArgumentException("The callerCountry parameter is null.");
+        }
+        PhoneNumberFormatter.checkParameters(callablePhoneNumber, target);
+        String countryCallCode = callablePhoneNumber.getCountryCallCode();
+        if ((countryCallCode != null) && countryCallCode.equals(callerCountry.getCountryCallCode())) {
+            PhoneNumberFormatter.writeNational(callablePhoneNumber, target);
+        } else {
+            PhoneNumberFormatter.writeInternational(callablePhoneNumber, callerCountry.getIddPrefix(), target);
+        }
+    }
+
+    /**
+     * Writes the E.164 form.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number.
+     * @param target
+     *            the target.
+     */
+    private static void writeE164(final CallablePhoneNumber callablePhoneNumber, final Appendable target) {
+        PhoneNumberFormatter.checkParameters(callablePhoneNumber, target);
+        PhoneNumberFormatter.append(target, E164_PREFIX);
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getCountryCallCode());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getAreaCallNumber());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getSubscriberNumber());
+    }
+
+    /**
+     * Writes the international form.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number.
+     * @param iddPrefix
+     *            the IDD prefix.
+     * @param target
+     *            the target.
+     */
+    private static void writeInternational(final CallablePhoneNumber callablePhoneNumber, final String iddPrefix,
+            final Appendable target) {
+        PhoneNumberFormatter.checkParameters(callablePhoneNumber, target);
+        PhoneNumberFormatter.append(target, iddPrefix);
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getCountryCallCode());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getAreaCallNumber());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getSubscriberNumber());
+    }
+
+    /**
+     * Writes the national form.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number.
+     * @param target
+     *            the target.
+     */
+    private static void writeNational(final CallablePhoneNumber callablePhoneNumber, final Appendable target) {
+        PhoneNumberFormatter.checkParameters(callablePhoneNumber, target);
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getCountryNDD());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getAreaCallNumber());
+        PhoneNumberFormatter.append(target, callablePhoneNumber.getSubscriberNumber());
+    }
+
+    /**
+     * The utility class is not instantiated.
+     */
+    private PhoneNumberFormatter() {
+    }
+}
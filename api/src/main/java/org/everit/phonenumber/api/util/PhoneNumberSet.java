@@ -0,0 +1,232 @@
+package org.everit.phonenumber.api.util;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Arrays;
+
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+
+/**
+ * Immutable set of phone numbers for the blocklists and suppression lists. Every phone number (country call code,
+ * area call number and subscriber number, without the extension) is encoded into a primitive <code>long</code> and the
+ * set is stored as a sorted <code>long</code> array, so a million phone numbers take 8 MB of memory. The membership
+ * check is a binary search that allocates nothing.
+ */
+public final class PhoneNumberSet {
+
+    /**
+     * The empty set.
+     */
+    public static final PhoneNumberSet EMPTY = new PhoneNumberSet(new long[0]);
+
+    /**
+     * The value returned by the encode methods if the phone number cannot be encoded.
+     */
+    public static final long NOT_ENCODABLE = -1L;
+
+    /**
+     * The maximum number of the digits of an encodable phone number.
+     */
+    public static final int MAX_DIGIT_COUNT = 18;
+
+    /**
+     * The radix of the digits.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * The smallest code of a leading <code>1</code> followed by {@link #MAX_DIGIT_COUNT} digits. No more digit can be
+     * appended to a code that is not less than this.
+     */
+    private static final long FULL_CODE = 1000000000000000000L;
+
+    /**
+     * Encodes the phone number.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @return the encoded phone number or {@link #NOT_ENCODABLE}.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber parameter is <code>null</code>.
+     */
+    public static long encode(final CallablePhoneNumber callablePhoneNumber) {
+        if (callablePhoneNumber == null) {
+            throw new IllegalArgumentException("The callablePhoneNumber parameter is null.");
+        }
+        return PhoneNumberSet.encode(callablePhoneNumber.getCountryCallCode(),
+                callablePhoneNumber.getAreaCallNumber(), callablePhoneNumber.getSubscriberNumber());
+    }
+
+    /**
+     * Encodes the phone number. The code is the decimal number of a leading <code>1</code> followed by the digits of
+     * the parts, so the leading zeros are kept and the same digits give the same code independently of the
+     * boundaries of the parts. The separator characters (for example the "-" of the "1-340" call code) are skipped,
+     * the same way as the numbering plan reads the codes. The encoding allocates nothing.
+     * 
+     * @param countryCallCode
+     *            the country call code. Cannot be <code>null</code>.
+     * @param areaCallNumber
+     *            the area call number. Cannot be <code>null</code>.
+     * @param subscriberNumber
+     *            the number of the subscriber. Cannot be <code>null</code>.
+     * @return the encoded phone number or {@link #NOT_ENCODABLE} if the parts contain letters or more than
+     *         {@link #MAX_DIGIT_COUNT} digits together.
+     * 
+     * @throws IllegalArgumentException
+     *             if the countryCallCode or areaCallNumber or subscriberNumber is <code>null</code>.
+     */
+    public static long encode(final String countryCallCode, final String areaCallNumber,
+            final String subscriberNumber) {
+        if ((countryCallCode == null) || (areaCallNumber == null) || (subscriberNumber == null)) {
+            throw new IllegalArgumentException("The countryCallCode or areaCallNumber or subscriberNumber is null.");
+        }
+        long code = PhoneNumberSet.encodeDigits(1L, countryCallCode);
+        if (code != NOT_ENCODABLE) {
+            code = PhoneNumberSet.encodeDigits(code, areaCallNumber);
+        }
+        if (code != NOT_ENCODABLE) {
+            code = PhoneNumberSet.encodeDigits(code, subscriberNumber);
+        }
+        return code;
+    }
+
+    /**
+     * Appends the digits to the code. The characters that are neither digits nor letters are skipped.
+     * 
+     * @param code
+     *            the code of the preceding digits.
+     * @param digits
+     *            the digits to append.
+     * @return the code or {@link #NOT_ENCODABLE} if the digits contain letter or the code would have more than
+     *         {@link #MAX_DIGIT_COUNT} digits.
+     */
+    private static long encodeDigits(final long code, final String digits) {
+        long result = code;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                if (Character.isLetter(c)) {
+                    return NOT_ENCODABLE;
+                }
+                continue;
+            }
+            if (result >= FULL_CODE) {
+                return NOT_ENCODABLE;
+            }
+            result = (result * RADIX) + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * The encoded phone numbers in ascending order without duplicates.
+     */
+    private final long[] encodedPhoneNumbers;
+
+    /**
+     * The simple constructor. The array is copied, it can be modified after the call.
+     * 
+     * @param encodedPhoneNumbers
+     *            the encoded phone numbers in any order, may contain duplicates. Cannot be <code>null</code> and
+     *            cannot contain {@link #NOT_ENCODABLE}.
+     * 
+     * @throws IllegalArgumentException
+     *             if the encodedPhoneNumbers is <code>null</code> or contains {@link #NOT_ENCODABLE}.
+     */
+    public PhoneNumberSet(final long[] encodedPhoneNumbers) {
+        if (encodedPhoneNumbers == null) {
+            throw new IllegalArgumentException("The encodedPhoneNumbers parameter is null.");
+        }
+        long[] sorted = Arrays.copyOf(encodedPhoneNumbers, encodedPhoneNumbers.length);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] == NOT_ENCODABLE) {
+                throw new IllegalArgumentException("The encodedPhoneNumbers parameter contains NOT_ENCODABLE.");
+            }
+            if ((size == 0) || (sorted[size - 1] != sorted[i])) {
+                sorted[size] = sorted[i];
+                size++;
+            }
+        }
+        if (size < sorted.length) {
+            sorted = Arrays.copyOf(sorted, size);
+        }
+        this.encodedPhoneNumbers = sorted;
+    }
+
+    /**
+     * Checks the phone number. The extension is not checked.
+     * 
+     * @param callablePhoneNumber
+     *            the phone number. Cannot be <code>null</code>.
+     * @return <code>true</code> if the set contains the phone number.
+     * 
+     * @throws IllegalArgumentException
+     *             if the callablePhoneNumber parameter is <code>null</code>.
+     */
+    public boolean contains(final CallablePhoneNumber callablePhoneNumber) {
+        return contains(PhoneNumberSet.encode(callablePhoneNumber));
+    }
+
+    /**
+     * Checks the encoded phone number.
+     * 
+     * @param encodedPhoneNumber
+     *            the encoded phone number.
+     * @return <code>true</code> if the set contains the phone number, <code>false</code> for
+     *         {@link #NOT_ENCODABLE}.
+     */
+    public boolean contains(final long encodedPhoneNumber) {
+        return (encodedPhoneNumber != NOT_ENCODABLE)
+                && (Arrays.binarySearch(encodedPhoneNumbers, encodedPhoneNumber) >= 0);
+    }
+
+    /**
+     * Checks the phone number.
+     * 
+     * @param countryCallCode
+     *            the country call code. Cannot be <code>null</code>.
+     * @param areaCallNumber
+     *            the area call number. Cannot be <code>null</code>.
+     * @param subscriberNumber
+     *            the number of the subscriber. Cannot be <code>null</code>.
+     * @return <code>true</code> if the set contains the phone number.
+     * 
+     * @throws IllegalArgumentException
+     *             if the countryCallCode or areaCallNumber or subscriberNumber is <code>null</code>.
+     */
+    public boolean contains(final String countryCallCode, final String areaCallNumber,
+            final String subscriberNumber) {
+        return contains(PhoneNumberSet.encode(countryCallCode, areaCallNumber, subscriberNumber));
+    }
+
+    /**
+     * Returns the number of the phone numbers in the set.
+     * 
+     * @return the size of the set.
+     */
+    public int size() {
+        return encodedPhoneNumbers.length;
+    }
+}
@@ -0,0 +1,133 @@
+package org.everit.phonenumber.benchmarks;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+import org.everit.phonenumber.api.dto.Country;
+import org.everit.phonenumber.api.util.PhoneNumberFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the formatting of a phone number by string concatenation and by the {@link PhoneNumberFormatter} writing
+ * into a reused {@link StringBuilder} or {@link CharBuffer}. Run it with <code>-prof gc</code> to see the allocation
+ * rate of the ways.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhoneNumberFormatterBenchmark {
+
+    /**
+     * The capacity of the reused targets.
+     */
+    private static final int TARGET_CAPACITY = 32;
+
+    /**
+     * The formatted phone number.
+     */
+    private CallablePhoneNumber callablePhoneNumber;
+
+    /**
+     * The country of the caller, different from the country of the phone number.
+     */
+    private Country callerCountry;
+
+    /**
+     * The reused {@link StringBuilder} target.
+     */
+    private StringBuilder stringBuilder;
+
+    /**
+     * The reused {@link CharBuffer} target.
+     */
+    private CharBuffer charBuffer;
+
+    /**
+     * Formatting the E.164 form by concatenation.
+     * 
+     * @return the formatted phone number.
+     */
+    @Benchmark
+    public String concatenatedE164() {
+        return "+" + callablePhoneNumber.getCountryCallCode() + callablePhoneNumber.getAreaCallNumber()
+                + callablePhoneNumber.getSubscriberNumber();
+    }
+
+    /**
+     * Formatting the dialable form into the reused {@link CharBuffer}.
+     * 
+     * @return the target.
+     */
+    @Benchmark
+    public CharBuffer formattedDialableToCharBuffer() {
+        charBuffer.clear();
+        return PhoneNumberFormatter.appendDialable(callablePhoneNumber, callerCountry, charBuffer);
+    }
+
+    /**
+     * Formatting the dialable form into the reused {@link StringBuilder}.
+     * 
+     * @return the target.
+     */
+    @Benchmark
+    public StringBuilder formattedDialableToStringBuilder() {
+        stringBuilder.setLength(0);
+        return PhoneNumberFormatter.appendDialable(callablePhoneNumber, callerCountry, stringBuilder);
+    }
+
+    /**
+     * Formatting the E.164 form into the reused {@link StringBuilder}.
+     * 
+     * @return the target.
+     */
+    @Benchmark
+    public StringBuilder formattedE164ToStringBuilder() {
+        stringBuilder.setLength(0);
+        return PhoneNumberFormatter.appendE164(callablePhoneNumber, stringBuilder);
+    }
+
+    /**
+     * Creating the phone number and the targets.
+     */
+    @Setup
+    public void setUp() {
+        callablePhoneNumber = new CallablePhoneNumber("00", "06", "36", "20", "1234567", null);
+        callerCountry = new Country("DE", "00", "0", "49", true);
+        stringBuilder = new StringBuilder(TARGET_CAPACITY);
+        charBuffer = CharBuffer.allocate(TARGET_CAPACITY);
+    }
+}
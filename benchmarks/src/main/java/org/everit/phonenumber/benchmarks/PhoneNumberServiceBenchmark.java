@@ -0,0 +1,532 @@
+package org.everit.phonenumber.benchmarks;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import org.everit.phonenumber.api.PhoneVerificationResult;
+import org.everit.phonenumber.api.dto.Area;
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+import org.everit.phonenumber.api.dto.PhoneNumberBatchSaveResult;
+import org.everit.phonenumber.api.dto.PhoneNumberData;
+import org.everit.phonenumber.api.dto.VerificationRequestBatchResult;
+import org.everit.phonenumber.core.NumberingPlanHolder;
+import org.everit.phonenumber.core.PhoneNumberServiceImpl;
+import org.everit.phonenumber.core.PhoneNumberServiceMetricsImpl;
+import org.everit.phonenumber.core.SMSDispatcher;
+import org.everit.phonenumber.core.VelocityTemplateCache;
+import org.everit.phonenumber.core.VerificationRateLimiter;
+import org.everit.phonenumber.core.VerificationTokenIndex;
+import org.everit.verifiabledata.api.enums.VerificationLengthBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the hot paths of the {@link PhoneNumberServiceImpl} against the embedded H2 database. Every
+ * benchmark method runs the service call in its own resource local transaction, like the container managed
+ * transaction of the blueprint does. The <code>WithoutTransaction</code> variants of the read methods run without a
+ * transaction, like the <code>Supports</code> transaction attribute of the read methods does when the caller has no
+ * transaction. The SMS gateway and the verifiable data service are replaced by in-memory stubs.
+ * <p>
+ * The benchmarks run outside of the OSGi container, so the difference of the two variants is only the cost of a
+ * resource local begin and commit on the embedded database. The cost of the JTA transaction manager, the enlistment
+ * of the connection and the transaction interceptor of the blueprint is not measured, so the saving of the
+ * <code>Supports</code> attribute in the container is at least this difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhoneNumberServiceBenchmark {
+
+    /**
+     * The database and the shared components of the services, like the singletons of the blueprint.
+     */
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        /**
+         * The {@link EntityManagerFactory} of the benchmark database.
+         */
+        private EntityManagerFactory entityManagerFactory;
+
+        /**
+         * The {@link NumberingPlanHolder} instance.
+         */
+        private NumberingPlanHolder numberingPlanHolder;
+
+        /**
+         * The {@link VelocityTemplateCache} instance.
+         */
+        private VelocityTemplateCache velocityTemplateCache;
+
+        /**
+         * The {@link VerificationTokenIndex} instance.
+         */
+        private VerificationTokenIndex verificationTokenIndex;
+
+        /**
+         * The {@link VerificationRateLimiter} instance, the limits are disabled.
+         */
+        private VerificationRateLimiter verificationRateLimiter;
+
+        /**
+         * The {@link PhoneNumberServiceMetricsImpl} instance.
+         */
+        private PhoneNumberServiceMetricsImpl metrics;
+
+        /**
+         * The {@link SMSDispatcher} instance.
+         */
+        private SMSDispatcher smsDispatcher;
+
+        /**
+         * The {@link StubVerifyService} instance.
+         */
+        private StubVerifyService verifyService;
+
+        /**
+         * The sequence of the subscriber numbers. Every saved subscriber number is unique.
+         */
+        private final AtomicLong subscriberNumberSequence = new AtomicLong();
+
+        /**
+         * The ids of the areas.
+         */
+        private final List<Long> areaIds = new ArrayList<Long>();
+
+        /**
+         * The ids of the saved phone numbers.
+         */
+        private final List<Long> phoneNumberIds = new ArrayList<Long>();
+
+        /**
+         * Returns the next unique phone number.
+         * 
+         * @return the phone number.
+         */
+        private PhoneNumberData nextPhoneNumber() {
+            long sequence = subscriberNumberSequence.getAndIncrement();
+            long areaId = areaIds.get((int) ((sequence / SUBSCRIBER_NUMBER_COUNT) % areaIds.size()));
+            String subscriberNumber = String.valueOf(SUBSCRIBER_NUMBER_COUNT + (sequence % SUBSCRIBER_NUMBER_COUNT))
+                    .substring(1);
+            return new PhoneNumberData(areaId, subscriberNumber, null);
+        }
+
+        /**
+         * Creating the database and the test data.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+            numberingPlanHolder = new NumberingPlanHolder();
+            velocityTemplateCache = new VelocityTemplateCache();
+            verificationTokenIndex = new VerificationTokenIndex();
+            // the benchmark sends many requests to the same phone numbers
+            verificationRateLimiter = new VerificationRateLimiter();
+            verificationRateLimiter.setPhoneNumberRefillInterval(0);
+            verificationRateLimiter.init();
+            metrics = new PhoneNumberServiceMetricsImpl();
+            smsDispatcher = new SMSDispatcher();
+            smsDispatcher.setMetrics(metrics);
+            smsDispatcher.setSmsSender(new StubSMSSender());
+            smsDispatcher.init();
+            verifyService = new StubVerifyService();
+
+            EntityManager em = entityManagerFactory.createEntityManager();
+            try {
+                PhoneNumberServiceImpl phoneNumberService = PhoneNumberServiceBenchmark.createService(this, em);
+
+                EntityTransaction transaction = em.getTransaction();
+                transaction.begin();
+                // The verifiable data and verification request records are not created by the stub
+                em.createNativeQuery("SET REFERENTIAL_INTEGRITY FALSE").executeUpdate();
+                phoneNumberService.saveCountry(COUNTRY_CODE, "00", "06", "36");
+                for (int i = 0; i < AREA_COUNT; i++) {
+                    areaIds.add(phoneNumberService.saveArea(COUNTRY_CODE, String.valueOf(AREA_CALL_NUMBER_BASE + i),
+                            "Area " + i, SUBSCRIBER_NUMBER_LENGTH));
+                }
+                List<PhoneNumberData> phoneNumbers = new ArrayList<PhoneNumberData>(PHONE_NUMBER_COUNT);
+                for (int i = 0; i < PHONE_NUMBER_COUNT; i++) {
+                    phoneNumbers.add(nextPhoneNumber());
+                }
+                PhoneNumberBatchSaveResult result = phoneNumberService.savePhoneNumbers(phoneNumbers);
+                phoneNumberIds.addAll(result.getPhoneNumberIds());
+                transaction.commit();
+            } finally {
+                em.close();
+            }
+        }
+
+        /**
+         * Closing the database.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            smsDispatcher.destroy();
+            entityManagerFactory.close();
+        }
+    }
+
+    /**
+     * The accept token of a verification request created for one invocation of the
+     * {@link PhoneNumberServiceBenchmark#verifyPhoneNumber(VerifyToken)} benchmark. The index removes the tokens
+     * when they are used, so every invocation needs a fresh token to measure the lookup in the index.
+     */
+    @State(Scope.Thread)
+    public static class VerifyToken {
+
+        /**
+         * The accept token.
+         */
+        private String tokenUUID;
+
+        /**
+         * Creating the verification request before the invocation, outside of the measured time.
+         * 
+         * @param benchmark
+         *            the benchmark state of the thread.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(final PhoneNumberServiceBenchmark benchmark) {
+            tokenUUID = benchmark.createVerifyToken();
+        }
+    }
+
+    /**
+     * The name of the persistence unit of the benchmark database.
+     */
+    private static final String PERSISTENCE_UNIT_NAME = "org.everit.phonenumber.benchmarks.pu";
+
+    /**
+     * The country of the test data.
+     */
+    private static final String COUNTRY_CODE = "HU";
+
+    /**
+     * The number of the areas of the test data.
+     */
+    private static final int AREA_COUNT = 50;
+
+    /**
+     * The call number of the first area.
+     */
+    private static final int AREA_CALL_NUMBER_BASE = 20;
+
+    /**
+     * The subscriber number length of the areas.
+     */
+    private static final int SUBSCRIBER_NUMBER_LENGTH = 7;
+
+    /**
+     * The number of the possible subscriber numbers in an area.
+     */
+    private static final long SUBSCRIBER_NUMBER_COUNT = 10000000L;
+
+    /**
+     * The number of the phone numbers saved before the benchmarks.
+     */
+    private static final int PHONE_NUMBER_COUNT = 10000;
+
+    /**
+     * The number of the phone numbers in a batch of verification requests.
+     */
+    private static final int VERIFICATION_BATCH_SIZE = 100;
+
+    /**
+     * The validity of the tokens in milliseconds.
+     */
+    private static final long TOKEN_VALIDITY = 3600000L;
+
+    /**
+     * The template of the verification SMS.
+     */
+    private static final String MESSAGE_TEMPLATE = "Your verification code is $acceptToken. If you did not request"
+            + " it, reply with $rejectToken to cancel the verification.";
+
+    /**
+     * Creating a service instance wired like the blueprint does.
+     * 
+     * @param database
+     *            the database.
+     * @param em
+     *            the entity manager of the service.
+     * @return the service.
+     */
+    private static PhoneNumberServiceImpl createService(final Database database, final EntityManager em) {
+        PhoneNumberServiceImpl phoneNumberService = new PhoneNumberServiceImpl();
+        phoneNumberService.setEm(em);
+        phoneNumberService.setMetrics(database.metrics);
+        phoneNumberService.setNumberingPlanHolder(database.numberingPlanHolder);
+        phoneNumberService.setVelocityTemplateCache(database.velocityTemplateCache);
+        phoneNumberService.setVerificationTokenIndex(database.verificationTokenIndex);
+        phoneNumberService.setVerificationRateLimiter(database.verificationRateLimiter);
+        phoneNumberService.setSmsDispatcher(database.smsDispatcher);
+        phoneNumberService.setVerifyService(database.verifyService);
+        return phoneNumberService;
+    }
+
+    /**
+     * The database.
+     */
+    private Database database;
+
+    /**
+     * The entity manager of the thread.
+     */
+    private EntityManager em;
+
+    /**
+     * The service of the thread.
+     */
+    private PhoneNumberServiceImpl phoneNumberService;
+
+    /**
+     * The random generator of the thread.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Starting a transaction.
+     * 
+     * @return the transaction.
+     */
+    private EntityTransaction begin() {
+        EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        return transaction;
+    }
+
+    /**
+     * Finishing the transaction and clearing the persistence context, like the end of a container managed
+     * transaction.
+     * 
+     * @param transaction
+     *            the transaction.
+     */
+    private void commit(final EntityTransaction transaction) {
+        if (transaction.getRollbackOnly()) {
+            transaction.rollback();
+        } else {
+            transaction.commit();
+        }
+        em.clear();
+    }
+
+    /**
+     * Creating a verification request and sending it.
+     */
+    @Benchmark
+    public void createVerificationRequestViaSMS() {
+        EntityTransaction transaction = begin();
+        try {
+            phoneNumberService.createVerificationRequestViaSMS(randomPhoneNumberId(), MESSAGE_TEMPLATE,
+                    new Date(System.currentTimeMillis() + TOKEN_VALIDITY), TOKEN_VALIDITY / 1000,
+                    VerificationLengthBase.REQUEST_CREATION);
+        } finally {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Creating the verification requests of a batch of random phone numbers and sending them.
+     * 
+     * @return the ids of the phone numbers without a verification request.
+     */
+    @Benchmark
+    public VerificationRequestBatchResult createVerificationRequestsViaSMS() {
+        List<Long> phoneNumberIds = new ArrayList<Long>(VERIFICATION_BATCH_SIZE);
+        for (int i = 0; i < VERIFICATION_BATCH_SIZE; i++) {
+            phoneNumberIds.add(randomPhoneNumberId());
+        }
+        EntityTransaction transaction = begin();
+        try {
+            return phoneNumberService.createVerificationRequestsViaSMS(phoneNumberIds, MESSAGE_TEMPLATE,
+                    new Date(System.currentTimeMillis() + TOKEN_VALIDITY), TOKEN_VALIDITY / 1000,
+                    VerificationLengthBase.REQUEST_CREATION);
+        } finally {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Creating a verification request of a random phone number.
+     * 
+     * @return the accept token of the verification request.
+     */
+    private String createVerifyToken() {
+        EntityTransaction transaction = begin();
+        try {
+            phoneNumberService.createVerificationRequestViaSMS(randomPhoneNumberId(), MESSAGE_TEMPLATE,
+                    new Date(System.currentTimeMillis() + TOKEN_VALIDITY), TOKEN_VALIDITY / 1000,
+                    VerificationLengthBase.REQUEST_CREATION);
+        } finally {
+            commit(transaction);
+        }
+        return database.verifyService.getLastVerifyTokenUUID();
+    }
+
+    /**
+     * Getting a callable phone number.
+     * 
+     * @return the callable phone number.
+     */
+    @Benchmark
+    public CallablePhoneNumber getCallablePhoneNumber() {
+        EntityTransaction transaction = begin();
+        try {
+            return phoneNumberService.getCallablePhoneNumber(randomPhoneNumberId());
+        } finally {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Getting a callable phone number without a transaction.
+     * 
+     * @return the callable phone number.
+     */
+    @Benchmark
+    public CallablePhoneNumber getCallablePhoneNumberWithoutTransaction() {
+        try {
+            return phoneNumberService.getCallablePhoneNumber(randomPhoneNumberId());
+        } finally {
+            em.clear();
+        }
+    }
+
+    /**
+     * Listing the active areas of the country.
+     * 
+     * @return the areas.
+     */
+    @Benchmark
+    public List<Area> listActiveAreasBycountryISO3166A2Code() {
+        EntityTransaction transaction = begin();
+        try {
+            return phoneNumberService.listActiveAreasBycountryISO3166A2Code(COUNTRY_CODE, null, null);
+        } finally {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Listing the active areas of the country without a transaction.
+     * 
+     * @return the areas.
+     */
+    @Benchmark
+    public List<Area> listActiveAreasBycountryISO3166A2CodeWithoutTransaction() {
+        try {
+            return phoneNumberService.listActiveAreasBycountryISO3166A2Code(COUNTRY_CODE, null, null);
+        } finally {
+            em.clear();
+        }
+    }
+
+    /**
+     * Returns the id of a random saved phone number.
+     * 
+     * @return the id of the phone number.
+     */
+    private long randomPhoneNumberId() {
+        return database.phoneNumberIds.get(random.nextInt(database.phoneNumberIds.size()));
+    }
+
+    /**
+     * Saving a new phone number.
+     * 
+     * @return the id of the phone number.
+     */
+    @Benchmark
+    public long savePhoneNumber() {
+        PhoneNumberData phoneNumber = database.nextPhoneNumber();
+        EntityTransaction transaction = begin();
+        try {
+            return phoneNumberService.savePhoneNumber(phoneNumber.getAreaId(), phoneNumber.getSubscriberNumber(),
+                    phoneNumber.getExtension());
+        } finally {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Creating the entity manager and the service of the thread.
+     * 
+     * @param database
+     *            the database.
+     */
+    @Setup(Level.Trial)
+    public void setUp(final Database database) {
+        this.database = database;
+        em = database.entityManagerFactory.createEntityManager();
+        phoneNumberService = PhoneNumberServiceBenchmark.createService(database, em);
+    }
+
+    /**
+     * Closing the entity manager of the thread.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    /**
+     * Verifying the phone number with the fresh token of a verification request created before the invocation, so
+     * the token is resolved from the {@link VerificationTokenIndex}.
+     * 
+     * @param verifyToken
+     *            the token of the invocation.
+     * @return the result of the verification.
+     */
+    @Benchmark
+    public PhoneVerificationResult verifyPhoneNumber(final VerifyToken verifyToken) {
+        EntityTransaction transaction = begin();
+        try {
+            return phoneNumberService.verifyPhoneNumber(verifyToken.tokenUUID);
+        } finally {
+            commit(transaction);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.everit.phonenumber.benchmarks;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.smssender.api.MessageFormat;
+import org.everit.smssender.api.SMSSender;
+
+/**
+ * {@link SMSSender} that only counts the messages, so the benchmarks measure the service and not the SMS gateway.
+ */
+public class StubSMSSender implements SMSSender {
+
+    /**
+     * The number of the sent messages.
+     */
+    private final AtomicLong sentMessageCount = new AtomicLong();
+
+    public long getSentMessageCount() {
+        return sentMessageCount.get();
+    }
+
+    @Override
+    public void sendMessage(final String countryCallCode, final String areaCallNumber,
+            final String subscriberNumber, final String extension, final String message,
+            final MessageFormat messageFormat, final boolean option) {
+        sentMessageCount.incrementAndGet();
+    }
+}
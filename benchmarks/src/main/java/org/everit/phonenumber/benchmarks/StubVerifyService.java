@@ -0,0 +1,95 @@
+package org.everit.phonenumber.benchmarks;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.verifiabledata.api.VerifyService;
+import org.everit.verifiabledata.api.dto.VerifiableDataCreation;
+import org.everit.verifiabledata.api.dto.VerificationRequest;
+import org.everit.verifiabledata.api.dto.VerificationResult;
+import org.everit.verifiabledata.api.enums.TokenUsageResult;
+import org.everit.verifiabledata.api.enums.VerificationLengthBase;
+
+/**
+ * In-memory {@link VerifyService}. The ids of the verifiable data and the verification requests are generated
+ * without database records, so the foreign keys referencing them must be disabled in the benchmark database. Every
+ * accept token is verified successfully, every reject token is rejected.
+ */
+public class StubVerifyService implements VerifyService {
+
+    /**
+     * Returns the accept token of the verifiable data.
+     * 
+     * @param verifiableDataId
+     *            the id of the verifiable data. The ids are generated from 1 in the order of the creation.
+     * @return the accept token.
+     */
+    private static String verifyTokenUUID(final long verifiableDataId) {
+        return "accept-" + verifiableDataId;
+    }
+
+    /**
+     * The generator of the ids.
+     */
+    private final AtomicLong idSequence = new AtomicLong();
+
+    /**
+     * The accept token of the last verifiable data created by the thread.
+     */
+    private final ThreadLocal<String> lastVerifyTokenUUID = new ThreadLocal<String>();
+
+    /**
+     * The results of the tokens.
+     */
+    private final ConcurrentMap<String, VerificationResult> verificationResults =
+            new ConcurrentHashMap<String, VerificationResult>();
+
+    @Override
+    public VerifiableDataCreation createVerifiableData(final Date tokenValidityEndDate,
+            final long verificationLength, final VerificationLengthBase verificationLengthBase) {
+        long id = idSequence.incrementAndGet();
+        String verifyTokenUUID = StubVerifyService.verifyTokenUUID(id);
+        String rejectTokenUUID = "reject-" + id;
+        verificationResults.put(verifyTokenUUID, new VerificationResult(id, TokenUsageResult.VERIFIED));
+        verificationResults.put(rejectTokenUUID, new VerificationResult(id, TokenUsageResult.REJECTED));
+        lastVerifyTokenUUID.set(verifyTokenUUID);
+        return new VerifiableDataCreation(id, new VerificationRequest(id, verifyTokenUUID, rejectTokenUUID));
+    }
+
+    /**
+     * Returns the accept token of the last verifiable data created by the current thread.
+     * 
+     * @return the accept token or <code>null</code> if the thread has not created verifiable data.
+     */
+    public String getLastVerifyTokenUUID() {
+        return lastVerifyTokenUUID.get();
+    }
+
+    @Override
+    public VerificationResult verifyData(final String tokenUUID) {
+        return verificationResults.get(tokenUUID);
+    }
+}
@@ -0,0 +1,99 @@
+package org.everit.phonenumber.benchmarks;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.phonenumber.core.VelocityTemplateCache;
+import org.everit.util.core.velocity.VelocityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the rendering of the verification SMS message by parsing the template at every call (the
+ * {@link VelocityUtil} way) and by merging the template cached by the {@link VelocityTemplateCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VelocityTemplateBenchmark {
+
+    /**
+     * A typical verification SMS template.
+     */
+    private static final String MESSAGE_TEMPLATE = "Your verification code is $acceptToken. If you did not request"
+            + " it, reply with $rejectToken to cancel the verification.";
+
+    /**
+     * The {@link VelocityTemplateCache} instance.
+     */
+    private VelocityTemplateCache velocityTemplateCache;
+
+    /**
+     * The variables of the template.
+     */
+    private Map<String, Object> variables;
+
+    /**
+     * Rendering the message with the cached template.
+     * 
+     * @return the rendered message.
+     */
+    @Benchmark
+    public String cachedTemplate() {
+        return velocityTemplateCache.merge(MESSAGE_TEMPLATE, variables);
+    }
+
+    /**
+     * Rendering the message by parsing the template.
+     * 
+     * @return the rendered message.
+     */
+    @Benchmark
+    public String parsedTemplate() {
+        return VelocityUtil.processVelocityTemplateFromString(MESSAGE_TEMPLATE, "ERROR", variables);
+    }
+
+    /**
+     * Creating the cache and the variables.
+     */
+    @Setup
+    public void setUp() {
+        velocityTemplateCache = new VelocityTemplateCache();
+        variables = new HashMap<String, Object>();
+        variables.put("acceptToken", "1f0c8d5e-6a3b-4b4e-9c55-2d3f1a7e8b90");
+        variables.put("rejectToken", "7a2e4c1d-0b9f-4e68-8d3a-5c6b7e8f9a01");
+    }
+}
@@ -0,0 +1,74 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.everit.phonenumber.api.ReferenceDataInvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class of the {@link ReferenceDataInvalidationBroadcaster} implementations managing the listeners.
+ */
+public abstract class AbstractInvalidationBroadcaster implements ReferenceDataInvalidationBroadcaster {
+
+    /**
+     * The logger instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractInvalidationBroadcaster.class);
+
+    /**
+     * The registered listeners.
+     */
+    private final List<ReferenceDataInvalidationListener> listeners =
+            new CopyOnWriteArrayList<ReferenceDataInvalidationListener>();
+
+    @Override
+    public void addListener(final ReferenceDataInvalidationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("The listener parameter is null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Notifies all registered listeners. The failure of a listener does not prevent the notification of the other
+     * listeners.
+     */
+    protected void notifyListeners() {
+        for (ReferenceDataInvalidationListener listener : listeners) {
+            try {
+                listener.referenceDataInvalidated();
+            } catch (RuntimeException e) {
+                LOGGER.error("The reference data invalidation listener failed.", e);
+            }
+        }
+    }
+
+    @Override
+    public void removeListener(final ReferenceDataInvalidationListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,83 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.everit.phonenumber.api.ReferenceDataInvalidationListener;
+
+/**
+ * {@link ReferenceDataInvalidationBroadcaster} combining other broadcasters, for example the fast but unreliable
+ * {@link MulticastInvalidationBroadcaster} with the reliable {@link DatabaseInvalidationBroadcaster}. The
+ * modifications are announced through every broadcaster and the listeners are registered at every broadcaster, so a
+ * listener is notified by the first broadcaster delivering the modification and again by the others.
+ */
+public class CompositeInvalidationBroadcaster implements ReferenceDataInvalidationBroadcaster {
+
+    /**
+     * The combined broadcasters.
+     */
+    private List<ReferenceDataInvalidationBroadcaster> broadcasters =
+            new ArrayList<ReferenceDataInvalidationBroadcaster>();
+
+    @Override
+    public void addListener(final ReferenceDataInvalidationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("The listener parameter is null.");
+        }
+        for (ReferenceDataInvalidationBroadcaster broadcaster : broadcasters) {
+            broadcaster.addListener(listener);
+        }
+    }
+
+    @Override
+    public void broadcast() {
+        for (ReferenceDataInvalidationBroadcaster broadcaster : broadcasters) {
+            broadcaster.broadcast();
+        }
+    }
+
+    @Override
+    public void removeListener(final ReferenceDataInvalidationListener listener) {
+        for (ReferenceDataInvalidationBroadcaster broadcaster : broadcasters) {
+            broadcaster.removeListener(listener);
+        }
+    }
+
+    /**
+     * Sets the combined broadcasters.
+     * 
+     * @param broadcasters
+     *            the broadcasters. Cannot be <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the broadcasters parameter is <code>null</code> or contains <code>null</code>.
+     */
+    public void setBroadcasters(final List<ReferenceDataInvalidationBroadcaster> broadcasters) {
+        if ((broadcasters == null) || broadcasters.contains(null)) {
+            throw new IllegalArgumentException("The broadcasters parameter is null or contains null.");
+        }
+        this.broadcasters = new ArrayList<ReferenceDataInvalidationBroadcaster>(broadcasters);
+    }
+}
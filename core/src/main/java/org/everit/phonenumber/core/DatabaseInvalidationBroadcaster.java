@@ -0,0 +1,145 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ReferenceDataInvalidationBroadcaster} based on the version of the reference data stored in the database.
+ * The {@link #broadcast()} method increments the version in the transaction of the modification and every node polls
+ * the version in every pollInterval milliseconds, so the listeners are notified at most pollInterval milliseconds
+ * after the commit of the modification. The poll is a primary key lookup of one row.
+ */
+public class DatabaseInvalidationBroadcaster extends AbstractInvalidationBroadcaster {
+
+    /**
+     * The logger instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseInvalidationBroadcaster.class);
+
+    /**
+     * The {@link ReferenceDataVersionStore} instance. Must be called through a transactional proxy.
+     */
+    private ReferenceDataVersionStore versionStore;
+
+    /**
+     * The delay between two polls of the version in milliseconds.
+     */
+    private long pollInterval = 1000;
+
+    /**
+     * The last polled version or <code>null</code> if the version was never polled. Accessed by the poller thread
+     * only.
+     */
+    private Long lastVersion;
+
+    /**
+     * The last poll failed, so a modification might be missed. Accessed by the poller thread only.
+     */
+    private boolean pollFailed;
+
+    /**
+     * The executor of the polls.
+     */
+    private ScheduledExecutorService executor;
+
+    @Override
+    public void broadcast() {
+        versionStore.incrementVersion();
+    }
+
+    /**
+     * Stops the polling of the version.
+     */
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the version row if it does not exist and starts the polling of the version.
+     */
+    public void init() {
+        if (pollInterval <= 0) {
+            throw new IllegalArgumentException("The pollInterval is not positive.");
+        }
+        try {
+            versionStore.createVersion();
+        } catch (RuntimeException e) {
+            // an other node created the row at the same time, the second call finds it
+            LOGGER.debug("Cannot create the version row of the reference data, checking it again.", e);
+            versionStore.createVersion();
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "phonenumber-reference-data-poller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                poll();
+            }
+        }, 0, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Polls the version and notifies the listeners if the version changed. The listeners are notified also after a
+     * failed poll, because a modification might be missed.
+     */
+    private void poll() {
+        long version;
+        try {
+            version = versionStore.getVersion();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot poll the version of the reference data.", e);
+            pollFailed = true;
+            return;
+        }
+        if (pollFailed || ((lastVersion != null) && (lastVersion.longValue() != version))) {
+            notifyListeners();
+        }
+        lastVersion = version;
+        pollFailed = false;
+    }
+
+    public void setPollInterval(final long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public void setVersionStore(final ReferenceDataVersionStore versionStore) {
+        this.versionStore = versionStore;
+    }
+}
@@ -0,0 +1,147 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * {@link EntityManager} proxy adding the time spent in the entity manager and in the {@link Query} instances created
+ * by it to the database time of the current thread in the {@link PhoneNumberServiceMetricsImpl}. The
+ * {@link MeteredPhoneNumberService} records the database time of every service method from it. The flush at the
+ * commit of the transaction runs outside of the entity manager calls, so it is not included.
+ */
+public final class MeteredEntityManager implements InvocationHandler {
+
+    /**
+     * Creates the metered proxy of the entity manager.
+     * 
+     * @param delegate
+     *            the decorated entity manager. Cannot be <code>null</code>.
+     * @param metrics
+     *            the {@link PhoneNumberServiceMetricsImpl} instance. Cannot be <code>null</code>.
+     * @return the proxy.
+     * 
+     * @throws IllegalArgumentException
+     *             if the delegate or metrics is <code>null</code>.
+     */
+    public static EntityManager createProxy(final EntityManager delegate, final PhoneNumberServiceMetricsImpl metrics) {
+        if ((delegate == null) || (metrics == null)) {
+            throw new IllegalArgumentException("The delegate or metrics parameter is null.");
+        }
+        return (EntityManager) MeteredEntityManager.createProxy(EntityManager.class, delegate, metrics);
+    }
+
+    /**
+     * Creates a metered proxy.
+     * 
+     * @param type
+     *            the interface of the proxy.
+     * @param delegate
+     *            the decorated instance.
+     * @param metrics
+     *            the {@link PhoneNumberServiceMetricsImpl} instance.
+     * @return the proxy.
+     */
+    private static Object createProxy(final Class<?> type, final Object delegate,
+            final PhoneNumberServiceMetricsImpl metrics) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new MeteredEntityManager(delegate, metrics));
+    }
+
+    /**
+     * The decorated entity manager or query.
+     */
+    private final Object delegate;
+
+    /**
+     * The {@link PhoneNumberServiceMetricsImpl} instance.
+     */
+    private final PhoneNumberServiceMetricsImpl metrics;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param delegate
+     *            the decorated entity manager or query.
+     * @param metrics
+     *            the {@link PhoneNumberServiceMetricsImpl} instance.
+     */
+    private MeteredEntityManager(final Object delegate, final PhoneNumberServiceMetricsImpl metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        Object result;
+        long startTime = System.nanoTime();
+        try {
+            result = method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            metrics.addDatabaseTime(System.nanoTime() - startTime);
+        }
+        if (result == delegate) {
+            // the setters of the queries return the query itself
+            return proxy;
+        } else if (result instanceof TypedQuery) {
+            return MeteredEntityManager.createProxy(TypedQuery.class, result, metrics);
+        } else if (result instanceof Query) {
+            return MeteredEntityManager.createProxy(Query.class, result, metrics);
+        }
+        return result;
+    }
+
+    /**
+     * Handles the methods of the {@link Object} class without recording them. The proxy is equal only to itself.
+     * 
+     * @param proxy
+     *            the proxy.
+     * @param method
+     *            the method of the {@link Object} class.
+     * @param args
+     *            the arguments of the method.
+     * @return the result of the method.
+     */
+    private Object invokeObjectMethod(final Object proxy, final Method method, final Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(name)) {
+            return "Metered " + delegate;
+        }
+        throw new UnsupportedOperationException("The " + name + " method is not supported.");
+    }
+}
@@ -0,0 +1,176 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.everit.phonenumber.api.PhoneNumberService;
+import org.everit.phonenumber.api.PhoneVerificationResult;
+
+/**
+ * {@link PhoneNumberService} proxy recording the latency and the failures of every method and the results of the
+ * phone number confirmations into the {@link PhoneNumberServiceMetricsImpl}. The delegate is the transactional
+ * service, so the recorded latency includes the commit of the transaction. A new method of the service is recorded
+ * without any change here.
+ * <p>
+ * The time the method spent in the database is recorded as the <code>.database</code> stage of the operation, for
+ * example <code>savePhoneNumber.database</code>. It is measured by the {@link MeteredEntityManager} of the service.
+ * <p>
+ * The operations are named after the methods. The overloaded methods are named with the simple names of their
+ * parameter types too, for example <code>parse(String)</code> and <code>parse(String,String)</code>, so they do not
+ * share a histogram.
+ */
+public final class MeteredPhoneNumberService implements InvocationHandler {
+
+    /**
+     * The names of the operations by the methods of the {@link PhoneNumberService}.
+     */
+    private static final Map<Method, String> OPERATION_NAMES = MeteredPhoneNumberService.createOperationNames();
+
+    /**
+     * Builds the names of the operations of the methods of the {@link PhoneNumberService}.
+     * 
+     * @return the unmodifiable map of the names by the methods.
+     */
+    private static Map<Method, String> createOperationNames() {
+        Method[] methods = PhoneNumberService.class.getMethods();
+        Map<String, Integer> overloadCounts = new HashMap<String, Integer>();
+        for (Method method : methods) {
+            Integer count = overloadCounts.get(method.getName());
+            overloadCounts.put(method.getName(), (count == null) ? 1 : (count + 1));
+        }
+        Map<Method, String> operationNames = new HashMap<Method, String>();
+        for (Method method : methods) {
+            if (overloadCounts.get(method.getName()) == 1) {
+                operationNames.put(method, method.getName());
+            } else {
+                StringBuilder sb = new StringBuilder(method.getName()).append('(');
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(parameterTypes[i].getSimpleName());
+                }
+                operationNames.put(method, sb.append(')').toString());
+            }
+        }
+        return Collections.unmodifiableMap(operationNames);
+    }
+
+    /**
+     * Creates the metered proxy of the service.
+     * 
+     * @param delegate
+     *            the decorated service. Cannot be <code>null</code>.
+     * @param metrics
+     *            the {@link PhoneNumberServiceMetricsImpl} instance. Cannot be <code>null</code>.
+     * @return the proxy.
+     * 
+     * @throws IllegalArgumentException
+     *             if the delegate or metrics is <code>null</code>.
+     */
+    public static PhoneNumberService createProxy(final PhoneNumberService delegate,
+            final PhoneNumberServiceMetricsImpl metrics) {
+        if ((delegate == null) || (metrics == null)) {
+            throw new IllegalArgumentException("The delegate or metrics parameter is null.");
+        }
+        return (PhoneNumberService) Proxy.newProxyInstance(PhoneNumberService.class.getClassLoader(),
+                new Class<?>[] { PhoneNumberService.class }, new MeteredPhoneNumberService(delegate, metrics));
+    }
+
+    /**
+     * The decorated service.
+     */
+    private final PhoneNumberService delegate;
+
+    /**
+     * The {@link PhoneNumberServiceMetricsImpl} instance.
+     */
+    private final PhoneNumberServiceMetricsImpl metrics;
+
+    /**
+     * The simple constructor.
+     * 
+     * @param delegate
+     *            the decorated service.
+     * @param metrics
+     *            the {@link PhoneNumberServiceMetricsImpl} instance.
+     */
+    private MeteredPhoneNumberService(final PhoneNumberService delegate, final PhoneNumberServiceMetricsImpl metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        String operationName = OPERATION_NAMES.get(method);
+        if (operationName == null) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        long startTime = System.nanoTime();
+        long databaseStartTime = metrics.getDatabaseTime();
+        Throwable error = null;
+        try {
+            Object result = method.invoke(delegate, args);
+            if (result instanceof PhoneVerificationResult) {
+                metrics.recordConfirmationResult(((PhoneVerificationResult) result).getResult());
+            }
+            return result;
+        } catch (InvocationTargetException e) {
+            error = e.getCause();
+            throw error;
+        } finally {
+            metrics.recordOperation(operationName, System.nanoTime() - startTime, error);
+            metrics.recordOperation(operationName + ".database", metrics.getDatabaseTime() - databaseStartTime, null);
+        }
+    }
+
+    /**
+     * Handles the methods of the {@link Object} class without recording them. The proxy is equal only to itself.
+     * 
+     * @param proxy
+     *            the proxy.
+     * @param method
+     *            the method of the {@link Object} class.
+     * @param args
+     *            the arguments of the method.
+     * @return the result of the method.
+     */
+    private Object invokeObjectMethod(final Object proxy, final Method method, final Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(name)) {
+            return "Metered " + delegate;
+        }
+        throw new UnsupportedOperationException("The " + name + " method is not supported.");
+    }
+}
@@ -0,0 +1,219 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ReferenceDataInvalidationBroadcaster} sending the invalidations as UDP multicast datagrams. The datagram is
+ * sent after the commit of the modification and the listeners of the other nodes are notified as soon as it
+ * arrives. The delivery is not guaranteed, a lost datagram is not sent again, so this broadcaster should be used only
+ * on networks where the loss of a datagram is acceptable or together with the {@link DatabaseInvalidationBroadcaster}
+ * through a {@link CompositeInvalidationBroadcaster}.
+ */
+public class MulticastInvalidationBroadcaster extends AbstractInvalidationBroadcaster {
+
+    /**
+     * The logger instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MulticastInvalidationBroadcaster.class);
+
+    /**
+     * The charset of the datagrams.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The maximum length of a received datagram.
+     */
+    private static final int MAX_DATAGRAM_LENGTH = 256;
+
+    /**
+     * The id of the node, sent in the datagrams to ignore the own datagrams.
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * The multicast group address.
+     */
+    private String groupAddress = "239.255.27.1";
+
+    /**
+     * The UDP port of the multicast group.
+     */
+    private int port = 45627;
+
+    /**
+     * The time to live of the sent datagrams.
+     */
+    private int timeToLive = 1;
+
+    /**
+     * The registry of the current transaction. May be <code>null</code>, then the datagram is sent immediately.
+     */
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * The joined group.
+     */
+    private InetAddress group;
+
+    /**
+     * The socket of the group.
+     */
+    private MulticastSocket socket;
+
+    /**
+     * The thread receiving the datagrams.
+     */
+    private Thread receiverThread;
+
+    @Override
+    public void broadcast() {
+        if ((transactionSynchronizationRegistry == null)
+                || (transactionSynchronizationRegistry.getTransactionKey() == null)) {
+            publish();
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    publish();
+                }
+            }
+
+            @Override
+            public void beforeCompletion() {
+            }
+        });
+    }
+
+    /**
+     * Leaves the multicast group and stops the receiver thread.
+     */
+    public void destroy() {
+        if (socket != null) {
+            socket.close();
+        }
+        if (receiverThread != null) {
+            receiverThread.interrupt();
+        }
+    }
+
+    /**
+     * Joins the multicast group and starts the receiver thread.
+     * 
+     * @throws IllegalStateException
+     *             if the group cannot be joined.
+     */
+    public void init() {
+        try {
+            group = InetAddress.getByName(groupAddress);
+            socket = new MulticastSocket(port);
+            socket.setTimeToLive(timeToLive);
+            socket.joinGroup(group);
+        } catch (IOException e) {
+            if (socket != null) {
+                socket.close();
+            }
+            throw new IllegalStateException("Cannot join the multicast group " + groupAddress + ":" + port + ".", e);
+        }
+        receiverThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "phonenumber-reference-data-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    /**
+     * Notifies the local listeners and sends the invalidation datagram to the other nodes. The failure of the sending
+     * is logged only, the modification is already committed.
+     */
+    private void publish() {
+        notifyListeners();
+        byte[] data = nodeId.getBytes(CHARSET);
+        try {
+            socket.send(new DatagramPacket(data, data.length, group, port));
+        } catch (IOException e) {
+            LOGGER.error("Cannot send the reference data invalidation datagram.", e);
+        }
+    }
+
+    /**
+     * Receives the datagrams until the socket is closed and notifies the listeners about the datagrams of the other
+     * nodes.
+     */
+    private void receive() {
+        byte[] buffer = new byte[MAX_DATAGRAM_LENGTH];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    LOGGER.warn("Cannot receive the reference data invalidation datagram.", e);
+                }
+                continue;
+            }
+            String senderNodeId = new String(packet.getData(), packet.getOffset(), packet.getLength(), CHARSET);
+            if (!nodeId.equals(senderNodeId)) {
+                notifyListeners();
+            }
+        }
+    }
+
+    public void setGroupAddress(final String groupAddress) {
+        this.groupAddress = groupAddress;
+    }
+
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    public void setTimeToLive(final int timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public void setTransactionSynchronizationRegistry(
+            final TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+}
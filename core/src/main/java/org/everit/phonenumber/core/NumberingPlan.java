@@ -0,0 +1,427 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.everit.phonenumber.api.dto.Area;
+import org.everit.phonenumber.api.dto.Country;
+
+/**
+ * Immutable snapshot of all countries and areas. A snapshot is built from the database in one go and never
+ * modified, so any number of threads can read it without locking. The {@link NumberingPlanHolder} replaces the whole
+ * snapshot when the reference data changes.
+ * <p>
+ * The stored {@link Country} and {@link Area} objects are never handed out, the getters always return copies because
+ * the DTOs are mutable.
+ */
+public final class NumberingPlan {
+
+    /**
+     * Orders the areas by the call number.
+     */
+    private static final Comparator<Area> CALL_NUMBER_ORDER = new Comparator<Area>() {
+
+        @Override
+        public int compare(final Area area1, final Area area2) {
+            return area1.getCallNumber().compareTo(area2.getCallNumber());
+        }
+    };
+
+    /**
+     * Orders the countries by the country code.
+     */
+    private static final Comparator<Country> COUNTRY_CODE_ORDER = new Comparator<Country>() {
+
+        @Override
+        public int compare(final Country country1, final Country country2) {
+            return country1.getCountryISO3166A2Code().compareTo(country2.getCountryISO3166A2Code());
+        }
+    };
+
+    /**
+     * Creates the key of the active area index.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param callNumber
+     *            the area call number.
+     * @return the key.
+     */
+    private static String activeAreaKey(final String countryISO3166A2Code, final String callNumber) {
+        return countryISO3166A2Code + ":" + callNumber;
+    }
+
+    /**
+     * Copies the area.
+     * 
+     * @param area
+     *            the area to copy. May be <code>null</code>.
+     * @return the copy of the area or <code>null</code> if the area is <code>null</code>.
+     */
+    private static Area copy(final Area area) {
+        if (area == null) {
+            return null;
+        }
+        return new Area(area.getCountryCode(), area.getCallNumber(), area.getName(),
+                area.getSubscriberNumberLength(), area.isActive());
+    }
+
+    /**
+     * Copies the country.
+     * 
+     * @param country
+     *            the country to copy. May be <code>null</code>.
+     * @return the copy of the country or <code>null</code> if the country is <code>null</code>.
+     */
+    private static Country copy(final Country country) {
+        if (country == null) {
+            return null;
+        }
+        return new Country(country.getCountryISO3166A2Code(), country.getIddPrefix(), country.getNddPrefix(),
+                country.getCountryCallCode(), country.isSelectable());
+    }
+
+    /**
+     * Copies the areas.
+     * 
+     * @param areaList
+     *            the areas to copy.
+     * @return the copies of the areas in the same order.
+     */
+    private static List<Area> copyAreas(final List<Area> areaList) {
+        List<Area> result = new ArrayList<Area>(areaList.size());
+        for (Area area : areaList) {
+            result.add(NumberingPlan.copy(area));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the countries.
+     * 
+     * @param countryList
+     *            the countries to copy.
+     * @return the copies of the countries in the same order.
+     */
+    private static List<Country> copyCountries(final List<Country> countryList) {
+        List<Country> result = new ArrayList<Country>(countryList.size());
+        for (Country country : countryList) {
+            result.add(NumberingPlan.copy(country));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the E.164 prefix of the phone numbers of an area.
+     * 
+     * @param countryCallCode
+     *            the country call code.
+     * @param callNumber
+     *            the area call number.
+     * @return "+", the digits of the country call code and the digits of the area call number.
+     */
+    static String e164Prefix(final String countryCallCode, final String callNumber) {
+        return "+" + NumberingPlanTrie.digitsOfCode(countryCallCode) + NumberingPlanTrie.digitsOfCode(callNumber);
+    }
+
+    /**
+     * Returns the index after the key in the sorted list.
+     * 
+     * @param sortedList
+     *            the list sorted by the comparator.
+     * @param key
+     *            the element to search with the unique sort key. If <code>null</code>, <code>0</code> is returned.
+     * @param comparator
+     *            the order of the list.
+     * @param <T>
+     *            the type of the list elements.
+     * @return the index of the first element greater than the key.
+     */
+    private static <T> int indexAfter(final List<T> sortedList, final T key, final Comparator<T> comparator) {
+        if (key == null) {
+            return 0;
+        }
+        int index = Collections.binarySearch(sortedList, key, comparator);
+        return (index >= 0) ? (index + 1) : (-index - 1);
+    }
+
+    /**
+     * Returns a range of the list without copying.
+     * 
+     * @param list
+     *            the list.
+     * @param fromIndex
+     *            the first index of the range. Not negative.
+     * @param maxCount
+     *            the maximum number of the elements. Not negative.
+     * @param <T>
+     *            the type of the list elements.
+     * @return the view of the range.
+     */
+    private static <T> List<T> range(final List<T> list, final long fromIndex, final long maxCount) {
+        int from = (int) Math.min(fromIndex, list.size());
+        int to = from + (int) Math.min(maxCount, list.size() - from);
+        return list.subList(from, to);
+    }
+
+    /**
+     * The version of the reference data the snapshot was built from.
+     */
+    private final long version;
+
+    /**
+     * All countries by the country code (ISO3166-alpha-2).
+     */
+    private final Map<String, Country> countries = new HashMap<String, Country>();
+
+    /**
+     * All areas by the area id.
+     */
+    private final Map<Long, Area> areas = new HashMap<Long, Area>();
+
+    /**
+     * The active area ids by the country code and the area call number.
+     */
+    private final Map<String, Long> activeAreaIds = new HashMap<String, Long>();
+
+    /**
+     * The active countries in the order of the country codes.
+     */
+    private final List<Country> activeCountries;
+
+    /**
+     * The active areas by the country code in the order of the call numbers.
+     */
+    private final Map<String, List<Area>> activeAreasByCountry = new HashMap<String, List<Area>>();
+
+    /**
+     * The trie of the active countries and their active areas.
+     */
+    private final NumberingPlanTrie trie = new NumberingPlanTrie();
+
+    /**
+     * Builds the snapshot. The parameters are copied, they can be modified after the call.
+     * 
+     * @param version
+     *            the version of the reference data the snapshot is built from.
+     * @param countryList
+     *            all countries. The selectable flag of the country means the country is active.
+     * @param areaMap
+     *            all areas by the area id.
+     */
+    public NumberingPlan(final long version, final Collection<Country> countryList, final Map<Long, Area> areaMap) {
+        this.version = version;
+        List<Country> activeCountryList = new ArrayList<Country>();
+        for (Country country : countryList) {
+            Country value = NumberingPlan.copy(country);
+            countries.put(value.getCountryISO3166A2Code(), value);
+            if (value.isSelectable()) {
+                activeCountryList.add(value);
+                trie.addCountry(value.getCountryISO3166A2Code(), value.getIddPrefix(), value.getNddPrefix(),
+                        value.getCountryCallCode());
+            }
+        }
+        Collections.sort(activeCountryList, COUNTRY_CODE_ORDER);
+        activeCountries = Collections.unmodifiableList(activeCountryList);
+
+        for (Map.Entry<Long, Area> entry : areaMap.entrySet()) {
+            Area value = NumberingPlan.copy(entry.getValue());
+            areas.put(entry.getKey(), value);
+            if (value.isActive()) {
+                activeAreaIds.put(NumberingPlan.activeAreaKey(value.getCountryCode(), value.getCallNumber()),
+                        entry.getKey());
+                List<Area> countryAreas = activeAreasByCountry.get(value.getCountryCode());
+                if (countryAreas == null) {
+                    countryAreas = new ArrayList<Area>();
+                    activeAreasByCountry.put(value.getCountryCode(), countryAreas);
+                }
+                countryAreas.add(value);
+                trie.addArea(value.getCountryCode(), entry.getKey(), value.getCallNumber(),
+                        value.getSubscriberNumberLength());
+            }
+        }
+        for (List<Area> countryAreas : activeAreasByCountry.values()) {
+            Collections.sort(countryAreas, CALL_NUMBER_ORDER);
+        }
+    }
+
+    /**
+     * Returns the active area id.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param callNumber
+     *            the area call number.
+     * @return the id of the active area or <code>null</code> if there is no such active area.
+     */
+    public Long getActiveAreaId(final String countryISO3166A2Code, final String callNumber) {
+        return activeAreaIds.get(NumberingPlan.activeAreaKey(countryISO3166A2Code, callNumber));
+    }
+
+    /**
+     * Returns a range of the active areas of the country. Only the returned areas are copied.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param fromIndex
+     *            the index of the first area. Not negative.
+     * @param maxCount
+     *            the maximum number of the areas. Not negative.
+     * @return the copy of the active areas in the order of the call numbers.
+     */
+    public List<Area> getActiveAreas(final String countryISO3166A2Code, final long fromIndex, final long maxCount) {
+        List<Area> countryAreas = activeAreasByCountry.get(countryISO3166A2Code);
+        if (countryAreas == null) {
+            return new ArrayList<Area>();
+        }
+        return NumberingPlan.copyAreas(NumberingPlan.range(countryAreas, fromIndex, maxCount));
+    }
+
+    /**
+     * Returns a keyset page of the active areas of the country. The start of the page is found by binary search and
+     * only the returned areas are copied.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param afterCallNumber
+     *            only the areas with greater call number are returned or <code>null</code> if not defined.
+     * @param maxCount
+     *            the maximum number of the areas. Not negative.
+     * @return the copy of the active areas in the order of the call numbers.
+     */
+    public List<Area> getActiveAreasAfter(final String countryISO3166A2Code, final String afterCallNumber,
+            final int maxCount) {
+        List<Area> countryAreas = activeAreasByCountry.get(countryISO3166A2Code);
+        if (countryAreas == null) {
+            return new ArrayList<Area>();
+        }
+        Area key = (afterCallNumber == null) ? null : new Area(countryISO3166A2Code, afterCallNumber, null, 0, true);
+        int fromIndex = NumberingPlan.indexAfter(countryAreas, key, CALL_NUMBER_ORDER);
+        return NumberingPlan.copyAreas(NumberingPlan.range(countryAreas, fromIndex, maxCount));
+    }
+
+    /**
+     * Returns a range of the active countries. Only the returned countries are copied.
+     * 
+     * @param fromIndex
+     *            the index of the first country. Not negative.
+     * @param maxCount
+     *            the maximum number of the countries. Not negative.
+     * @return the copy of the active countries in the order of the country codes.
+     */
+    public List<Country> getActiveCountries(final long fromIndex, final long maxCount) {
+        return NumberingPlan.copyCountries(NumberingPlan.range(activeCountries, fromIndex, maxCount));
+    }
+
+    /**
+     * Returns a keyset page of the active countries. The start of the page is found by binary search and only the
+     * returned countries are copied.
+     * 
+     * @param afterCountryISO3166A2Code
+     *            only the countries with greater country code are returned or <code>null</code> if not defined.
+     * @param maxCount
+     *            the maximum number of the countries. Not negative.
+     * @return the copy of the active countries in the order of the country codes.
+     */
+    public List<Country> getActiveCountriesAfter(final String afterCountryISO3166A2Code, final int maxCount) {
+        Country key = (afterCountryISO3166A2Code == null) ? null : new Country(afterCountryISO3166A2Code, null, null,
+                null, true);
+        int fromIndex = NumberingPlan.indexAfter(activeCountries, key, COUNTRY_CODE_ORDER);
+        return NumberingPlan.copyCountries(NumberingPlan.range(activeCountries, fromIndex, maxCount));
+    }
+
+    /**
+     * Returns the subscriber number length of the active area.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @return the subscriber number length or <code>null</code> if the area does not exist or not active.
+     */
+    public Integer getActiveSubscriberNumberLength(final long areaId) {
+        Area area = areas.get(areaId);
+        if ((area == null) || !area.isActive()) {
+            return null;
+        }
+        return area.getSubscriberNumberLength();
+    }
+
+    /**
+     * Returns the area.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @return the copy of the area or <code>null</code> if the area does not exist.
+     */
+    public Area getArea(final long areaId) {
+        return NumberingPlan.copy(areas.get(areaId));
+    }
+
+    /**
+     * Returns the country.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @return the copy of the country or <code>null</code> if the country does not exist.
+     */
+    public Country getCountry(final String countryISO3166A2Code) {
+        return NumberingPlan.copy(countries.get(countryISO3166A2Code));
+    }
+
+    /**
+     * Returns the E.164 prefix of the phone numbers of the area.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @return the prefix or <code>null</code> if the area does not exist.
+     */
+    public String getE164Prefix(final long areaId) {
+        Area area = areas.get(areaId);
+        if (area == null) {
+            return null;
+        }
+        Country country = countries.get(area.getCountryCode());
+        if (country == null) {
+            return null;
+        }
+        return NumberingPlan.e164Prefix(country.getCountryCallCode(), area.getCallNumber());
+    }
+
+    /**
+     * Returns the trie of the active countries and their active areas.
+     * 
+     * @return the trie.
+     */
+    public NumberingPlanTrie getTrie() {
+        return trie;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
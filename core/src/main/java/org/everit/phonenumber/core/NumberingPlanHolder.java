@@ -0,0 +1,253 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.everit.phonenumber.api.ReferenceDataInvalidationListener;
+
+/**
+ * Holds the current {@link NumberingPlan} snapshot. The readers get the snapshot with one volatile read, the snapshot
+ * is loaded from the database only after an invalidation.
+ * <p>
+ * Every modification of the reference data must call {@link #invalidate()}. A snapshot loaded before an
+ * invalidation is never installed, so a concurrent reader cannot put back an outdated snapshot. Inside a transaction
+ * the snapshot is invalidated again after the completion of the transaction, because the readers may load the still
+ * committed old values until the commit. The transaction that modified the reference data gets its own, not
+ * installed snapshot that contains its not yet committed modifications. The private snapshot is kept as a resource of
+ * the transaction and loaded again only after a later invalidation in the same transaction, so a transaction
+ * modifying and reading the reference data in a loop does not reload the whole numbering plan on every read.
+ * <p>
+ * In a cluster the modifications are announced to the other nodes through the
+ * {@link ReferenceDataInvalidationBroadcaster} and the snapshot is dropped when the broadcaster reports a modification
+ * of an other node.
+ */
+public class NumberingPlanHolder {
+
+    /**
+     * Loads the snapshot from the database.
+     */
+    public interface Loader {
+
+        /**
+         * Loads the snapshot.
+         * 
+         * @param version
+         *            the version of the reference data to store in the snapshot.
+         * @return the snapshot.
+         */
+        NumberingPlan load(long version);
+    }
+
+    /**
+     * The value of the transaction resource of a transaction whose private snapshot must be loaded.
+     */
+    private static final Object STALE_SNAPSHOT = new Object();
+
+    /**
+     * The key of the transaction resource that marks the transaction that modified the reference data. The value is
+     * the private {@link NumberingPlan} snapshot of the transaction or {@link #STALE_SNAPSHOT}.
+     */
+    private final Object dirtyTransactionKey = new Object();
+
+    /**
+     * The version of the reference data. Incremented by every invalidation.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Guards the loading of the snapshot, so the snapshot is loaded only once after an invalidation.
+     */
+    private final Object loadLock = new Object();
+
+    /**
+     * The current snapshot or <code>null</code> if not loaded.
+     */
+    private volatile NumberingPlan current;
+
+    /**
+     * The registry of the current transaction. May be <code>null</code>, then the snapshot is invalidated only
+     * immediately.
+     */
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * The broadcaster of the modifications between the nodes of the cluster. May be <code>null</code> if there is
+     * only one node.
+     */
+    private ReferenceDataInvalidationBroadcaster invalidationBroadcaster;
+
+    /**
+     * Drops the snapshot when the broadcaster reports a modification.
+     */
+    private final ReferenceDataInvalidationListener invalidationListener = new ReferenceDataInvalidationListener() {
+
+        @Override
+        public void referenceDataInvalidated() {
+            invalidateNow();
+        }
+    };
+
+    /**
+     * Announces the modification to the other nodes if there is a broadcaster.
+     */
+    private void broadcast() {
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.broadcast();
+        }
+    }
+
+    /**
+     * Unregisters the listener from the broadcaster.
+     */
+    public void destroy() {
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.removeListener(invalidationListener);
+        }
+    }
+
+    /**
+     * Returns the current snapshot. The snapshot is loaded if there is no current snapshot.
+     * 
+     * @param loader
+     *            the loader of the snapshot. Cannot be <code>null</code>.
+     * @return the snapshot.
+     */
+    public NumberingPlan get(final Loader loader) {
+        if (isDirtyTransaction()) {
+            Object transactionSnapshot = transactionSynchronizationRegistry.getResource(dirtyTransactionKey);
+            if (transactionSnapshot instanceof NumberingPlan) {
+                return (NumberingPlan) transactionSnapshot;
+            }
+            NumberingPlan plan = loader.load(version.get());
+            transactionSynchronizationRegistry.putResource(dirtyTransactionKey, plan);
+            return plan;
+        }
+        NumberingPlan plan = current;
+        if (plan != null) {
+            return plan;
+        }
+        synchronized (loadLock) {
+            plan = current;
+            if (plan != null) {
+                return plan;
+            }
+            long loadVersion = version.get();
+            plan = loader.load(loadVersion);
+            current = plan;
+            if (version.get() != loadVersion) {
+                current = null;
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Returns the snapshot like {@link #get(Loader)}, except that the private snapshot of a transaction that modified
+     * the reference data is not loaded again after an invalidation. The existence checks of the modifications use it,
+     * so a transaction saving many countries or areas does not reload the numbering plan before every save.
+     * 
+     * @param loader
+     *            the loader of the snapshot. Cannot be <code>null</code>.
+     * @return the snapshot or <code>null</code> if the private snapshot of the transaction is stale, then the
+     *         database must be queried.
+     */
+    public NumberingPlan getIfNotStale(final Loader loader) {
+        if (isDirtyTransaction()) {
+            Object transactionSnapshot = transactionSynchronizationRegistry.getResource(dirtyTransactionKey);
+            return (transactionSnapshot instanceof NumberingPlan) ? (NumberingPlan) transactionSnapshot : null;
+        }
+        return get(loader);
+    }
+
+    /**
+     * Registers the listener at the broadcaster.
+     */
+    public void init() {
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.addListener(invalidationListener);
+        }
+    }
+
+    /**
+     * Drops the current snapshot immediately and after the completion of the current transaction if there is one.
+     * The private snapshot of the current transaction is dropped too. The modification is announced to the other
+     * nodes once per transaction.
+     */
+    public void invalidate() {
+        invalidateNow();
+        if ((transactionSynchronizationRegistry == null)
+                || (transactionSynchronizationRegistry.getTransactionKey() == null)) {
+            broadcast();
+            return;
+        }
+        if (isDirtyTransaction()) {
+            transactionSynchronizationRegistry.putResource(dirtyTransactionKey, STALE_SNAPSHOT);
+            return;
+        }
+        broadcast();
+        transactionSynchronizationRegistry.putResource(dirtyTransactionKey, STALE_SNAPSHOT);
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void afterCompletion(final int status) {
+                invalidateNow();
+            }
+
+            @Override
+            public void beforeCompletion() {
+            }
+        });
+    }
+
+    /**
+     * Drops the current snapshot.
+     */
+    private void invalidateNow() {
+        version.incrementAndGet();
+        current = null;
+    }
+
+    /**
+     * Checks whether the current transaction modified the reference data.
+     * 
+     * @return <code>true</code> if the current transaction modified the reference data.
+     */
+    private boolean isDirtyTransaction() {
+        return (transactionSynchronizationRegistry != null)
+                && (transactionSynchronizationRegistry.getTransactionKey() != null)
+                && (transactionSynchronizationRegistry.getResource(dirtyTransactionKey) != null);
+    }
+
+    public void setInvalidationBroadcaster(final ReferenceDataInvalidationBroadcaster invalidationBroadcaster) {
+        this.invalidationBroadcaster = invalidationBroadcaster;
+    }
+
+    public void setTransactionSynchronizationRegistry(
+            final TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+}
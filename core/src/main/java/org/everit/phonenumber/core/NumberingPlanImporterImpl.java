@@ -0,0 +1,410 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.everit.phonenumber.api.NumberingPlanImporter;
+import org.everit.phonenumber.api.dto.Area;
+import org.everit.phonenumber.api.dto.Country;
+import org.everit.phonenumber.api.dto.NumberingPlanImportResult;
+import org.everit.phonenumber.api.exceptions.InvalidNumberingPlanException;
+import org.everit.phonenumber.entity.PhoneNumberAreaEntity;
+import org.everit.phonenumber.entity.PhoneNumberAreaEntity_;
+import org.everit.phonenumber.entity.PhoneNumberCountryEntity;
+import org.everit.phonenumber.entity.PhoneNumberCountryEntity_;
+
+/**
+ * Implementation of {@link NumberingPlanImporter}. The plan is read into memory and compared with the stored rows
+ * of the listed countries, which are loaded with one query per {@link #MAX_IN_PARAMETER_COUNT} countries. The
+ * updates and inactivations are applied on the loaded entities and written by one flush, the new areas are
+ * persisted and flushed in chunks of {@link #FLUSH_CHUNK_SIZE}, so the JDBC driver can batch the statements.
+ */
+public class NumberingPlanImporterImpl implements NumberingPlanImporter {
+
+    /**
+     * The number of the columns of a line.
+     */
+    private static final int COLUMN_COUNT = 7;
+
+    /**
+     * The number of the new areas persisted before flushing and detaching them.
+     */
+    private static final int FLUSH_CHUNK_SIZE = 50;
+
+    /**
+     * The maximum number of the parameters of an IN expression.
+     */
+    private static final int MAX_IN_PARAMETER_COUNT = 1000;
+
+    /**
+     * Resets the denormalized E.164 numbers of the phone numbers of the countries given by the "codes" parameter.
+     */
+    private static final String RESET_E164_NUMBERS_QUERY = "UPDATE PhoneNumberEntity p SET p.e164Number = NULL"
+            + " WHERE p.phoneNumberArea.phoneAreaId IN (SELECT a.phoneAreaId FROM PhoneNumberAreaEntity a"
+            + " WHERE a.phoneNumberCountry.countryISO3166A2Code IN :codes)";
+
+    /**
+     * Creates the key of an area.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param callNumber
+     *            the area call number.
+     * @return the key.
+     */
+    private static String areaKey(final String countryISO3166A2Code, final String callNumber) {
+        return countryISO3166A2Code + ":" + callNumber;
+    }
+
+    /**
+     * Splitting the line into the columns. The columns are separated by commas and may be quoted with double quotes,
+     * a double quote inside a quoted column is written twice. The unquoted columns are trimmed.
+     * 
+     * @param line
+     *            the line.
+     * @param lineNumber
+     *            the number of the line.
+     * @return the columns.
+     * 
+     * @throws InvalidNumberingPlanException
+     *             if a quoted column is not closed.
+     */
+    private static List<String> splitLine(final String line, final int lineNumber) {
+        List<String> columns = new ArrayList<String>(COLUMN_COUNT);
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    column.append(c);
+                } else if ((i + 1 < line.length()) && (line.charAt(i + 1) == '"')) {
+                    column.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                columns.add(wasQuoted ? column.toString() : column.toString().trim());
+                column.setLength(0);
+                wasQuoted = false;
+            } else {
+                column.append(c);
+            }
+        }
+        if (quoted) {
+            throw new InvalidNumberingPlanException(lineNumber, "the quoted column is not closed.");
+        }
+        columns.add(wasQuoted ? column.toString() : column.toString().trim());
+        return columns;
+    }
+
+    /**
+     * The {@link EntityManager} instance.
+     */
+    private EntityManager em;
+
+    /**
+     * The {@link NumberingPlanHolder} instance.
+     */
+    private NumberingPlanHolder numberingPlanHolder;
+
+    @Override
+    public NumberingPlanImportResult importNumberingPlan(final Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("The reader parameter is null.");
+        }
+        Map<String, Country> planCountries = new LinkedHashMap<String, Country>();
+        Map<String, Area> planAreas = new LinkedHashMap<String, Area>();
+        readPlan(reader, planCountries, planAreas);
+
+        int insertedCountryCount = 0;
+        int updatedCountryCount = 0;
+        List<String> changedCallCodeCountries = new ArrayList<String>();
+        Map<String, PhoneNumberCountryEntity> countryEntities = loadCountries(planCountries.keySet());
+        for (Country country : planCountries.values()) {
+            PhoneNumberCountryEntity entity = countryEntities.get(country.getCountryISO3166A2Code());
+            if (entity == null) {
+                entity = new PhoneNumberCountryEntity();
+                entity.setCountryISO3166A2Code(country.getCountryISO3166A2Code());
+                entity.setIddPrefix(country.getIddPrefix());
+                entity.setNddPrefix(country.getNddPrefix());
+                entity.setCountryCallCode(country.getCountryCallCode());
+                entity.setActive(true);
+                em.persist(entity);
+                countryEntities.put(country.getCountryISO3166A2Code(), entity);
+                insertedCountryCount++;
+            } else if (!entity.isActive() || !country.getIddPrefix().equals(entity.getIddPrefix())
+                    || !country.getNddPrefix().equals(entity.getNddPrefix())
+                    || !country.getCountryCallCode().equals(entity.getCountryCallCode())) {
+                if (!country.getCountryCallCode().equals(entity.getCountryCallCode())) {
+                    changedCallCodeCountries.add(country.getCountryISO3166A2Code());
+                }
+                entity.setIddPrefix(country.getIddPrefix());
+                entity.setNddPrefix(country.getNddPrefix());
+                entity.setCountryCallCode(country.getCountryCallCode());
+                entity.setActive(true);
+                updatedCountryCount++;
+            }
+        }
+
+        int updatedAreaCount = 0;
+        int unchangedAreaCount = 0;
+        List<Area> newAreas = new ArrayList<Area>();
+        Map<String, PhoneNumberAreaEntity> activeAreaEntities = loadActiveAreas(planCountries.keySet());
+        Collection<PhoneNumberAreaEntity> loadedAreaEntities = new ArrayList<PhoneNumberAreaEntity>(
+                activeAreaEntities.values());
+        for (Map.Entry<String, Area> entry : planAreas.entrySet()) {
+            Area area = entry.getValue();
+            PhoneNumberAreaEntity entity = activeAreaEntities.remove(entry.getKey());
+            if (entity == null) {
+                newAreas.add(area);
+            } else if (!area.getName().equals(entity.getAreaName())
+                    || (area.getSubscriberNumberLength() != entity.getSubscriberNumberLength())) {
+                entity.setAreaName(area.getName());
+                entity.setSubscriberNumberLength(area.getSubscriberNumberLength());
+                updatedAreaCount++;
+            } else {
+                unchangedAreaCount++;
+            }
+        }
+        for (PhoneNumberAreaEntity entity : activeAreaEntities.values()) {
+            entity.setActive(false);
+        }
+        int inactivatedAreaCount = activeAreaEntities.size();
+        em.flush();
+        resetE164Numbers(changedCallCodeCountries);
+        for (PhoneNumberAreaEntity entity : loadedAreaEntities) {
+            em.detach(entity);
+        }
+
+        List<PhoneNumberAreaEntity> persistedEntities = new ArrayList<PhoneNumberAreaEntity>(FLUSH_CHUNK_SIZE);
+        for (Area area : newAreas) {
+            PhoneNumberAreaEntity entity = new PhoneNumberAreaEntity();
+            entity.setPhoneNumberCountry(countryEntities.get(area.getCountryCode()));
+            entity.setCallNumber(area.getCallNumber());
+            entity.setAreaName(area.getName());
+            entity.setSubscriberNumberLength(area.getSubscriberNumberLength());
+            entity.setActive(true);
+            em.persist(entity);
+            persistedEntities.add(entity);
+            if (persistedEntities.size() == FLUSH_CHUNK_SIZE) {
+                em.flush();
+                for (PhoneNumberAreaEntity persistedEntity : persistedEntities) {
+                    em.detach(persistedEntity);
+                }
+                persistedEntities.clear();
+            }
+        }
+        em.flush();
+
+        if ((insertedCountryCount + updatedCountryCount + newAreas.size() + updatedAreaCount
+                + inactivatedAreaCount) > 0) {
+            numberingPlanHolder.invalidate();
+        }
+        return new NumberingPlanImportResult(insertedCountryCount, updatedCountryCount, newAreas.size(),
+                updatedAreaCount, inactivatedAreaCount, unchangedAreaCount);
+    }
+
+    /**
+     * Resets the E.164 numbers of the phone numbers of the countries to <code>null</code>, because their call code
+     * was changed. The numbers are recomputed by {@link org.everit.phonenumber.api.PhoneNumberService
+     * #fillMissingE164Numbers(int)}.
+     * 
+     * @param countryISO3166A2Codes
+     *            the country codes (ISO3166-alpha-2).
+     */
+    private void resetE164Numbers(final List<String> countryISO3166A2Codes) {
+        for (int i = 0; i < countryISO3166A2Codes.size(); i += MAX_IN_PARAMETER_COUNT) {
+            em.createQuery(RESET_E164_NUMBERS_QUERY)
+                    .setParameter("codes", countryISO3166A2Codes.subList(i,
+                            Math.min(i + MAX_IN_PARAMETER_COUNT, countryISO3166A2Codes.size())))
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * Loads the active areas of the countries.
+     * 
+     * @param countryISO3166A2Codes
+     *            the country codes (ISO3166-alpha-2).
+     * @return the area entities by the key of the area.
+     */
+    private Map<String, PhoneNumberAreaEntity> loadActiveAreas(final Collection<String> countryISO3166A2Codes) {
+        Map<String, PhoneNumberAreaEntity> result = new HashMap<String, PhoneNumberAreaEntity>();
+        List<String> codeList = new ArrayList<String>(countryISO3166A2Codes);
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        for (int i = 0; i < codeList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<String> chunk = codeList.subList(i, Math.min(i + MAX_IN_PARAMETER_COUNT, codeList.size()));
+            CriteriaQuery<PhoneNumberAreaEntity> criteriaQuery = cb.createQuery(PhoneNumberAreaEntity.class);
+            Root<PhoneNumberAreaEntity> root = criteriaQuery.from(PhoneNumberAreaEntity.class);
+            criteriaQuery.where(cb.and(root.get(PhoneNumberAreaEntity_.phoneNumberCountry)
+                    .get(PhoneNumberCountryEntity_.countryISO3166A2Code).in(chunk),
+                    cb.equal(root.get(PhoneNumberAreaEntity_.active), true)));
+            for (PhoneNumberAreaEntity entity : em.createQuery(criteriaQuery).getResultList()) {
+                result.put(NumberingPlanImporterImpl.areaKey(entity.getPhoneNumberCountry()
+                        .getCountryISO3166A2Code(), entity.getCallNumber()), entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the countries.
+     * 
+     * @param countryISO3166A2Codes
+     *            the country codes (ISO3166-alpha-2).
+     * @return the existing country entities by the country code.
+     */
+    private Map<String, PhoneNumberCountryEntity> loadCountries(final Collection<String> countryISO3166A2Codes) {
+        Map<String, PhoneNumberCountryEntity> result = new HashMap<String, PhoneNumberCountryEntity>();
+        List<String> codeList = new ArrayList<String>(countryISO3166A2Codes);
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        for (int i = 0; i < codeList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<String> chunk = codeList.subList(i, Math.min(i + MAX_IN_PARAMETER_COUNT, codeList.size()));
+            CriteriaQuery<PhoneNumberCountryEntity> criteriaQuery = cb.createQuery(PhoneNumberCountryEntity.class);
+            Root<PhoneNumberCountryEntity> root = criteriaQuery.from(PhoneNumberCountryEntity.class);
+            criteriaQuery.where(root.get(PhoneNumberCountryEntity_.countryISO3166A2Code).in(chunk));
+            for (PhoneNumberCountryEntity entity : em.createQuery(criteriaQuery).getResultList()) {
+                result.put(entity.getCountryISO3166A2Code(), entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reading and validating a line of the plan.
+     * 
+     * @param line
+     *            the line.
+     * @param lineNumber
+     *            the number of the line.
+     * @param planCountries
+     *            the countries of the plan by the country code.
+     * @param planAreas
+     *            the areas of the plan by the key of the area.
+     * 
+     * @throws InvalidNumberingPlanException
+     *             if the line is invalid.
+     */
+    private void readLine(final String line, final int lineNumber, final Map<String, Country> planCountries,
+            final Map<String, Area> planAreas) {
+        List<String> columns = NumberingPlanImporterImpl.splitLine(line, lineNumber);
+        if (columns.size() != COLUMN_COUNT) {
+            throw new InvalidNumberingPlanException(lineNumber, "the line has " + columns.size()
+                    + " columns instead of " + COLUMN_COUNT + ".");
+        }
+        for (String column : columns) {
+            if (column.length() == 0) {
+                throw new InvalidNumberingPlanException(lineNumber, "a column is empty.");
+            }
+        }
+        String countryISO3166A2Code = columns.get(0);
+        if (countryISO3166A2Code.length() != 2) {
+            throw new InvalidNumberingPlanException(lineNumber, "the country code is not two characters long.");
+        }
+        int subscriberNumberLength;
+        try {
+            subscriberNumberLength = Integer.parseInt(columns.get(6));
+        } catch (NumberFormatException e) {
+            throw new InvalidNumberingPlanException(lineNumber, "the subscriber number length is not a number.");
+        }
+        if (subscriberNumberLength < 1) {
+            throw new InvalidNumberingPlanException(lineNumber, "the subscriber number length is not positive.");
+        }
+
+        Country country = new Country(countryISO3166A2Code, columns.get(2), columns.get(3), columns.get(1), true);
+        Country planCountry = planCountries.get(countryISO3166A2Code);
+        if (planCountry == null) {
+            planCountries.put(countryISO3166A2Code, country);
+        } else if (!planCountry.getCountryCallCode().equals(country.getCountryCallCode())
+                || !planCountry.getIddPrefix().equals(country.getIddPrefix())
+                || !planCountry.getNddPrefix().equals(country.getNddPrefix())) {
+            throw new InvalidNumberingPlanException(lineNumber, "the country data differs from the previous lines"
+                    + " of the country.");
+        }
+
+        String key = NumberingPlanImporterImpl.areaKey(countryISO3166A2Code, columns.get(4));
+        if (planAreas.containsKey(key)) {
+            throw new InvalidNumberingPlanException(lineNumber, "the area is listed more than once.");
+        }
+        planAreas.put(key, new Area(countryISO3166A2Code, columns.get(4), columns.get(5), subscriberNumberLength,
+                true));
+    }
+
+    /**
+     * Reading and validating the lines of the plan.
+     * 
+     * @param reader
+     *            the reader of the plan.
+     * @param planCountries
+     *            the map receiving the countries of the plan by the country code.
+     * @param planAreas
+     *            the map receiving the areas of the plan by the key of the area.
+     * 
+     * @throws InvalidNumberingPlanException
+     *             if a line is invalid.
+     */
+    private void readPlan(final Reader reader, final Map<String, Country> planCountries,
+            final Map<String, Area> planAreas) {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        int lineNumber = 0;
+        try {
+            String line = bufferedReader.readLine();
+            while (line != null) {
+                lineNumber++;
+                if ((line.trim().length() > 0) && !line.startsWith("#")) {
+                    readLine(line, lineNumber, planCountries, planAreas);
+                }
+                line = bufferedReader.readLine();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the numbering plan after line " + lineNumber + ".", e);
+        }
+    }
+
+    public void setEm(final EntityManager em) {
+        this.em = em;
+    }
+
+    public void setNumberingPlanHolder(final NumberingPlanHolder numberingPlanHolder) {
+        this.numberingPlanHolder = numberingPlanHolder;
+    }
+}
@@ -0,0 +1,453 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.everit.phonenumber.api.dto.ParsedPhoneNumber;
+
+/**
+ * Digit trie of the active countries and areas. Resolves a raw phone number into country, area and subscriber parts
+ * without touching the database. The country call codes, the IDD and NDD prefixes and the area call numbers are
+ * stored by their digits only, so for example the "1-340" call code matches the "1340" digits.
+ * <p>
+ * The instances are immutable after building, so they can be shared between threads.
+ */
+public final class NumberingPlanTrie {
+
+    /**
+     * An area stored in the trie of its country.
+     */
+    private static final class AreaEntry {
+
+        /**
+         * The id of the area.
+         */
+        private final long areaId;
+
+        /**
+         * The area call number.
+         */
+        private final String callNumber;
+
+        /**
+         * The expected length of the subscriber number.
+         */
+        private final int subscriberNumberLength;
+
+        /**
+         * The simple constructor.
+         * 
+         * @param areaId
+         *            the id of the area.
+         * @param callNumber
+         *            the area call number.
+         * @param subscriberNumberLength
+         *            the expected length of the subscriber number.
+         */
+        private AreaEntry(final long areaId, final String callNumber, final int subscriberNumberLength) {
+            this.areaId = areaId;
+            this.callNumber = callNumber;
+            this.subscriberNumberLength = subscriberNumberLength;
+        }
+    }
+
+    /**
+     * A country stored in the trie.
+     */
+    private static final class CountryEntry {
+
+        /**
+         * The country code (ISO3166-alpha-2).
+         */
+        private final String countryISO3166A2Code;
+
+        /**
+         * The country call code.
+         */
+        private final String countryCallCode;
+
+        /**
+         * The digits of the IDD prefix.
+         */
+        private final String iddDigits;
+
+        /**
+         * The digits of the NDD prefix.
+         */
+        private final String nddDigits;
+
+        /**
+         * The root of the area trie of the country.
+         */
+        private final Node<AreaEntry> areaRoot = new Node<AreaEntry>();
+
+        /**
+         * The simple constructor.
+         * 
+         * @param countryISO3166A2Code
+         *            the country code (ISO3166-alpha-2).
+         * @param countryCallCode
+         *            the country call code.
+         * @param iddDigits
+         *            the digits of the IDD prefix.
+         * @param nddDigits
+         *            the digits of the NDD prefix.
+         */
+        private CountryEntry(final String countryISO3166A2Code, final String countryCallCode,
+                final String iddDigits, final String nddDigits) {
+            this.countryISO3166A2Code = countryISO3166A2Code;
+            this.countryCallCode = countryCallCode;
+            this.iddDigits = iddDigits;
+            this.nddDigits = nddDigits;
+        }
+    }
+
+    /**
+     * A node of the digit trie.
+     * 
+     * @param <V>
+     *            the type of the values stored in the trie.
+     */
+    private static final class Node<V> {
+
+        /**
+         * The child nodes by the next digit. <code>null</code> until the first child is added.
+         */
+        private Node<V>[] children;
+
+        /**
+         * The values which digits end at this node. <code>null</code> if there is no one.
+         */
+        private List<V> values;
+
+        /**
+         * Returns the child node of the digit.
+         * 
+         * @param digit
+         *            the digit character.
+         * @return the child node or <code>null</code> if not exist.
+         */
+        private Node<V> child(final char digit) {
+            if (children == null) {
+                return null;
+            }
+            return children[digit - '0'];
+        }
+
+        /**
+         * Stores the value under the digits.
+         * 
+         * @param digits
+         *            the digits. Cannot be empty.
+         * @param value
+         *            the value to store.
+         */
+        @SuppressWarnings("unchecked")
+        private void put(final String digits, final V value) {
+            Node<V> node = this;
+            for (int i = 0; i < digits.length(); i++) {
+                if (node.children == null) {
+                    node.children = new Node[DIGIT_COUNT];
+                }
+                int index = digits.charAt(i) - '0';
+                if (node.children[index] == null) {
+                    node.children[index] = new Node<V>();
+                }
+                node = node.children[index];
+            }
+            if (node.values == null) {
+                node.values = new ArrayList<V>(1);
+            }
+            node.values.add(value);
+        }
+    }
+
+    /**
+     * The number of the possible digits.
+     */
+    private static final int DIGIT_COUNT = 10;
+
+    /**
+     * Returns the digits of the number. Spaces, dashes, dots, slashes and parentheses are skipped.
+     * 
+     * @param number
+     *            the number.
+     * @return the digits of the number or <code>null</code> if the number contains any other character.
+     */
+    private static String digitsOf(final String number) {
+        StringBuilder sb = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if ((c >= '0') && (c <= '9')) {
+                sb.append(c);
+            } else if ((c != ' ') && (c != '-') && (c != '.') && (c != '/') && (c != '(') && (c != ')')) {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the digits of a prefix or code stored in the database. All of the other characters are skipped (for
+     * example the "P" pause character of the "8P10" IDD prefix).
+     * 
+     * @param code
+     *            the code. May be <code>null</code>.
+     * @return the digits of the code. Empty string if the code is <code>null</code>.
+     */
+    static String digitsOfCode(final String code) {
+        if (code == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(code.length());
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if ((c >= '0') && (c <= '9')) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The root of the country call code trie.
+     */
+    private final Node<CountryEntry> countryRoot = new Node<CountryEntry>();
+
+    /**
+     * The root of the trie of the IDD prefixes of all countries.
+     */
+    private final Node<String> iddRoot = new Node<String>();
+
+    /**
+     * The countries by the country code (ISO3166-alpha-2).
+     */
+    private final Map<String, CountryEntry> countries = new HashMap<String, CountryEntry>();
+
+    /**
+     * Adds an active area to the trie. The country of the area must be added before.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2) of the area.
+     * @param areaId
+     *            the id of the area.
+     * @param callNumber
+     *            the area call number.
+     * @param subscriberNumberLength
+     *            the expected length of the subscriber number.
+     */
+    void addArea(final String countryISO3166A2Code, final long areaId, final String callNumber,
+            final int subscriberNumberLength) {
+        CountryEntry country = countries.get(countryISO3166A2Code);
+        if (country == null) {
+            return;
+        }
+        String digits = NumberingPlanTrie.digitsOfCode(callNumber);
+        if (digits.isEmpty()) {
+            return;
+        }
+        country.areaRoot.put(digits, new AreaEntry(areaId, callNumber, subscriberNumberLength));
+    }
+
+    /**
+     * Adds an active country to the trie.
+     * 
+     * @param countryISO3166A2Code
+     *            the country code (ISO3166-alpha-2).
+     * @param iddPrefix
+     *            the IDD prefix of the country.
+     * @param nddPrefix
+     *            the NDD prefix of the country.
+     * @param countryCallCode
+     *            the country call code.
+     */
+    void addCountry(final String countryISO3166A2Code, final String iddPrefix, final String nddPrefix,
+            final String countryCallCode) {
+        String callCodeDigits = NumberingPlanTrie.digitsOfCode(countryCallCode);
+        String iddDigits = NumberingPlanTrie.digitsOfCode(iddPrefix);
+        CountryEntry country = new CountryEntry(countryISO3166A2Code, countryCallCode, iddDigits,
+                NumberingPlanTrie.digitsOfCode(nddPrefix));
+        countries.put(countryISO3166A2Code, country);
+        if (!callCodeDigits.isEmpty()) {
+            countryRoot.put(callCodeDigits, country);
+        }
+        if (!iddDigits.isEmpty()) {
+            iddRoot.put(iddDigits, iddDigits);
+        }
+    }
+
+    /**
+     * Parses the raw phone number.
+     * <p>
+     * A number starting with "+" is always resolved in international form. Without a caller country the other numbers
+     * are resolved in international form with or without any known IDD prefix. With a caller country the IDD prefix
+     * of the caller country introduces the international form and the NDD prefix of the caller country introduces the
+     * national form.
+     * 
+     * @param rawNumber
+     *            the raw phone number. Cannot be <code>null</code>.
+     * @param callerCountryISO3166A2Code
+     *            the country code of the caller or <code>null</code> if not known.
+     * @return the {@link ParsedPhoneNumber} if the number can be resolved, otherwise <code>null</code>.
+     */
+    public ParsedPhoneNumber parse(final String rawNumber, final String callerCountryISO3166A2Code) {
+        String number = rawNumber.trim();
+        boolean international = number.startsWith("+");
+        if (international) {
+            number = number.substring(1);
+        }
+        String digits = NumberingPlanTrie.digitsOf(number);
+        if ((digits == null) || digits.isEmpty()) {
+            return null;
+        }
+
+        if (international) {
+            return resolveCountry(countryRoot, digits, 0);
+        }
+
+        CountryEntry caller = null;
+        if (callerCountryISO3166A2Code != null) {
+            caller = countries.get(callerCountryISO3166A2Code);
+        }
+        if (caller == null) {
+            ParsedPhoneNumber result = resolveCountry(countryRoot, digits, 0);
+            if (result == null) {
+                result = resolveAfterIdd(iddRoot, digits, 0);
+            }
+            return result;
+        }
+
+        if (!caller.iddDigits.isEmpty() && digits.startsWith(caller.iddDigits)) {
+            ParsedPhoneNumber result = resolveCountry(countryRoot, digits, caller.iddDigits.length());
+            if (result != null) {
+                return result;
+            }
+        }
+        if (digits.startsWith(caller.nddDigits)) {
+            ParsedPhoneNumber result = resolveArea(caller, caller.areaRoot, digits, caller.nddDigits.length());
+            if (result != null) {
+                return result;
+            }
+        }
+        return resolveCountry(countryRoot, digits, 0);
+    }
+
+    /**
+     * Resolves the area and the subscriber number. The longest matching area call number wins.
+     * 
+     * @param country
+     *            the resolved country.
+     * @param node
+     *            the current node of the area trie.
+     * @param digits
+     *            the digits of the number.
+     * @param position
+     *            the position of the next digit.
+     * @return the {@link ParsedPhoneNumber} or <code>null</code> if cannot be resolved.
+     */
+    private ParsedPhoneNumber resolveArea(final CountryEntry country, final Node<AreaEntry> node,
+            final String digits, final int position) {
+        if (position < digits.length()) {
+            Node<AreaEntry> child = node.child(digits.charAt(position));
+            if (child != null) {
+                ParsedPhoneNumber result = resolveArea(country, child, digits, position + 1);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        if (node.values != null) {
+            int subscriberNumberLength = digits.length() - position;
+            for (AreaEntry area : node.values) {
+                if (area.subscriberNumberLength == subscriberNumberLength) {
+                    return new ParsedPhoneNumber(country.countryISO3166A2Code, country.countryCallCode,
+                            area.areaId, area.callNumber, digits.substring(position));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the number after any of the known IDD prefixes.
+     * 
+     * @param node
+     *            the current node of the IDD trie.
+     * @param digits
+     *            the digits of the number.
+     * @param position
+     *            the position of the next digit.
+     * @return the {@link ParsedPhoneNumber} or <code>null</code> if cannot be resolved.
+     */
+    private ParsedPhoneNumber resolveAfterIdd(final Node<String> node, final String digits, final int position) {
+        if (position < digits.length()) {
+            Node<String> child = node.child(digits.charAt(position));
+            if (child != null) {
+                ParsedPhoneNumber result = resolveAfterIdd(child, digits, position + 1);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        if (node.values != null) {
+            return resolveCountry(countryRoot, digits, position);
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the country, the area and the subscriber number. The longest matching country call code wins.
+     * 
+     * @param node
+     *            the current node of the country trie.
+     * @param digits
+     *            the digits of the number.
+     * @param position
+     *            the position of the next digit.
+     * @return the {@link ParsedPhoneNumber} or <code>null</code> if cannot be resolved.
+     */
+    private ParsedPhoneNumber resolveCountry(final Node<CountryEntry> node, final String digits,
+            final int position) {
+        if (position < digits.length()) {
+            Node<CountryEntry> child = node.child(digits.charAt(position));
+            if (child != null) {
+                ParsedPhoneNumber result = resolveCountry(child, digits, position + 1);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        if (node.values != null) {
+            for (CountryEntry country : node.values) {
+                ParsedPhoneNumber result = resolveArea(country, country.areaRoot, digits, position);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+}
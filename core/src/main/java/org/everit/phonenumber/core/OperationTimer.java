@@ -0,0 +1,140 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.everit.phonenumber.api.dto.OperationStatistics;
+
+/**
+ * Lock-free recorder of the latencies and the failures of one operation. The latencies are collected into a fixed
+ * histogram, so recording never allocates except for the first failure of an exception type.
+ */
+public class OperationTimer {
+
+    /**
+     * The inclusive upper bounds of the histogram buckets in nanoseconds.
+     */
+    private static final long[] BUCKET_BOUNDS = new long[] { 100000L, 250000L, 500000L, 1000000L, 2500000L,
+            5000000L, 10000000L, 25000000L, 50000000L, 100000000L, 250000000L, 500000000L, 1000000000L,
+            2500000000L, 5000000000L, 10000000000L };
+
+    /**
+     * Returns the upper bounds of the histogram buckets.
+     * 
+     * @return the copy of the upper bounds in nanoseconds.
+     */
+    public static long[] getBucketBounds() {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * The number of the invocations.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The number of the failed invocations.
+     */
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * The number of the failed invocations by the simple name of the exception class.
+     */
+    private final ConcurrentMap<String, AtomicLong> errorCountsByType = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * The sum of the latencies in nanoseconds.
+     */
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * The highest latency in nanoseconds.
+     */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * The number of the invocations by the histogram buckets.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+    /**
+     * Records an invocation.
+     * 
+     * @param nanos
+     *            the latency of the invocation in nanoseconds.
+     * @param error
+     *            the exception thrown by the invocation or <code>null</code> if the invocation succeeded.
+     */
+    public void record(final long nanos, final Throwable error) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while ((nanos > max) && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+        int bucket = Arrays.binarySearch(BUCKET_BOUNDS, nanos);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        buckets.incrementAndGet(bucket);
+
+        if (error != null) {
+            errorCount.incrementAndGet();
+            String type = error.getClass().getSimpleName();
+            AtomicLong typeCount = errorCountsByType.get(type);
+            if (typeCount == null) {
+                AtomicLong newTypeCount = new AtomicLong();
+                typeCount = errorCountsByType.putIfAbsent(type, newTypeCount);
+                if (typeCount == null) {
+                    typeCount = newTypeCount;
+                }
+            }
+            typeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a snapshot of the statistics. The values are read one by one, so a snapshot taken during recording
+     * may be slightly inconsistent.
+     * 
+     * @return the statistics.
+     */
+    public OperationStatistics snapshot() {
+        Map<String, Long> errorCounts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errorCountsByType.entrySet()) {
+            errorCounts.put(entry.getKey(), entry.getValue().get());
+        }
+        long[] histogram = new long[buckets.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = buckets.get(i);
+        }
+        return new OperationStatistics(count.get(), errorCount.get(), errorCounts, totalNanos.get(),
+                maxNanos.get(), histogram);
+    }
+}
@@ -21,16 +21,28 @@ package org.everit.phonenumber.core;
  * MA 02110-1301  USA
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
@@ -39,14 +51,23 @@ import org.everit.phonenumber.api.PhoneVerificationResult;
 import org.everit.phonenumber.api.dto.Area;
 import org.everit.phonenumber.api.dto.CallablePhoneNumber;
 import org.everit.phonenumber.api.dto.Country;
+import org.everit.phonenumber.api.dto.ParsedPhoneNumber;
+import org.everit.phonenumber.api.dto.PhoneNumberBatchSaveResult;
+import org.everit.phonenumber.api.dto.PhoneNumberData;
+import org.everit.phonenumber.api.dto.VerificationRequestBatchResult;
 import org.everit.phonenumber.api.enums.PhoneNumberConfirmationResult;
 import org.everit.phonenumber.api.enums.VerificationChannel;
 import org.everit.phonenumber.api.exceptions.DuplicateCountryException;
+import org.everit.phonenumber.api.exceptions.DuplicatePhoneNumberException;
 import org.everit.phonenumber.api.exceptions.DuplicateSelectableAreaException;
 import org.everit.phonenumber.api.exceptions.InvalidPhoneNumberException;
 import org.everit.phonenumber.api.exceptions.NoSuchAreaException;
+import org.everit.phonenumber.api.exceptions.NoSuchCountryException;
 import org.everit.phonenumber.api.exceptions.NoSuchPhoneNumberException;
 import org.everit.phonenumber.api.exceptions.NonPositiveSubscriberNumberLengthException;
+import org.everit.phonenumber.api.exceptions.SuppressedPhoneNumberException;
+import org.everit.phonenumber.api.exceptions.VerificationRateLimitExceededException;
+import org.everit.phonenumber.api.util.PhoneNumberSet;
 import org.everit.phonenumber.entity.PhoneNumberAreaEntity;
 import org.everit.phonenumber.entity.PhoneNumberAreaEntity_;
 import org.everit.phonenumber.entity.PhoneNumberCountryEntity;
@@ -57,20 +78,15 @@ import org.everit.phonenumber.entity.PhoneNumberVerifiablePhoneEntity;
 import org.everit.phonenumber.entity.PhoneNumberVerifiablePhoneEntity_;
 import org.everit.phonenumber.entity.PhoneNumberVerificationRequestEntity;
 import org.everit.smssender.api.MessageFormat;
-import org.everit.smssender.api.SMSSender;
-import org.everit.util.core.velocity.VelocityUtil;
 import org.everit.verifiabledata.api.VerifyService;
 import org.everit.verifiabledata.api.dto.VerifiableDataCreation;
+import org.everit.verifiabledata.api.dto.VerificationRequest;
 import org.everit.verifiabledata.api.dto.VerificationResult;
 import org.everit.verifiabledata.api.enums.TokenUsageResult;
 import org.everit.verifiabledata.api.enums.VerificationLengthBase;
-import org.everit.verifiabledata.api.exceptions.NoSuchVerifiableDataException;
-import org.everit.verifiabledata.api.exceptions.NoSuchVerificationRequestException;
 import org.everit.verifiabledata.api.exceptions.NonPositiveVerificationLength;
 import org.everit.verifiabledata.entity.VerifiableDataEntity;
-import org.everit.verifiabledata.entity.VerifiableDataEntity_;
 import org.everit.verifiabledata.entity.VerificationRequestEntity;
-import org.everit.verifiabledata.entity.VerificationRequestEntity_;
 
 /**
  * Implementation of the {@link PhoneNumberService}.
@@ -78,23 +94,55 @@ import org.everit.verifiabledata.entity.VerificationRequestEntity_;
 public class PhoneNumberServiceImpl implements PhoneNumberService {
 
     /**
-     * Setting the firstResult and maxResult attribute the query.
+     * The number of the entities persisted between two flushes by the batch methods. Should be the same as the
+     * <code>hibernate.jdbc.batch_size</code> property of the persistence unit.
+     */
+    private static final int FLUSH_CHUNK_SIZE = 50;
+
+    /**
+     * The maximum number of the parameters passed to one IN expression.
+     */
+    private static final int MAX_IN_PARAMETER_COUNT = 1000;
+
+    /**
+     * The bulk update inactivating the active areas with the given ids. JPA 2.0 has no criteria API for bulk
+     * updates, so the statement is JPQL.
+     */
+    private static final String INACTIVATE_AREAS_QUERY = "UPDATE PhoneNumberAreaEntity a SET a.active = false"
+            + " WHERE a.active = true AND a.phoneAreaId IN (:areaIds)";
+
+    /**
+     * The bulk update inactivating the country with the given code.
+     */
+    private static final String INACTIVATE_COUNTRY_QUERY = "UPDATE PhoneNumberCountryEntity c SET c.active = false"
+            + " WHERE c.active = true AND c.countryISO3166A2Code = :countryISO3166A2Code";
+
+    /**
+     * The bulk update inactivating all active areas of the country with the given code in one statement.
+     */
+    private static final String INACTIVATE_COUNTRY_AREAS_QUERY = "UPDATE PhoneNumberAreaEntity a"
+            + " SET a.active = false WHERE a.active = true"
+            + " AND a.phoneNumberCountry.countryISO3166A2Code = :countryISO3166A2Code";
+
+    /**
+     * Checking the range selected in the same way as the firstResult and maxResult attributes select it from the
+     * result of a query.
      * 
-     * @param query
-     *            the query what to setting.
      * @param startPosition
      *            the first index of the list or null if not defined.
      * @param maxResultCount
      *            the maximum number of elements or null if not defined.
+     * 
+     * @throws IllegalArgumentException
+     *             if the startPosition or the maxResultCount is negative.
      */
-    private static void applyRangeToQuery(final TypedQuery<?> query, final Long startPosition,
-            final Long maxResultCount) {
-        if (startPosition != null) {
-            query.setFirstResult(startPosition.intValue());
+    private static void checkRange(final Long startPosition, final Long maxResultCount) {
+        if ((startPosition != null) && (startPosition < 0)) {
+            throw new IllegalArgumentException("The startPosition parameter is negative.");
         }
 
-        if (maxResultCount != null) {
-            query.setMaxResults(maxResultCount.intValue());
+        if ((maxResultCount != null) && (maxResultCount < 0)) {
+            throw new IllegalArgumentException("The maxResultCount parameter is negative.");
         }
     }
 
@@ -109,9 +157,55 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
     private VerifyService verifyService;
 
     /**
-     * The {@link SMSSender} instance.
+     * The {@link SMSDispatcher} instance.
+     */
+    private SMSDispatcher smsDispatcher;
+
+    /**
+     * The {@link NumberingPlanHolder} instance.
+     */
+    private NumberingPlanHolder numberingPlanHolder;
+
+    /**
+     * Loads the {@link NumberingPlan} snapshot for the {@link NumberingPlanHolder}.
+     */
+    private final NumberingPlanHolder.Loader numberingPlanLoader = new NumberingPlanHolder.Loader() {
+
+        @Override
+        public NumberingPlan load(final long version) {
+            return loadNumberingPlan(version);
+        }
+    };
+
+    /**
+     * The {@link VelocityTemplateCache} instance.
      */
-    private SMSSender smsSender;
+    private VelocityTemplateCache velocityTemplateCache;
+
+    /**
+     * The {@link VerificationTokenIndex} instance.
+     */
+    private VerificationTokenIndex verificationTokenIndex;
+
+    /**
+     * The {@link VerificationRateLimiter} instance.
+     */
+    private VerificationRateLimiter verificationRateLimiter;
+
+    /**
+     * The {@link PhoneNumberServiceMetricsImpl} instance.
+     */
+    private PhoneNumberServiceMetricsImpl metrics;
+
+    /**
+     * The criteria queries built once on the first use or <code>null</code> if not built yet.
+     */
+    private volatile PreparedQueries preparedQueries;
+
+    /**
+     * The suppressed phone numbers. No verification request is created for them.
+     */
+    private volatile PhoneNumberSet suppressedPhoneNumbers = PhoneNumberSet.EMPTY;
 
     @Override
     public void createVerificationRequestViaSMS(final long phoneNumberId, final String messagetemplate,
@@ -122,37 +216,164 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
                     + " verificationLengthBase is null. Cannot be null.");
         }
 
-        if (!existPhoneNumber(phoneNumberId)) {
-            throw new NoSuchPhoneNumberException();
-        }
-
         if (verificationLength <= 0.0) {
             throw new NonPositiveVerificationLength();
         }
 
+        if (!verificationRateLimiter.tryAcquirePhoneNumber(phoneNumberId)) {
+            throw new VerificationRateLimitExceededException();
+        }
+
+        CallablePhoneNumber callablePhoneNumber = getCallablePhoneNumberByPhoneNumberId(phoneNumberId);
+        if (callablePhoneNumber == null) {
+            throw new NoSuchPhoneNumberException();
+        }
+        if (suppressedPhoneNumbers.contains(callablePhoneNumber)) {
+            throw new SuppressedPhoneNumberException();
+        }
+        if (!verificationRateLimiter.tryAcquireCountry(callablePhoneNumber.getCountryCallCode())) {
+            throw new VerificationRateLimitExceededException();
+        }
+
         VerifiableDataCreation verifiableDataCreation = verifyService.createVerifiableData(tokenValidityEndDate,
                 verificationLength, verificationLengthBase);
         if (verifiableDataCreation != null) {
-            saveVerifiablePhone(phoneNumberId, verifiableDataCreation.getVerifiableDataId(),
-                    verifiableDataCreation.getVerificationRequest().getVerificationRequestId(),
-                    VerificationChannel.SMS);
+            VerificationRequest verificationRequest = verifiableDataCreation.getVerificationRequest();
+            long verifiablePhoneId = saveVerifiablePhone(phoneNumberId, verifiableDataCreation.getVerifiableDataId(),
+                    verificationRequest.getVerificationRequestId(), VerificationChannel.SMS);
+            verificationTokenIndex.put(verificationRequest.getVerifyTokenUUID(),
+                    verifiableDataCreation.getVerifiableDataId(), verifiablePhoneId, tokenValidityEndDate);
+            verificationTokenIndex.put(verificationRequest.getRejectTokenUUID(),
+                    verifiableDataCreation.getVerifiableDataId(), verifiablePhoneId, tokenValidityEndDate);
 
-            em.flush();
             Map<String, Object> variables = new HashMap<String, Object>();
-            variables.put("acceptToken", verifiableDataCreation.getVerificationRequest().getVerifyTokenUUID());
-            variables.put("rejectToken", verifiableDataCreation.getVerificationRequest().getRejectTokenUUID());
-            String messageBody = VelocityUtil.processVelocityTemplateFromString(messagetemplate, "ERROR",
-                    variables);
-
-            CallablePhoneNumber callablePhoneNumber = getCallablePhoneNumberByPhoneNumberId(phoneNumberId);
+            variables.put("acceptToken", verificationRequest.getVerifyTokenUUID());
+            variables.put("rejectToken", verificationRequest.getRejectTokenUUID());
+            long mergeStartTime = System.nanoTime();
+            Throwable mergeError = null;
+            String messageBody;
+            try {
+                messageBody = velocityTemplateCache.merge(messagetemplate, variables);
+            } catch (RuntimeException e) {
+                mergeError = e;
+                throw e;
+            } finally {
+                metrics.recordOperation("velocity.merge", System.nanoTime() - mergeStartTime, mergeError);
+            }
 
-            smsSender.sendMessage(callablePhoneNumber.getCountryCallCode(), callablePhoneNumber.getAreaCallNumber(),
+            smsDispatcher.dispatch(callablePhoneNumber.getCountryCallCode(), callablePhoneNumber.getAreaCallNumber(),
                     callablePhoneNumber.getSubscriberNumber(), callablePhoneNumber.getExtension(), messageBody,
                     MessageFormat.UNICODE, true);
         }
 
     }
 
+    @Override
+    public VerificationRequestBatchResult createVerificationRequestsViaSMS(final Collection<Long> phoneNumberIds,
+            final String messagetemplate, final Date tokenValidityEndDate, final long verificationLength,
+            final VerificationLengthBase verificationLengthBase) {
+        if ((phoneNumberIds == null) || (messagetemplate == null) || (tokenValidityEndDate == null)
+                || (verificationLengthBase == null)) {
+            throw new IllegalArgumentException("The phoneNumberIds or messagetemplate or tokenValidityEndData or"
+                    + " verificationLengthBase is null. Cannot be null.");
+        }
+
+        if (verificationLength <= 0.0) {
+            throw new NonPositiveVerificationLength();
+        }
+
+        Set<Long> phoneNumberIdSet = new HashSet<Long>(phoneNumberIds);
+        if (phoneNumberIdSet.contains(null)) {
+            throw new IllegalArgumentException("The phoneNumberIds parameter contains null.");
+        }
+        // the rate limited phone numbers are not loaded
+        List<Long> allowedPhoneNumberIds = new ArrayList<Long>(phoneNumberIdSet.size());
+        Set<Long> rateLimitedPhoneNumberIdSet = new HashSet<Long>();
+        for (Long phoneNumberId : phoneNumberIdSet) {
+            if (verificationRateLimiter.tryAcquirePhoneNumber(phoneNumberId)) {
+                allowedPhoneNumberIds.add(phoneNumberId);
+            } else {
+                rateLimitedPhoneNumberIdSet.add(phoneNumberId);
+            }
+        }
+        Map<Long, CallablePhoneNumber> callablePhoneNumbers = getCallablePhoneNumbers(allowedPhoneNumberIds);
+        PhoneNumberSet suppressed = suppressedPhoneNumbers;
+
+        List<Long> missingPhoneNumberIds = new ArrayList<Long>();
+        List<Long> suppressedPhoneNumberIds = new ArrayList<Long>();
+        List<Long> rateLimitedPhoneNumberIds = new ArrayList<Long>();
+        Set<Long> processedPhoneNumberIds = new HashSet<Long>();
+        List<Long> recipientIds = new ArrayList<Long>();
+        List<CallablePhoneNumber> recipients = new ArrayList<CallablePhoneNumber>();
+        List<Map<String, Object>> variablesList = new ArrayList<Map<String, Object>>();
+        List<PhoneNumberVerificationRequestEntity> persistedEntities =
+                new ArrayList<PhoneNumberVerificationRequestEntity>(FLUSH_CHUNK_SIZE);
+        List<VerifiableDataCreation> persistedCreations = new ArrayList<VerifiableDataCreation>(FLUSH_CHUNK_SIZE);
+        for (Long phoneNumberId : phoneNumberIds) {
+            if (!processedPhoneNumberIds.add(phoneNumberId)) {
+                continue;
+            }
+            if (rateLimitedPhoneNumberIdSet.contains(phoneNumberId)) {
+                rateLimitedPhoneNumberIds.add(phoneNumberId);
+                continue;
+            }
+            CallablePhoneNumber callablePhoneNumber = callablePhoneNumbers.get(phoneNumberId);
+            if (callablePhoneNumber == null) {
+                missingPhoneNumberIds.add(phoneNumberId);
+                continue;
+            }
+            if (suppressed.contains(callablePhoneNumber)) {
+                suppressedPhoneNumberIds.add(phoneNumberId);
+                continue;
+            }
+            if (!verificationRateLimiter.tryAcquireCountry(callablePhoneNumber.getCountryCallCode())) {
+                rateLimitedPhoneNumberIds.add(phoneNumberId);
+                continue;
+            }
+
+            VerifiableDataCreation verifiableDataCreation = verifyService.createVerifiableData(tokenValidityEndDate,
+                    verificationLength, verificationLengthBase);
+            if (verifiableDataCreation == null) {
+                continue;
+            }
+            VerificationRequest verificationRequest = verifiableDataCreation.getVerificationRequest();
+            persistedEntities.add(persistVerificationRequest(phoneNumberId,
+                    verifiableDataCreation.getVerifiableDataId(), verificationRequest.getVerificationRequestId(),
+                    VerificationChannel.SMS));
+            persistedCreations.add(verifiableDataCreation);
+            if (persistedEntities.size() == FLUSH_CHUNK_SIZE) {
+                flushVerificationRequestEntities(persistedEntities, persistedCreations, tokenValidityEndDate);
+            }
+
+            Map<String, Object> variables = new HashMap<String, Object>();
+            variables.put("acceptToken", verificationRequest.getVerifyTokenUUID());
+            variables.put("rejectToken", verificationRequest.getRejectTokenUUID());
+            variablesList.add(variables);
+            recipientIds.add(phoneNumberId);
+            recipients.add(callablePhoneNumber);
+        }
+        flushVerificationRequestEntities(persistedEntities, persistedCreations, tokenValidityEndDate);
+
+        long mergeStartTime = System.nanoTime();
+        Throwable mergeError = null;
+        List<String> messageBodies;
+        try {
+            messageBodies = velocityTemplateCache.mergeAll(messagetemplate, variablesList);
+        } catch (RuntimeException e) {
+            mergeError = e;
+            throw e;
+        } finally {
+            metrics.recordOperation("velocity.mergeAll", System.nanoTime() - mergeStartTime, mergeError);
+        }
+
+        // filled by the dispatcher after the commit
+        List<Long> undeliveredPhoneNumberIds = Collections.synchronizedList(new ArrayList<Long>());
+        smsDispatcher.dispatchAll(recipientIds, recipients, messageBodies, MessageFormat.UNICODE, true,
+                undeliveredPhoneNumberIds);
+        return new VerificationRequestBatchResult(missingPhoneNumberIds, suppressedPhoneNumberIds,
+                rateLimitedPhoneNumberIds, undeliveredPhoneNumberIds);
+    }
+
     /**
      * /** Determine the phone number confirmation result.
      * 
@@ -174,7 +395,7 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
     }
 
     /**
-     * Checks the exist the area based on country code (ISO3166-alpha-2) and call number.
+     * Checks the exist the active area based on country code (ISO3166-alpha-2) and call number.
      * 
      * @param countryISO3166A2Code
      *            the country code (ISO3166-alpha-2).
@@ -184,27 +405,26 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      */
     private boolean existActiveAreaByCountryCodeAndCallNumber(final String countryISO3166A2Code,
             final String callNumber) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<PhoneNumberAreaEntity> root =
-                criteriaQuery.from(PhoneNumberAreaEntity.class);
-
-        criteriaQuery.select(cb.count(root));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberAreaEntity_.callNumber),
-                callNumber);
-        Predicate and = cb.and(
-                predicate,
-                cb.equal(root.get(PhoneNumberAreaEntity_.phoneNumberCountry),
-                        em.getReference(PhoneNumberCountryEntity.class, countryISO3166A2Code)));
-
-        criteriaQuery.where(cb.and(and, cb.equal(root.get(PhoneNumberAreaEntity_.active), true)));
-        Long count = em.createQuery(criteriaQuery).getSingleResult();
-        if (count == 1) {
+        NumberingPlan numberingPlan = numberingPlanHolder.getIfNotStale(numberingPlanLoader);
+        if ((numberingPlan != null) && (numberingPlan.getActiveAreaId(countryISO3166A2Code, callNumber) != null)) {
             return true;
         }
-        return false;
+        TypedQuery<Long> query = em.createQuery(getPreparedQueries().getActiveAreaIdQuery())
+                .setParameter(PreparedQueries.COUNTRY_CODE_PARAMETER, countryISO3166A2Code)
+                .setParameter(PreparedQueries.CALL_NUMBER_PARAMETER, callNumber);
+        return existAny(query);
+    }
+
+    /**
+     * Checks the query has any result or not. Only the first row is fetched, so the database can stop at the first
+     * match of an index instead of counting all of the matching rows.
+     * 
+     * @param query
+     *            the query. Should select a key column only.
+     * @return <code>true</code> if the query has at least one result, otherwise return <code>false</code>.
+     */
+    private boolean existAny(final TypedQuery<?> query) {
+        return !query.setMaxResults(1).getResultList().isEmpty();
     }
 
     /**
@@ -215,101 +435,156 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      * @return <code>true</code> if exist country, otherwise return <code>false</code>.
      */
     private boolean existCountry(final String countryISO3166A2Code) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<PhoneNumberCountryEntity> root =
-                criteriaQuery.from(PhoneNumberCountryEntity.class);
-
-        criteriaQuery.select(cb.count(root));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberCountryEntity_.countryISO3166A2Code), countryISO3166A2Code);
-
-        criteriaQuery.where(predicate);
-        Long count = em.createQuery(criteriaQuery).getSingleResult();
-        if (count == 1) {
+        NumberingPlan numberingPlan = numberingPlanHolder.getIfNotStale(numberingPlanLoader);
+        if ((numberingPlan != null) && (numberingPlan.getCountry(countryISO3166A2Code) != null)) {
             return true;
         }
-        return false;
+        return existAny(em.createQuery(getPreparedQueries().getCountryCodeQuery())
+                .setParameter(PreparedQueries.COUNTRY_CODE_PARAMETER, countryISO3166A2Code));
+    }
+
+    @Override
+    public int fillMissingE164Numbers(final int maxResultCount) {
+        if (maxResultCount < 1) {
+            throw new IllegalArgumentException("The maxResultCount parameter is not positive.");
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<PhoneNumberEntity> criteriaQuery = cb.createQuery(PhoneNumberEntity.class);
+        Root<PhoneNumberEntity> root = criteriaQuery.from(PhoneNumberEntity.class);
+        root.fetch(PhoneNumberEntity_.phoneNumberArea).fetch(PhoneNumberAreaEntity_.phoneNumberCountry);
+        criteriaQuery.where(cb.isNull(root.get(PhoneNumberEntity_.e164Number)));
+        criteriaQuery.orderBy(cb.asc(root.get(PhoneNumberEntity_.phoneNumberId)));
+        List<PhoneNumberEntity> resultList = em.createQuery(criteriaQuery).setMaxResults(maxResultCount)
+                .getResultList();
+        for (PhoneNumberEntity entity : resultList) {
+            PhoneNumberAreaEntity areaEntity = entity.getPhoneNumberArea();
+            entity.setE164Number(NumberingPlan.e164Prefix(areaEntity.getPhoneNumberCountry().getCountryCallCode(),
+                    areaEntity.getCallNumber()) + entity.getSubScriberNumber());
+        }
+        em.flush();
+        return resultList.size();
     }
 
     /**
-     * Checks the phone number exist or not.
+     * Flushing the persisted phone number entities to the database. After the flush the ids of the entities are
+     * stored in the phoneNumberIds list and the entities are detached to keep the persistence context small.
      * 
-     * @param phoneNumberId
-     *            the id of the phone number record.
-     * @return <code>true</code> if exist phone number, otherwise return <code>false</code>.
+     * @param persistedEntities
+     *            the persisted entities by their index. The map is cleared after the flush.
+     * @param phoneNumberIds
+     *            the ids of the phone numbers by index.
      */
-    private boolean existPhoneNumber(final long phoneNumberId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<PhoneNumberEntity> root =
-                criteriaQuery.from(PhoneNumberEntity.class);
-
-        criteriaQuery.select(cb.count(root));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberEntity_.phoneNumberId), phoneNumberId);
-
-        criteriaQuery.where(predicate);
-        Long count = em.createQuery(criteriaQuery).getSingleResult();
-        if (count == 1) {
-            return true;
+    private void flushPhoneNumberEntities(final Map<Integer, PhoneNumberEntity> persistedEntities,
+            final List<Long> phoneNumberIds) {
+        if (persistedEntities.isEmpty()) {
+            return;
+        }
+        em.flush();
+        for (Map.Entry<Integer, PhoneNumberEntity> entry : persistedEntities.entrySet()) {
+            phoneNumberIds.set(entry.getKey(), entry.getValue().getPhoneNumberId());
+            em.detach(entry.getValue());
         }
-        return false;
+        persistedEntities.clear();
     }
 
     /**
-     * Checks the verifiable data is exist or not.
+     * Flushing the persisted verification request entities to the database. After the flush the tokens of the
+     * requests are registered in the {@link VerificationTokenIndex} and the entities are detached to keep the
+     * persistence context small.
      * 
-     * @param verifiableDataId
-     *            the id of the verifiable data.
-     * @return <code>true</code> if exist verifiable data, otherwise return <code>false</code>.
+     * @param persistedEntities
+     *            the persisted verification request entities. The list is cleared after the flush.
+     * @param persistedCreations
+     *            the verifiable data creations of the entities in the same order. The list is cleared after the
+     *            flush.
+     * @param tokenValidityEndDate
+     *            the token validity end date of the requests.
      */
-    private boolean existVerifiableData(final long verifiableDataId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<VerifiableDataEntity> root =
-                criteriaQuery.from(VerifiableDataEntity.class);
-
-        criteriaQuery.select(cb.count(root));
-
-        Predicate predicate = cb.equal(root.get(VerifiableDataEntity_.verifiableDataId), verifiableDataId);
-
-        criteriaQuery.where(predicate);
-        Long count = em.createQuery(criteriaQuery).getSingleResult();
-        if (count > 0) {
-            return true;
+    private void flushVerificationRequestEntities(final List<PhoneNumberVerificationRequestEntity> persistedEntities,
+            final List<VerifiableDataCreation> persistedCreations, final Date tokenValidityEndDate) {
+        if (persistedEntities.isEmpty()) {
+            return;
+        }
+        em.flush();
+        for (int i = 0; i < persistedEntities.size(); i++) {
+            PhoneNumberVerificationRequestEntity verificationRequestEntity = persistedEntities.get(i);
+            PhoneNumberVerifiablePhoneEntity verifiablePhoneEntity = verificationRequestEntity.getVerifiablePhone();
+            VerifiableDataCreation verifiableDataCreation = persistedCreations.get(i);
+            VerificationRequest verificationRequest = verifiableDataCreation.getVerificationRequest();
+            verificationTokenIndex.put(verificationRequest.getVerifyTokenUUID(),
+                    verifiableDataCreation.getVerifiableDataId(), verifiablePhoneEntity.getVerifiablePhoneId(),
+                    tokenValidityEndDate);
+            verificationTokenIndex.put(verificationRequest.getRejectTokenUUID(),
+                    verifiableDataCreation.getVerifiableDataId(), verifiablePhoneEntity.getVerifiablePhoneId(),
+                    tokenValidityEndDate);
+            em.detach(verificationRequestEntity);
+            em.detach(verifiablePhoneEntity);
         }
-        return false;
+        persistedEntities.clear();
+        persistedCreations.clear();
     }
 
     /**
-     * Checks the verification request exist or not.
+     * Finds the natural keys of the stored phone numbers among the given phone numbers. The phone numbers are probed
+     * in chunks of {@link #MAX_IN_PARAMETER_COUNT} by the area ids and the subscriber numbers, the extensions are
+     * compared in memory.
      * 
-     * @param verificationRequestId
-     *            the id of the verification request.
-     * @return <code>true</code> if exist verification request, otherwise return <code>false</code>.
+     * @param phoneNumbers
+     *            the phone numbers to probe.
+     * @return the natural keys (area id, subscriber number and extension) of the stored phone numbers.
      */
-    private boolean existVerificationRequest(final long verificationRequestId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<VerificationRequestEntity> root =
-                criteriaQuery.from(VerificationRequestEntity.class);
-
-        criteriaQuery.select(cb.count(root));
+    private Set<List<Object>> findExistingNaturalKeys(final List<PhoneNumberData> phoneNumbers) {
+        Set<List<Object>> result = new HashSet<List<Object>>();
+        for (int i = 0; i < phoneNumbers.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<PhoneNumberData> chunk = phoneNumbers.subList(i,
+                    Math.min(i + MAX_IN_PARAMETER_COUNT, phoneNumbers.size()));
+            Set<Long> areaIds = new HashSet<Long>();
+            Set<String> subscriberNumbers = new HashSet<String>();
+            for (PhoneNumberData phoneNumber : chunk) {
+                areaIds.add(phoneNumber.getAreaId());
+                subscriberNumbers.add(phoneNumber.getSubscriberNumber());
+            }
 
-        Predicate predicate = cb.equal(root.get(VerificationRequestEntity_.verificationRequestId),
-                verificationRequestId);
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+            Root<PhoneNumberEntity> root = criteriaQuery.from(PhoneNumberEntity.class);
+            Path<Long> areaId = root.get(PhoneNumberEntity_.phoneNumberArea).get(PhoneNumberAreaEntity_.phoneAreaId);
+            Path<String> subscriberNumber = root.get(PhoneNumberEntity_.subScriberNumber);
+            Path<String> extension = root.get(PhoneNumberEntity_.extension);
+            criteriaQuery.multiselect(areaId, subscriberNumber, extension);
+            criteriaQuery.where(cb.and(areaId.in(areaIds), subscriberNumber.in(subscriberNumbers)));
+            for (Tuple tuple : em.createQuery(criteriaQuery).getResultList()) {
+                result.add(Arrays.<Object> asList(tuple.get(areaId), tuple.get(subscriberNumber),
+                        tuple.get(extension)));
+            }
+        }
+        return result;
+    }
 
-        criteriaQuery.where(predicate);
-        Long count = em.createQuery(criteriaQuery).getSingleResult();
-        if (count == 1) {
-            return true;
+    @Override
+    public long findOrCreatePhoneNumber(final long areaId, final String subscriberNumber, final String extension) {
+        Long phoneNumberId = findPhoneNumberId(areaId, subscriberNumber, extension);
+        if (phoneNumberId != null) {
+            return phoneNumberId;
+        }
+        // the waiting calls find the saved phone number
+        PhoneNumberAreaEntity areaEntity = lockActiveArea(areaId);
+        if (subscriberNumber.length() != areaEntity.getSubscriberNumberLength()) {
+            throw new InvalidPhoneNumberException();
+        }
+        phoneNumberId = findPhoneNumberId(areaId, subscriberNumber, extension);
+        if (phoneNumberId != null) {
+            return phoneNumberId;
         }
-        return false;
+        PhoneNumberEntity entity = new PhoneNumberEntity();
+        entity.setSubScriberNumber(subscriberNumber);
+        entity.setPhoneNumberArea(areaEntity);
+        entity.setExtension(extension);
+        entity.setE164Number(NumberingPlan.e164Prefix(areaEntity.getPhoneNumberCountry().getCountryCallCode(),
+                areaEntity.getCallNumber()) + subscriberNumber);
+        em.persist(entity);
+        em.flush();
+        return entity.getPhoneNumberId();
     }
 
     /**
@@ -324,101 +599,85 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
     }
 
     @Override
-    public Area getActiveAreaByCountryAndCallNumber(final String countryISO3166A2Code, final String areaCallNumber) {
-        if ((countryISO3166A2Code == null) || (areaCallNumber == null)) {
-            throw new IllegalArgumentException("The countryISO3166A2Code or areaCallNumber parameter is null.");
+    public Long findPhoneNumberId(final long areaId, final String subscriberNumber, final String extension) {
+        if (subscriberNumber == null) {
+            throw new IllegalArgumentException("The subscriberNumber parameter is null.");
+        }
+        TypedQuery<Long> query;
+        if (extension == null) {
+            query = em.createQuery(getPreparedQueries().getPhoneNumberIdWithoutExtensionQuery());
+        } else {
+            query = em.createQuery(getPreparedQueries().getPhoneNumberIdQuery())
+                    .setParameter(PreparedQueries.EXTENSION_PARAMETER, extension);
+        }
+        List<Long> resultList = query.setParameter(PreparedQueries.ID_PARAMETER, areaId)
+                .setParameter(PreparedQueries.SUBSCRIBER_NUMBER_PARAMETER, subscriberNumber).getResultList();
+        if (resultList.isEmpty()) {
+            return null;
         }
-        return getAreaById(getActiveAreaIdByCountryCodeAndCallNumber(countryISO3166A2Code, areaCallNumber));
+        return resultList.get(0);
     }
 
-    /**
-     * Get the active area id based on country code (ISO3166-alpha-2) and area call code.
-     * 
-     * @param countryISO3166A2Code
-     *            the country code (ISO3166-alpha-2).
-     * @param callNumber
-     *            the area call code.
-     * @return the active area id if exist, otherwise return <code>null</code>.
-     */
-    private Long getActiveAreaIdByCountryCodeAndCallNumber(final String countryISO3166A2Code,
-            final String callNumber) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<PhoneNumberAreaEntity> root =
-                criteriaQuery.from(PhoneNumberAreaEntity.class);
-
-        criteriaQuery.select(root.get(PhoneNumberAreaEntity_.phoneAreaId));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberAreaEntity_.callNumber),
-                callNumber);
-        Predicate and = cb.and(
-                predicate,
-                cb.equal(root.get(PhoneNumberAreaEntity_.phoneNumberCountry),
-                        em.getReference(PhoneNumberCountryEntity.class, countryISO3166A2Code)));
+    @Override
+    public List<Long> findPhoneNumberIdsByE164(final String e164Number) {
+        if (e164Number == null) {
+            throw new IllegalArgumentException("The e164Number parameter is null.");
+        }
+        return em.createQuery(getPreparedQueries().getPhoneNumberIdsByE164Query())
+                .setParameter(PreparedQueries.E164_NUMBER_PARAMETER, e164Number).getResultList();
+    }
 
-        criteriaQuery.where(cb.and(and, cb.equal(root.get(PhoneNumberAreaEntity_.active), true)));
-        List<Long> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
-        if (resultList.size() == 1) {
-            return resultList.get(0);
+    @Override
+    public Map<String, List<Long>> findPhoneNumberIdsByE164(final Collection<String> e164Numbers) {
+        if (e164Numbers == null) {
+            throw new IllegalArgumentException("The e164Numbers parameter is null.");
         }
-        return null;
+        Set<String> e164NumberSet = new HashSet<String>(e164Numbers);
+        if (e164NumberSet.contains(null)) {
+            throw new IllegalArgumentException("The e164Numbers parameter contains null.");
+        }
+        Map<String, List<Long>> result = new HashMap<String, List<Long>>();
+        List<String> e164NumberList = new ArrayList<String>(e164NumberSet);
+        for (int i = 0; i < e164NumberList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<String> chunk = e164NumberList.subList(i,
+                    Math.min(i + MAX_IN_PARAMETER_COUNT, e164NumberList.size()));
+
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+            Root<PhoneNumberEntity> root = criteriaQuery.from(PhoneNumberEntity.class);
+            Path<String> e164Number = root.get(PhoneNumberEntity_.e164Number);
+            Path<Long> phoneNumberId = root.get(PhoneNumberEntity_.phoneNumberId);
+            criteriaQuery.multiselect(e164Number, phoneNumberId);
+            criteriaQuery.where(e164Number.in(chunk));
+            criteriaQuery.orderBy(cb.asc(phoneNumberId));
+            for (Tuple tuple : em.createQuery(criteriaQuery).getResultList()) {
+                List<Long> phoneNumberIds = result.get(tuple.get(e164Number));
+                if (phoneNumberIds == null) {
+                    phoneNumberIds = new ArrayList<Long>();
+                    result.put(tuple.get(e164Number), phoneNumberIds);
+                }
+                phoneNumberIds.add(tuple.get(phoneNumberId));
+            }
+        }
+        return result;
     }
 
-    /**
-     * Get active areas based on country code (ISO3166-alpha-2).
-     * 
-     * @param countryISO3166A2Code
-     *            the country code (ISO3166-alpha-2).
-     * @param startPosition
-     *            the first index of the list or null if not defined.
-     * @param maxResultCount
-     *            the maximum number of elements or null if not defined.
-     * @return the active Areas in list. If no one return empty list.
-     */
-    private List<Area> getActiveAreasByCountryCode(final String countryISO3166A2Code,
-            final Long startPosition, final Long maxResultCount) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Area> criteriaQuery = cb.createQuery(Area.class);
-        Root<PhoneNumberAreaEntity> root = criteriaQuery
-                .from(PhoneNumberAreaEntity.class);
-        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = root
-                .join(PhoneNumberAreaEntity_.phoneNumberCountry);
-        criteriaQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
-                root.get(PhoneNumberAreaEntity_.callNumber), root.get(PhoneNumberAreaEntity_.areaName),
-                root.get(PhoneNumberAreaEntity_.subscriberNumberLength), root.get(PhoneNumberAreaEntity_.active));
-        Predicate predicate = cb.equal(root.get(PhoneNumberAreaEntity_.phoneNumberCountry),
-                em.getReference(PhoneNumberCountryEntity.class, countryISO3166A2Code));
-        Predicate and = cb.and(
-                predicate,
-                cb.equal(root.get(PhoneNumberAreaEntity_.active), true));
-        criteriaQuery.where(and);
-        TypedQuery<Area> query = em.createQuery(criteriaQuery);
-        PhoneNumberServiceImpl.applyRangeToQuery(query, startPosition, maxResultCount);
-        List<Area> resultList = query.getResultList();
-        return resultList;
+    @Override
+    public Area getActiveAreaByCountryAndCallNumber(final String countryISO3166A2Code, final String areaCallNumber) {
+        if ((countryISO3166A2Code == null) || (areaCallNumber == null)) {
+            throw new IllegalArgumentException("The countryISO3166A2Code or areaCallNumber parameter is null.");
+        }
+        NumberingPlan numberingPlan = getNumberingPlan();
+        Long areaId = numberingPlan.getActiveAreaId(countryISO3166A2Code, areaCallNumber);
+        if (areaId == null) {
+            return null;
+        }
+        return numberingPlan.getArea(areaId);
     }
 
     @Override
     public Area getAreaById(final long areaId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Area> criteriaQuery = cb.createQuery(Area.class);
-
-        Root<PhoneNumberAreaEntity> root =
-                criteriaQuery.from(PhoneNumberAreaEntity.class);
-        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = root
-                .join(PhoneNumberAreaEntity_.phoneNumberCountry);
-        criteriaQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
-                root.get(PhoneNumberAreaEntity_.callNumber), root.get(PhoneNumberAreaEntity_.areaName),
-                root.get(PhoneNumberAreaEntity_.subscriberNumberLength), root.get(PhoneNumberAreaEntity_.active));
-        Predicate predicate = cb.equal(root.get(PhoneNumberAreaEntity_.phoneAreaId), areaId);
-
-        criteriaQuery.where(predicate);
-        List<Area> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
-        if (resultList.size() == 1) {
-            return resultList.get(0);
-        }
-        return null;
+        return getNumberingPlan().getArea(areaId);
     }
 
     @Override
@@ -434,22 +693,8 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      * @return the CallablePhoneNumber object if exist, otherwise return <code>null</code>.
      */
     private CallablePhoneNumber getCallablePhoneNumberByPhoneNumberId(final long phoneNumberId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<CallablePhoneNumber> criteriaQuery = cb.createQuery(CallablePhoneNumber.class);
-
-        Root<PhoneNumberEntity> root =
-                criteriaQuery.from(PhoneNumberEntity.class);
-        Join<PhoneNumberEntity, PhoneNumberAreaEntity> pna = root.join(PhoneNumberEntity_.phoneNumberArea);
-        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry);
-        criteriaQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.iddPrefix),
-                pnc.get(PhoneNumberCountryEntity_.nddPrefix), pnc.get(PhoneNumberCountryEntity_.countryCallCode),
-                pna.get(PhoneNumberAreaEntity_.callNumber), root.get(PhoneNumberEntity_.subScriberNumber),
-                root.get(PhoneNumberEntity_.extension));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberEntity_.phoneNumberId), phoneNumberId);
-
-        criteriaQuery.where(predicate);
-        List<CallablePhoneNumber> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
+        List<CallablePhoneNumber> resultList = em.createQuery(getPreparedQueries().getCallablePhoneNumberQuery())
+                .setParameter(PreparedQueries.ID_PARAMETER, phoneNumberId).setMaxResults(2).getResultList();
         if (resultList.size() == 1) {
             return resultList.get(0);
         }
@@ -469,56 +714,45 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      * @return the CallablePhoneNumber object if exist, otherwise return <code>null</code>.
      */
     private CallablePhoneNumber getCallablePhoneNumberByVerifiablePhoneId(final long verifiablePhoneId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<CallablePhoneNumber> criteriaQuery = cb.createQuery(CallablePhoneNumber.class);
-
-        Root<PhoneNumberVerifiablePhoneEntity> root =
-                criteriaQuery.from(PhoneNumberVerifiablePhoneEntity.class);
-        Join<PhoneNumberVerifiablePhoneEntity, PhoneNumberEntity> pn = root
-                .join(PhoneNumberVerifiablePhoneEntity_.phoneNumber);
-        Join<PhoneNumberEntity, PhoneNumberAreaEntity> pna = pn.join(PhoneNumberEntity_.phoneNumberArea);
-        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry);
-
-        criteriaQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.iddPrefix),
-                pnc.get(PhoneNumberCountryEntity_.nddPrefix), pnc.get(PhoneNumberCountryEntity_.countryCallCode),
-                pna.get(PhoneNumberAreaEntity_.callNumber), pn.get(PhoneNumberEntity_.subScriberNumber),
-                pn.get(PhoneNumberEntity_.extension));
-
-        Predicate predicate = cb
-                .equal(root.get(PhoneNumberVerifiablePhoneEntity_.verifiablePhoneId), verifiablePhoneId);
-
-        criteriaQuery.where(predicate);
-        List<CallablePhoneNumber> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
+        List<CallablePhoneNumber> resultList = em
+                .createQuery(getPreparedQueries().getCallablePhoneNumberByVerifiablePhoneIdQuery())
+                .setParameter(PreparedQueries.ID_PARAMETER, verifiablePhoneId).setMaxResults(2).getResultList();
         if (resultList.size() == 1) {
             return resultList.get(0);
         }
         return null;
     }
 
-    /**
-     * Get the active countries.
-     * 
-     * @param startPosition
-     *            the first index of the list or null if not defined.
-     * @param maxResultCount
-     *            the maximum number of elements or null if not defined.
-     * @return the active Countries in list. If no one return empty list.
-     */
-    private List<Country> getCountriesByActive(final Long startPosition,
-            final Long maxResultCount) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Country> criteriaQuery = cb.createQuery(Country.class);
-        Root<PhoneNumberCountryEntity> root = criteriaQuery
-                .from(PhoneNumberCountryEntity.class);
-        criteriaQuery.multiselect(root.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
-                root.get(PhoneNumberCountryEntity_.iddPrefix), root.get(PhoneNumberCountryEntity_.nddPrefix),
-                root.get(PhoneNumberCountryEntity_.countryCallCode), root.get(PhoneNumberCountryEntity_.active));
-        Predicate predicate = cb.equal(root.get(PhoneNumberCountryEntity_.active), true);
-        criteriaQuery.where(predicate);
-        TypedQuery<Country> query = em.createQuery(criteriaQuery);
-        PhoneNumberServiceImpl.applyRangeToQuery(query, startPosition, maxResultCount);
-        List<Country> resultList = query.getResultList();
-        return resultList;
+    @Override
+    public Map<Long, CallablePhoneNumber> getCallablePhoneNumbers(final Collection<Long> phoneNumberIds) {
+        if (phoneNumberIds == null) {
+            throw new IllegalArgumentException("The phoneNumberIds parameter is null.");
+        }
+        Set<Long> phoneNumberIdSet = new HashSet<Long>(phoneNumberIds);
+        if (phoneNumberIdSet.contains(null)) {
+            throw new IllegalArgumentException("The phoneNumberIds parameter contains null.");
+        }
+        Map<Long, CallablePhoneNumber> result = new HashMap<Long, CallablePhoneNumber>();
+        Map<Long, CallablePhoneNumber> areaParts = new HashMap<Long, CallablePhoneNumber>();
+        List<Long> phoneNumberIdList = new ArrayList<Long>(phoneNumberIdSet);
+        for (int i = 0; i < phoneNumberIdList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<Long> chunk = phoneNumberIdList.subList(i,
+                    Math.min(i + MAX_IN_PARAMETER_COUNT, phoneNumberIdList.size()));
+            loadCallablePhoneNumbers(chunk, 0, 0, result, areaParts);
+        }
+        return result;
+    }
+
+    @Override
+    public SortedMap<Long, CallablePhoneNumber> getCallablePhoneNumbersAfter(final long afterPhoneNumberId,
+            final int maxResultCount) {
+        if (maxResultCount < 1) {
+            throw new IllegalArgumentException("The maxResultCount parameter is not positive.");
+        }
+        SortedMap<Long, CallablePhoneNumber> result = new TreeMap<Long, CallablePhoneNumber>();
+        loadCallablePhoneNumbers(null, afterPhoneNumberId, maxResultCount, result,
+                new HashMap<Long, CallablePhoneNumber>());
+        return result;
     }
 
     @Override
@@ -526,25 +760,90 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         if ((countryISO3166A2Code == null)) {
             throw new IllegalArgumentException("The countryISO3166A2Code parameter is null.");
         }
+        return getNumberingPlan().getCountry(countryISO3166A2Code);
+    }
 
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Country> criteriaQuery = cb.createQuery(Country.class);
-
-        Root<PhoneNumberCountryEntity> root =
-                criteriaQuery.from(PhoneNumberCountryEntity.class);
+    /**
+     * Get the E.164 number of a phone number in an existing area.
+     * 
+     * @param areaId
+     *            the id of the area. Must be exist area.
+     * @param subscriberNumber
+     *            the number of the subscriber.
+     * @return the E.164 number.
+     */
+    private String getE164Number(final long areaId, final String subscriberNumber) {
+        String prefix = getNumberingPlan().getE164Prefix(areaId);
+        if (prefix == null) {
+            PhoneNumberAreaEntity areaEntity = em.find(PhoneNumberAreaEntity.class, areaId);
+            prefix = NumberingPlan.e164Prefix(areaEntity.getPhoneNumberCountry().getCountryCallCode(),
+                    areaEntity.getCallNumber());
+        }
+        return prefix + subscriberNumber;
+    }
 
-        criteriaQuery.multiselect(root.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
-                root.get(PhoneNumberCountryEntity_.iddPrefix), root.get(PhoneNumberCountryEntity_.nddPrefix),
-                root.get(PhoneNumberCountryEntity_.countryCallCode), root.get(PhoneNumberCountryEntity_.active));
+    /**
+     * Get the current {@link NumberingPlan} snapshot. The snapshot is loaded if there is no current snapshot.
+     * 
+     * @return the snapshot.
+     */
+    private NumberingPlan getNumberingPlan() {
+        return numberingPlanHolder.get(numberingPlanLoader);
+    }
 
-        Predicate predicate = cb.equal(root.get(PhoneNumberCountryEntity_.countryISO3166A2Code), countryISO3166A2Code);
+    @Override
+    public PhoneNumberSet getPhoneNumberSet(final Collection<Long> phoneNumberIds) {
+        if (phoneNumberIds == null) {
+            throw new IllegalArgumentException("The phoneNumberIds parameter is null.");
+        }
+        Set<Long> phoneNumberIdSet = new HashSet<Long>(phoneNumberIds);
+        if (phoneNumberIdSet.contains(null)) {
+            throw new IllegalArgumentException("The phoneNumberIds parameter contains null.");
+        }
+        long[] encodedPhoneNumbers = new long[phoneNumberIdSet.size()];
+        int size = 0;
+        List<Long> phoneNumberIdList = new ArrayList<Long>(phoneNumberIdSet);
+        for (int i = 0; i < phoneNumberIdList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<Long> chunk = phoneNumberIdList.subList(i,
+                    Math.min(i + MAX_IN_PARAMETER_COUNT, phoneNumberIdList.size()));
+
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+            Root<PhoneNumberEntity> root = criteriaQuery.from(PhoneNumberEntity.class);
+            Join<PhoneNumberEntity, PhoneNumberAreaEntity> pna = root.join(PhoneNumberEntity_.phoneNumberArea);
+            Path<String> countryCallCode = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry)
+                    .get(PhoneNumberCountryEntity_.countryCallCode);
+            Path<String> areaCallNumber = pna.get(PhoneNumberAreaEntity_.callNumber);
+            Path<String> subscriberNumber = root.get(PhoneNumberEntity_.subScriberNumber);
+            criteriaQuery.multiselect(countryCallCode, areaCallNumber, subscriberNumber);
+            criteriaQuery.where(root.get(PhoneNumberEntity_.phoneNumberId).in(chunk));
+            for (Tuple tuple : em.createQuery(criteriaQuery).getResultList()) {
+                long encodedPhoneNumber = PhoneNumberSet.encode(tuple.get(countryCallCode),
+                        tuple.get(areaCallNumber), tuple.get(subscriberNumber));
+                if (encodedPhoneNumber == PhoneNumberSet.NOT_ENCODABLE) {
+                    throw new IllegalArgumentException("The phone number " + tuple.get(countryCallCode) + " "
+                            + tuple.get(areaCallNumber) + " " + tuple.get(subscriberNumber) + " cannot be encoded.");
+                }
+                encodedPhoneNumbers[size] = encodedPhoneNumber;
+                size++;
+            }
+        }
+        return new PhoneNumberSet(Arrays.copyOf(encodedPhoneNumbers, size));
+    }
 
-        criteriaQuery.where(predicate);
-        List<Country> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
-        if (resultList.size() == 1) {
-            return resultList.get(0);
+    /**
+     * Get the {@link PreparedQueries}. The queries are built on the first call. Concurrent first calls may build
+     * the queries more than once, the instances are equivalent.
+     * 
+     * @return the {@link PreparedQueries}.
+     */
+    private PreparedQueries getPreparedQueries() {
+        PreparedQueries queries = preparedQueries;
+        if (queries == null) {
+            queries = new PreparedQueries(em);
+            preparedQueries = queries;
         }
-        return null;
+        return queries;
     }
 
     /**
@@ -555,24 +854,56 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      * @return the subscriber number length. If not find return <code>null</code>.
      */
     private Integer getSubscriberNumberLengthByAreaId(final long areaId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Integer> criteriaQuery = cb.createQuery(Integer.class);
-
-        Root<PhoneNumberAreaEntity> root =
-                criteriaQuery.from(PhoneNumberAreaEntity.class);
-
-        criteriaQuery.select(root.get(PhoneNumberAreaEntity_.subscriberNumberLength));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberAreaEntity_.phoneAreaId),
-                areaId);
-        criteriaQuery.where(cb.and(predicate, cb.equal(root.get(PhoneNumberAreaEntity_.active), true)));
-        List<Integer> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
+        Integer length = getNumberingPlan().getActiveSubscriberNumberLength(areaId);
+        if (length != null) {
+            return length;
+        }
+        List<Integer> resultList = em.createQuery(getPreparedQueries().getSubscriberNumberLengthQuery())
+                .setParameter(PreparedQueries.ID_PARAMETER, areaId).setMaxResults(2).getResultList();
         if (resultList.size() == 1) {
             return resultList.get(0);
         }
         return null;
     }
 
+    /**
+     * Get the subscriber number lengths of the active areas based on area ids. The areas missing from the
+     * {@link NumberingPlan} snapshot are queried in chunks of {@link #MAX_IN_PARAMETER_COUNT}.
+     * 
+     * @param areaIds
+     *            the ids of the areas.
+     * @return the subscriber number lengths by the area ids. The not found areas are missing from the map.
+     */
+    private Map<Long, Integer> getSubscriberNumberLengthsByAreaIds(final Collection<Long> areaIds) {
+        Map<Long, Integer> result = new HashMap<Long, Integer>();
+        NumberingPlan numberingPlan = getNumberingPlan();
+        List<Long> areaIdList = new ArrayList<Long>();
+        for (Long areaId : areaIds) {
+            Integer length = numberingPlan.getActiveSubscriberNumberLength(areaId);
+            if (length != null) {
+                result.put(areaId, length);
+            } else {
+                areaIdList.add(areaId);
+            }
+        }
+        for (int i = 0; i < areaIdList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<Long> chunk = areaIdList.subList(i, Math.min(i + MAX_IN_PARAMETER_COUNT, areaIdList.size()));
+
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+            Root<PhoneNumberAreaEntity> root =
+                    criteriaQuery.from(PhoneNumberAreaEntity.class);
+            Path<Long> areaId = root.get(PhoneNumberAreaEntity_.phoneAreaId);
+            Path<Integer> subscriberNumberLength = root.get(PhoneNumberAreaEntity_.subscriberNumberLength);
+            criteriaQuery.multiselect(areaId, subscriberNumberLength);
+            criteriaQuery.where(cb.and(areaId.in(chunk), cb.equal(root.get(PhoneNumberAreaEntity_.active), true)));
+            for (Tuple tuple : em.createQuery(criteriaQuery).getResultList()) {
+                result.put(tuple.get(areaId), tuple.get(subscriberNumberLength));
+            }
+        }
+        return result;
+    }
+
     /**
      * Get the verifiable phone id based on verifiable data id.
      * 
@@ -581,19 +912,8 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
      * @return the verifiable phone id. If not finds return <code>null</code>.
      */
     private Long getVerifiablePhoneIdByVerifiableDataId(final long verifiableDataId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> criteriaQuery = cb.createQuery(Long.class);
-
-        Root<PhoneNumberVerifiablePhoneEntity> root =
-                criteriaQuery.from(PhoneNumberVerifiablePhoneEntity.class);
-
-        criteriaQuery.select(root.get(PhoneNumberVerifiablePhoneEntity_.verifiablePhoneId));
-
-        Predicate predicate = cb.equal(root.get(PhoneNumberVerifiablePhoneEntity_.verifiableData),
-                em.getReference(VerifiableDataEntity.class, verifiableDataId));
-
-        criteriaQuery.where(predicate);
-        List<Long> resultList = em.createQuery(criteriaQuery).setMaxResults(2).getResultList();
+        List<Long> resultList = em.createQuery(getPreparedQueries().getVerifiablePhoneIdQuery())
+                .setParameter(PreparedQueries.ID_PARAMETER, verifiableDataId).setMaxResults(2).getResultList();
         if (resultList.size() == 1) {
             return resultList.get(0);
         }
@@ -602,14 +922,64 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
 
     @Override
     public void inactivateArea(final long areaId) {
-        throw new UnsupportedOperationException();
-        // TODO Write the method.
+        em.flush();
+        int updatedCount = em.createQuery(INACTIVATE_AREAS_QUERY).setParameter("areaIds", Arrays.asList(areaId))
+                .executeUpdate();
+        if (updatedCount == 0) {
+            if (em.find(PhoneNumberAreaEntity.class, areaId) == null) {
+                throw new NoSuchAreaException();
+            }
+            return;
+        }
+        numberingPlanHolder.invalidate();
+    }
+
+    @Override
+    public int inactivateAreas(final Collection<Long> areaIds) {
+        if (areaIds == null) {
+            throw new IllegalArgumentException("The areaIds parameter is null.");
+        }
+        Set<Long> areaIdSet = new HashSet<Long>(areaIds);
+        if (areaIdSet.contains(null)) {
+            throw new IllegalArgumentException("The areaIds parameter contains null.");
+        }
+        em.flush();
+        int updatedCount = 0;
+        List<Long> areaIdList = new ArrayList<Long>(areaIdSet);
+        for (int i = 0; i < areaIdList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<Long> chunk = areaIdList.subList(i, Math.min(i + MAX_IN_PARAMETER_COUNT, areaIdList.size()));
+            updatedCount += em.createQuery(INACTIVATE_AREAS_QUERY).setParameter("areaIds", chunk).executeUpdate();
+        }
+        if (updatedCount > 0) {
+            numberingPlanHolder.invalidate();
+        }
+        return updatedCount;
     }
 
     @Override
     public void inactivateCountry(final String countryISO3166A2Code) {
-        throw new UnsupportedOperationException();
-        // TODO Write the method.
+        if (countryISO3166A2Code == null) {
+            throw new IllegalArgumentException("The countryISO3166A2Code parameter is null.");
+        }
+        em.flush();
+        int updatedCount = em.createQuery(INACTIVATE_COUNTRY_QUERY)
+                .setParameter("countryISO3166A2Code", countryISO3166A2Code).executeUpdate();
+        updatedCount += em.createQuery(INACTIVATE_COUNTRY_AREAS_QUERY)
+                .setParameter("countryISO3166A2Code", countryISO3166A2Code).executeUpdate();
+        if (updatedCount == 0) {
+            if (!existCountry(countryISO3166A2Code)) {
+                throw new NoSuchCountryException();
+            }
+            return;
+        }
+        numberingPlanHolder.invalidate();
+    }
+
+    /**
+     * Wraps the entity manager into a {@link MeteredEntityManager}, so the database time of the methods is recorded.
+     */
+    public void init() {
+        em = MeteredEntityManager.createProxy(em, metrics);
     }
 
     @Override
@@ -619,12 +989,235 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         if (countryISO3166A2Code == null) {
             throw new IllegalArgumentException("The countryISO3166A2Code parameter is null.");
         }
-        return getActiveAreasByCountryCode(countryISO3166A2Code, startPosition, maxResultCount);
+        PhoneNumberServiceImpl.checkRange(startPosition, maxResultCount);
+        return getNumberingPlan().getActiveAreas(countryISO3166A2Code, (startPosition == null) ? 0 : startPosition,
+                (maxResultCount == null) ? Long.MAX_VALUE : maxResultCount);
+    }
+
+    @Override
+    public List<Area> listActiveAreasBycountryISO3166A2CodeAfter(final String countryISO3166A2Code,
+            final String afterCallNumber, final int maxResultCount) {
+        if (countryISO3166A2Code == null) {
+            throw new IllegalArgumentException("The countryISO3166A2Code parameter is null.");
+        }
+        if (maxResultCount < 1) {
+            throw new IllegalArgumentException("The maxResultCount parameter is not positive.");
+        }
+        return getNumberingPlan().getActiveAreasAfter(countryISO3166A2Code, afterCallNumber, maxResultCount);
     }
 
     @Override
     public List<Country> listActiveCountries(final Long startPosition, final Long maxResultCount) {
-        return getCountriesByActive(startPosition, maxResultCount);
+        PhoneNumberServiceImpl.checkRange(startPosition, maxResultCount);
+        return getNumberingPlan().getActiveCountries((startPosition == null) ? 0 : startPosition,
+                (maxResultCount == null) ? Long.MAX_VALUE : maxResultCount);
+    }
+
+    @Override
+    public List<Country> listActiveCountriesAfter(final String afterCountryISO3166A2Code, final int maxResultCount) {
+        if (maxResultCount < 1) {
+            throw new IllegalArgumentException("The maxResultCount parameter is not positive.");
+        }
+        return getNumberingPlan().getActiveCountriesAfter(afterCountryISO3166A2Code, maxResultCount);
+    }
+
+    /**
+     * Loading the callable phone numbers either by ids or by keyset paging. The callable phone numbers of the same
+     * area share the country and area parts.
+     * 
+     * @param phoneNumberIds
+     *            the ids of the phone numbers, at most {@link #MAX_IN_PARAMETER_COUNT}. If <code>null</code>, the
+     *            phone numbers after the afterPhoneNumberId are loaded in the order of the ids.
+     * @param afterPhoneNumberId
+     *            the phone numbers with greater id are loaded. Used only if the phoneNumberIds is <code>null</code>.
+     * @param maxResultCount
+     *            the maximum number of the loaded phone numbers. Used only if the phoneNumberIds is
+     *            <code>null</code>.
+     * @param result
+     *            the map of the callable phone numbers by id to fill.
+     * @param areaParts
+     *            the country and area parts by area id already loaded. The new ones are added to the map.
+     */
+    private void loadCallablePhoneNumbers(final List<Long> phoneNumberIds, final long afterPhoneNumberId,
+            final int maxResultCount, final Map<Long, CallablePhoneNumber> result,
+            final Map<Long, CallablePhoneNumber> areaParts) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = cb.createTupleQuery();
+        Root<PhoneNumberEntity> root =
+                criteriaQuery.from(PhoneNumberEntity.class);
+        Join<PhoneNumberEntity, PhoneNumberAreaEntity> pna = root.join(PhoneNumberEntity_.phoneNumberArea);
+        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry);
+        Path<Long> phoneNumberId = root.get(PhoneNumberEntity_.phoneNumberId);
+        Path<Long> areaId = pna.get(PhoneNumberAreaEntity_.phoneAreaId);
+        Path<String> iddPrefix = pnc.get(PhoneNumberCountryEntity_.iddPrefix);
+        Path<String> nddPrefix = pnc.get(PhoneNumberCountryEntity_.nddPrefix);
+        Path<String> countryCallCode = pnc.get(PhoneNumberCountryEntity_.countryCallCode);
+        Path<String> areaCallNumber = pna.get(PhoneNumberAreaEntity_.callNumber);
+        Path<String> subscriberNumber = root.get(PhoneNumberEntity_.subScriberNumber);
+        Path<String> extension = root.get(PhoneNumberEntity_.extension);
+        criteriaQuery.multiselect(phoneNumberId, areaId, iddPrefix, nddPrefix, countryCallCode, areaCallNumber,
+                subscriberNumber, extension);
+
+        TypedQuery<Tuple> query;
+        if (phoneNumberIds != null) {
+            criteriaQuery.where(phoneNumberId.in(phoneNumberIds));
+            query = em.createQuery(criteriaQuery);
+        } else {
+            criteriaQuery.where(cb.gt(phoneNumberId, afterPhoneNumberId));
+            criteriaQuery.orderBy(cb.asc(phoneNumberId));
+            query = em.createQuery(criteriaQuery).setMaxResults(maxResultCount);
+        }
+
+        for (Tuple tuple : query.getResultList()) {
+            CallablePhoneNumber areaPart = areaParts.get(tuple.get(areaId));
+            if (areaPart == null) {
+                areaPart = new CallablePhoneNumber(tuple.get(iddPrefix), tuple.get(nddPrefix),
+                        tuple.get(countryCallCode), tuple.get(areaCallNumber), null, null);
+                areaParts.put(tuple.get(areaId), areaPart);
+            }
+            result.put(tuple.get(phoneNumberId), new CallablePhoneNumber(areaPart.getCountryIDD(),
+                    areaPart.getCountryNDD(), areaPart.getCountryCallCode(), areaPart.getAreaCallNumber(),
+                    tuple.get(subscriberNumber), tuple.get(extension)));
+        }
+    }
+
+    /**
+     * Loads the {@link NumberingPlan} snapshot of all countries and areas from the database.
+     * 
+     * @param version
+     *            the version of the reference data to store in the snapshot.
+     * @return the snapshot.
+     */
+    private NumberingPlan loadNumberingPlan(final long version) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Country> countryQuery = cb.createQuery(Country.class);
+        Root<PhoneNumberCountryEntity> countryRoot = countryQuery
+                .from(PhoneNumberCountryEntity.class);
+        countryQuery.multiselect(countryRoot.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
+                countryRoot.get(PhoneNumberCountryEntity_.iddPrefix),
+                countryRoot.get(PhoneNumberCountryEntity_.nddPrefix),
+                countryRoot.get(PhoneNumberCountryEntity_.countryCallCode),
+                countryRoot.get(PhoneNumberCountryEntity_.active));
+        List<Country> countries = em.createQuery(countryQuery).getResultList();
+
+        CriteriaQuery<Tuple> areaQuery = cb.createTupleQuery();
+        Root<PhoneNumberAreaEntity> root = areaQuery
+                .from(PhoneNumberAreaEntity.class);
+        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = root
+                .join(PhoneNumberAreaEntity_.phoneNumberCountry);
+        Path<Long> areaId = root.get(PhoneNumberAreaEntity_.phoneAreaId);
+        Path<String> countryCode = pnc.get(PhoneNumberCountryEntity_.countryISO3166A2Code);
+        Path<String> callNumber = root.get(PhoneNumberAreaEntity_.callNumber);
+        Path<String> areaName = root.get(PhoneNumberAreaEntity_.areaName);
+        Path<Integer> subscriberNumberLength = root.get(PhoneNumberAreaEntity_.subscriberNumberLength);
+        Path<Boolean> active = root.get(PhoneNumberAreaEntity_.active);
+        areaQuery.multiselect(areaId, countryCode, callNumber, areaName, subscriberNumberLength, active);
+        Map<Long, Area> areas = new HashMap<Long, Area>();
+        for (Tuple tuple : em.createQuery(areaQuery).getResultList()) {
+            areas.put(tuple.get(areaId), new Area(tuple.get(countryCode), tuple.get(callNumber),
+                    tuple.get(areaName), tuple.get(subscriberNumberLength), tuple.get(active)));
+        }
+        return new NumberingPlan(version, countries, areas);
+    }
+
+    /**
+     * Locks the row of the active area. The lock serializes the concurrent saves of the phone numbers of the area, so
+     * a duplicate check and the following insert are not interleaved with another one. The unique key does not cover
+     * the phone numbers without extension on every database.
+     * 
+     * @param areaId
+     *            the id of the area.
+     * @return the locked area.
+     * 
+     * @throws NoSuchAreaException
+     *             if the area does not exist or is inactive.
+     */
+    private PhoneNumberAreaEntity lockActiveArea(final long areaId) {
+        PhoneNumberAreaEntity areaEntity = em.find(PhoneNumberAreaEntity.class, areaId,
+                LockModeType.PESSIMISTIC_WRITE);
+        if ((areaEntity == null) || !areaEntity.isActive()) {
+            throw new NoSuchAreaException();
+        }
+        return areaEntity;
+    }
+
+    /**
+     * Locks the rows of the areas in the order of the ids, so the concurrent batches do not deadlock. See
+     * {@link #lockActiveArea(long)}.
+     * 
+     * @param areaIds
+     *            the ids of the areas.
+     */
+    private void lockAreas(final Collection<Long> areaIds) {
+        List<Long> areaIdList = new ArrayList<Long>(areaIds);
+        Collections.sort(areaIdList);
+        for (int i = 0; i < areaIdList.size(); i += MAX_IN_PARAMETER_COUNT) {
+            List<Long> chunk = areaIdList.subList(i, Math.min(i + MAX_IN_PARAMETER_COUNT, areaIdList.size()));
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<PhoneNumberAreaEntity> criteriaQuery = cb.createQuery(PhoneNumberAreaEntity.class);
+            Root<PhoneNumberAreaEntity> root = criteriaQuery.from(PhoneNumberAreaEntity.class);
+            Path<Long> areaId = root.get(PhoneNumberAreaEntity_.phoneAreaId);
+            criteriaQuery.where(areaId.in(chunk));
+            criteriaQuery.orderBy(cb.asc(areaId));
+            em.createQuery(criteriaQuery).setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList();
+        }
+    }
+
+    @Override
+    public ParsedPhoneNumber parse(final String rawNumber) {
+        return parse(rawNumber, null);
+    }
+
+    @Override
+    public ParsedPhoneNumber parse(final String rawNumber, final String callerCountryISO3166A2Code) {
+        if (rawNumber == null) {
+            throw new IllegalArgumentException("The rawNumber parameter is null.");
+        }
+        return getNumberingPlan().getTrie().parse(rawNumber, callerCountryISO3166A2Code);
+    }
+
+    /**
+     * Persisting the verifiable phone and the verification request (in the beginning the phonenumber_ table)
+     * without flushing them. The existence of the referenced records is not checked, the caller must pass the ids
+     * of existing records (the foreign keys of the tables guard them anyway).
+     * 
+     * @param phoneNumberId
+     *            the id of an existing phone number.
+     * @param verifiableDataId
+     *            the id of an existing verifiable data.
+     * @param verificationRequestId
+     *            the id of an existing verification request.
+     * @param verificationChannel
+     *            the {@link VerificationChannel}.
+     * @return the persisted verification request entity referencing the persisted verifiable phone entity.
+     */
+    private PhoneNumberVerificationRequestEntity persistVerificationRequest(final long phoneNumberId,
+            final long verifiableDataId, final long verificationRequestId,
+            final VerificationChannel verificationChannel) {
+        if (verificationChannel == null) {
+            throw new IllegalArgumentException("The verificationChannel is null. Cannot be null.");
+        }
+
+        PhoneNumberVerifiablePhoneEntity verifiablePhoneEntity = new PhoneNumberVerifiablePhoneEntity();
+        verifiablePhoneEntity.setPhoneNumber(em.getReference(PhoneNumberEntity.class, phoneNumberId));
+        verifiablePhoneEntity.setVerifiableData(em.getReference(VerifiableDataEntity.class, verifiableDataId));
+        em.persist(verifiablePhoneEntity);
+
+        PhoneNumberVerificationRequestEntity verificationRequestEntity = new PhoneNumberVerificationRequestEntity();
+        verificationRequestEntity.setVerificationChannel(verificationChannel);
+        verificationRequestEntity.setVerificationRequest(em.getReference(VerificationRequestEntity.class,
+                verificationRequestId));
+        verificationRequestEntity.setVerifiablePhone(verifiablePhoneEntity);
+        em.persist(verificationRequestEntity);
+        return verificationRequestEntity;
+    }
+
+    @Override
+    public void replaceSuppressedPhoneNumbers(final PhoneNumberSet suppressedPhoneNumbers) {
+        if (suppressedPhoneNumbers == null) {
+            throw new IllegalArgumentException("The suppressedPhoneNumbers parameter is null.");
+        }
+        this.suppressedPhoneNumbers = suppressedPhoneNumbers;
     }
 
     @Override
@@ -650,6 +1243,7 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         entity.setActive(true);
         em.persist(entity);
         em.flush();
+        numberingPlanHolder.invalidate();
         return entity.getPhoneAreaId();
     }
 
@@ -673,6 +1267,7 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         entity.setActive(true);
         em.persist(entity);
         em.flush();
+        numberingPlanHolder.invalidate();
     }
 
     @Override
@@ -689,66 +1284,152 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         if (subscriberNumber.length() != areaSubscriberNumberLength) {
             throw new InvalidPhoneNumberException();
         }
+        PhoneNumberAreaEntity areaEntity = lockActiveArea(areaId);
+        if (findPhoneNumberId(areaId, subscriberNumber, extension) != null) {
+            throw new DuplicatePhoneNumberException();
+        }
         PhoneNumberEntity entity = new PhoneNumberEntity();
         entity.setSubScriberNumber(subscriberNumber);
-        entity.setPhoneNumberArea(em.getReference(PhoneNumberAreaEntity.class, areaId));
+        entity.setPhoneNumberArea(areaEntity);
         entity.setExtension(extension);
+        entity.setE164Number(getE164Number(areaId, subscriberNumber));
         em.persist(entity);
         em.flush();
         return entity.getPhoneNumberId();
     }
 
+    @Override
+    public PhoneNumberBatchSaveResult savePhoneNumbers(final List<PhoneNumberData> phoneNumbers) {
+        if (phoneNumbers == null) {
+            throw new IllegalArgumentException("The phoneNumbers parameter is null.");
+        }
+
+        Set<Long> areaIds = new HashSet<Long>();
+        for (PhoneNumberData phoneNumber : phoneNumbers) {
+            if (phoneNumber != null) {
+                areaIds.add(phoneNumber.getAreaId());
+            }
+        }
+        Map<Long, Integer> areaSubscriberNumberLengths = getSubscriberNumberLengthsByAreaIds(areaIds);
+
+        List<Long> phoneNumberIds = new ArrayList<Long>(phoneNumbers.size());
+        Map<Integer, RuntimeException> failures = new HashMap<Integer, RuntimeException>();
+        // the duplicates are detected before the first persist, so the probes do not flush the pending entities and
+        // the unique key never fails the flush of the whole batch
+        lockAreas(areaSubscriberNumberLengths.keySet());
+        Set<List<Object>> naturalKeys = new HashSet<List<Object>>();
+        List<Integer> validIndexes = new ArrayList<Integer>(phoneNumbers.size());
+        for (int i = 0; i < phoneNumbers.size(); i++) {
+            phoneNumberIds.add(null);
+            PhoneNumberData phoneNumber = phoneNumbers.get(i);
+            if ((phoneNumber == null) || (phoneNumber.getSubscriberNumber() == null)) {
+                failures.put(i, new IllegalArgumentException("The phone number or the subscriberNumber is null."));
+                continue;
+            }
+
+            Integer areaSubscriberNumberLength = areaSubscriberNumberLengths.get(phoneNumber.getAreaId());
+            if (areaSubscriberNumberLength == null) {
+                failures.put(i, new NoSuchAreaException());
+                continue;
+            }
+
+            if (phoneNumber.getSubscriberNumber().length() != areaSubscriberNumberLength) {
+                failures.put(i, new InvalidPhoneNumberException());
+                continue;
+            }
+
+            List<Object> naturalKey = Arrays.<Object> asList(phoneNumber.getAreaId(),
+                    phoneNumber.getSubscriberNumber(), phoneNumber.getExtension());
+            if (!naturalKeys.add(naturalKey)) {
+                failures.put(i, new DuplicatePhoneNumberException());
+                continue;
+            }
+            validIndexes.add(i);
+        }
+
+        List<PhoneNumberData> candidates = new ArrayList<PhoneNumberData>(validIndexes.size());
+        for (Integer i : validIndexes) {
+            candidates.add(phoneNumbers.get(i));
+        }
+        Set<List<Object>> existingNaturalKeys = findExistingNaturalKeys(candidates);
+        Iterator<Integer> validIndexIterator = validIndexes.iterator();
+        while (validIndexIterator.hasNext()) {
+            Integer i = validIndexIterator.next();
+            PhoneNumberData phoneNumber = phoneNumbers.get(i);
+            if (existingNaturalKeys.contains(Arrays.<Object> asList(phoneNumber.getAreaId(),
+                    phoneNumber.getSubscriberNumber(), phoneNumber.getExtension()))) {
+                failures.put(i, new DuplicatePhoneNumberException());
+                validIndexIterator.remove();
+            }
+        }
+
+        Map<Integer, PhoneNumberEntity> persistedEntities = new HashMap<Integer, PhoneNumberEntity>();
+        for (Integer i : validIndexes) {
+            PhoneNumberData phoneNumber = phoneNumbers.get(i);
+            PhoneNumberEntity entity = new PhoneNumberEntity();
+            entity.setSubScriberNumber(phoneNumber.getSubscriberNumber());
+            entity.setPhoneNumberArea(em.getReference(PhoneNumberAreaEntity.class, phoneNumber.getAreaId()));
+            entity.setExtension(phoneNumber.getExtension());
+            entity.setE164Number(getE164Number(phoneNumber.getAreaId(), phoneNumber.getSubscriberNumber()));
+            em.persist(entity);
+            persistedEntities.put(i, entity);
+            if (persistedEntities.size() == FLUSH_CHUNK_SIZE) {
+                flushPhoneNumberEntities(persistedEntities, phoneNumberIds);
+            }
+        }
+        flushPhoneNumberEntities(persistedEntities, phoneNumberIds);
+        return new PhoneNumberBatchSaveResult(phoneNumberIds, failures);
+    }
+
     /**
-     * Save and creating verifiable phone and verification request (in the beginning the phonenumber_ table).
+     * Save and creating verifiable phone and verification request (in the beginning the phonenumber_ table). The
+     * existence of the referenced records is not checked, the caller must pass the ids of existing records (the
+     * foreign keys of the tables guard them anyway).
      * 
      * @param phoneNumberId
-     *            the id of the phone number.
+     *            the id of an existing phone number.
      * @param verifiableDataId
-     *            the id of the verifiable data.
+     *            the id of an existing verifiable data.
      * @param verificationRequestId
-     *            the id of the verification request.
+     *            the id of an existing verification request.
      * @param verificationChannel
      *            the {@link VerificationChannel}.
+     * @return the id of the verifiable phone.
      */
-    private void saveVerifiablePhone(final long phoneNumberId, final long verifiableDataId,
+    private long saveVerifiablePhone(final long phoneNumberId, final long verifiableDataId,
             final long verificationRequestId, final VerificationChannel verificationChannel) {
-        if (verificationChannel == null) {
-            throw new IllegalArgumentException("The verificationChannel is null. Cannot be null.");
-        }
+        PhoneNumberVerificationRequestEntity verificationRequestEntity = persistVerificationRequest(phoneNumberId,
+                verifiableDataId, verificationRequestId, verificationChannel);
+        em.flush();
+        return verificationRequestEntity.getVerifiablePhone().getVerifiablePhoneId();
+    }
 
-        if (!existPhoneNumber(phoneNumberId)) {
-            throw new NoSuchPhoneNumberException();
-        }
+    public void setEm(final EntityManager em) {
+        this.em = em;
+    }
 
-        if (!existVerifiableData(verifiableDataId)) {
-            throw new NoSuchVerifiableDataException();
-        }
+    public void setMetrics(final PhoneNumberServiceMetricsImpl metrics) {
+        this.metrics = metrics;
+    }
 
-        if (!existVerificationRequest(verificationRequestId)) {
-            throw new NoSuchVerificationRequestException();
-        }
+    public void setNumberingPlanHolder(final NumberingPlanHolder numberingPlanHolder) {
+        this.numberingPlanHolder = numberingPlanHolder;
+    }
 
-        PhoneNumberVerifiablePhoneEntity verifiablePhoneEntity = new PhoneNumberVerifiablePhoneEntity();
-        verifiablePhoneEntity.setPhoneNumber(em.getReference(PhoneNumberEntity.class, phoneNumberId));
-        verifiablePhoneEntity.setVerifiableData(em.getReference(VerifiableDataEntity.class, verifiableDataId));
-        em.persist(verifiablePhoneEntity);
+    public void setSmsDispatcher(final SMSDispatcher smsDispatcher) {
+        this.smsDispatcher = smsDispatcher;
+    }
 
-        PhoneNumberVerificationRequestEntity verificationRequestEntity = new PhoneNumberVerificationRequestEntity();
-        verificationRequestEntity.setVerificationChannel(verificationChannel);
-        verificationRequestEntity.setVerificationRequest(em.getReference(VerificationRequestEntity.class,
-                verificationRequestId));
-        verificationRequestEntity.setVerifiablePhone(em.getReference(PhoneNumberVerifiablePhoneEntity.class,
-                verifiablePhoneEntity.getVerifiablePhoneId()));
-        em.persist(verificationRequestEntity);
-        em.flush();
+    public void setVelocityTemplateCache(final VelocityTemplateCache velocityTemplateCache) {
+        this.velocityTemplateCache = velocityTemplateCache;
     }
 
-    public void setEm(final EntityManager em) {
-        this.em = em;
+    public void setVerificationRateLimiter(final VerificationRateLimiter verificationRateLimiter) {
+        this.verificationRateLimiter = verificationRateLimiter;
     }
 
-    public void setSmsSender(final SMSSender smsSender) {
-        this.smsSender = smsSender;
+    public void setVerificationTokenIndex(final VerificationTokenIndex verificationTokenIndex) {
+        this.verificationTokenIndex = verificationTokenIndex;
     }
 
     public void setVerifyService(final VerifyService verifyService) {
@@ -775,9 +1456,16 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
             throw new InvalidPhoneNumberException();
         }
 
+        PhoneNumberAreaEntity areaEntity = lockActiveArea(areaId);
+        Long existingPhoneNumberId = findPhoneNumberId(areaId, subscriberNumber, extension);
+        if ((existingPhoneNumberId != null) && (existingPhoneNumberId.longValue() != phoneNumberId)) {
+            throw new DuplicatePhoneNumberException();
+        }
+
         pnEntity.setExtension(extension);
         pnEntity.setSubScriberNumber(subscriberNumber);
-        pnEntity.setPhoneNumberArea(em.getReference(PhoneNumberAreaEntity.class, areaId));
+        pnEntity.setPhoneNumberArea(areaEntity);
+        pnEntity.setE164Number(getE164Number(areaId, subscriberNumber));
         em.merge(pnEntity);
         em.flush();
     }
@@ -790,7 +1478,11 @@ public class PhoneNumberServiceImpl implements PhoneNumberService {
         PhoneVerificationResult result = null;
         VerificationResult verifyData = verifyService.verifyData(tokenUUID);
         if (verifyData != null) {
-            Long verifiablePhoneId = getVerifiablePhoneIdByVerifiableDataId(verifyData.getVerifiableDataId());
+            Long verifiablePhoneId = verificationTokenIndex.removeVerifiablePhoneId(tokenUUID,
+                    verifyData.getVerifiableDataId());
+            if (verifiablePhoneId == null) {
+                verifiablePhoneId = getVerifiablePhoneIdByVerifiableDataId(verifyData.getVerifiableDataId());
+            }
             if (verifiablePhoneId != null) {
                 result = new PhoneVerificationResult(verifiablePhoneId,
                         determinePhoneNumberConfirmationResult(verifyData.getTokenUsageResult()));
@@ -0,0 +1,225 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.everit.phonenumber.api.PhoneNumberServiceMetrics;
+import org.everit.phonenumber.api.dto.OperationStatistics;
+import org.everit.phonenumber.api.enums.PhoneNumberConfirmationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link PhoneNumberServiceMetrics}. The {@link MeteredPhoneNumberService} records the service
+ * methods, the {@link PhoneNumberServiceImpl} and the {@link SMSDispatcher} record the stages of the methods.
+ * <p>
+ * The {@link #init()} registers the instance as an MXBean on the platform MBean server with the {@link #objectName}
+ * unless the {@link #objectName} is empty.
+ */
+public class PhoneNumberServiceMetricsImpl implements PhoneNumberServiceMetrics {
+
+    /**
+     * The logger instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhoneNumberServiceMetricsImpl.class);
+
+    /**
+     * The timers by the name of the operation.
+     */
+    private final ConcurrentMap<String, OperationTimer> timers = new ConcurrentHashMap<String, OperationTimer>();
+
+    /**
+     * The number of the confirmations by the ordinal of the {@link PhoneNumberConfirmationResult}.
+     */
+    private final AtomicLongArray confirmationResultCounts = new AtomicLongArray(
+            PhoneNumberConfirmationResult.values().length);
+
+    /**
+     * The nanoseconds the current thread spent in the database so far. Only the owner thread accesses the array.
+     */
+    private final ThreadLocal<long[]> databaseNanos = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * The JMX object name of the MXBean.
+     */
+    private String objectName = "org.everit.phonenumber:type=PhoneNumberServiceMetrics";
+
+    /**
+     * The name the MXBean was registered with or <code>null</code> if it is not registered.
+     */
+    private ObjectName registeredObjectName;
+
+    /**
+     * Adds the time of a database call of the current thread. Called by the {@link MeteredEntityManager}.
+     * 
+     * @param nanos
+     *            the latency of the call in nanoseconds.
+     */
+    public void addDatabaseTime(final long nanos) {
+        databaseNanos.get()[0] += nanos;
+    }
+
+    /**
+     * Unregisters the MXBean.
+     */
+    public void destroy() {
+        if (registeredObjectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredObjectName);
+        } catch (JMException e) {
+            LOGGER.warn("Cannot unregister the MXBean " + registeredObjectName + ".", e);
+        }
+        registeredObjectName = null;
+    }
+
+    @Override
+    public Map<PhoneNumberConfirmationResult, Long> getConfirmationResultCounts() {
+        Map<PhoneNumberConfirmationResult, Long> result = new EnumMap<PhoneNumberConfirmationResult, Long>(
+                PhoneNumberConfirmationResult.class);
+        for (PhoneNumberConfirmationResult confirmationResult : PhoneNumberConfirmationResult.values()) {
+            result.put(confirmationResult, confirmationResultCounts.get(confirmationResult.ordinal()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the time the current thread spent in the database since it started. The database time of an operation is
+     * the difference of the values before and after the operation.
+     * 
+     * @return the nanoseconds.
+     */
+    public long getDatabaseTime() {
+        return databaseNanos.get()[0];
+    }
+
+    @Override
+    public long[] getLatencyBucketBounds() {
+        return OperationTimer.getBucketBounds();
+    }
+
+    @Override
+    public Map<String, OperationStatistics> getOperationStatistics() {
+        SortedMap<String, OperationStatistics> result = new TreeMap<String, OperationStatistics>();
+        for (Map.Entry<String, OperationTimer> entry : timers.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the timer of the operation.
+     * 
+     * @param operationName
+     *            the name of the operation.
+     * @return the timer. Created if it does not exist.
+     */
+    private OperationTimer getTimer(final String operationName) {
+        OperationTimer timer = timers.get(operationName);
+        if (timer == null) {
+            OperationTimer newTimer = new OperationTimer();
+            timer = timers.putIfAbsent(operationName, newTimer);
+            if (timer == null) {
+                timer = newTimer;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Registers the MXBean on the platform MBean server.
+     * 
+     * @throws IllegalStateException
+     *             if the MXBean cannot be registered.
+     */
+    public void init() {
+        if ((objectName == null) || (objectName.length() == 0)) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(objectName);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(new StandardMBean(this, PhoneNumberServiceMetrics.class, true), name);
+            registeredObjectName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the MXBean " + objectName + ".", e);
+        }
+    }
+
+    /**
+     * Records the result of a phone number confirmation.
+     * 
+     * @param confirmationResult
+     *            the result. Ignored if <code>null</code>.
+     */
+    public void recordConfirmationResult(final PhoneNumberConfirmationResult confirmationResult) {
+        if (confirmationResult != null) {
+            confirmationResultCounts.incrementAndGet(confirmationResult.ordinal());
+        }
+    }
+
+    /**
+     * Records an invocation of an operation.
+     * 
+     * @param operationName
+     *            the name of the operation.
+     * @param nanos
+     *            the latency of the invocation in nanoseconds.
+     * @param error
+     *            the exception thrown by the invocation or <code>null</code> if the invocation succeeded.
+     */
+    public void recordOperation(final String operationName, final long nanos, final Throwable error) {
+        getTimer(operationName).record(nanos, error);
+    }
+
+    @Override
+    public void reset() {
+        timers.clear();
+        for (int i = 0; i < confirmationResultCounts.length(); i++) {
+            confirmationResultCounts.set(i, 0);
+        }
+    }
+
+    public void setObjectName(final String objectName) {
+        this.objectName = objectName;
+    }
+}
@@ -0,0 +1,258 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+import org.everit.phonenumber.entity.PhoneNumberAreaEntity;
+import org.everit.phonenumber.entity.PhoneNumberAreaEntity_;
+import org.everit.phonenumber.entity.PhoneNumberCountryEntity;
+import org.everit.phonenumber.entity.PhoneNumberCountryEntity_;
+import org.everit.phonenumber.entity.PhoneNumberEntity;
+import org.everit.phonenumber.entity.PhoneNumberEntity_;
+import org.everit.phonenumber.entity.PhoneNumberVerifiablePhoneEntity;
+import org.everit.phonenumber.entity.PhoneNumberVerifiablePhoneEntity_;
+import org.everit.verifiabledata.entity.VerifiableDataEntity;
+
+/**
+ * The criteria queries of the {@link PhoneNumberServiceImpl} with fixed shape. The queries are built once with named
+ * parameters and are only read afterwards, so they can be shared by the threads and passed to any entity manager of
+ * the same persistence unit. The foreign keys are compared through the id attribute of the referenced entity, so no
+ * entity reference is needed to set the parameters.
+ */
+final class PreparedQueries {
+
+    /**
+     * The name of the country code (ISO3166-alpha-2) parameter.
+     */
+    static final String COUNTRY_CODE_PARAMETER = "countryISO3166A2Code";
+
+    /**
+     * The name of the area call number parameter.
+     */
+    static final String CALL_NUMBER_PARAMETER = "callNumber";
+
+    /**
+     * The name of the id parameter of the queries selecting by id.
+     */
+    static final String ID_PARAMETER = "id";
+
+    /**
+     * The name of the subscriber number parameter.
+     */
+    static final String SUBSCRIBER_NUMBER_PARAMETER = "subscriberNumber";
+
+    /**
+     * The name of the extension parameter.
+     */
+    static final String EXTENSION_PARAMETER = "extension";
+
+    /**
+     * The name of the E.164 number parameter.
+     */
+    static final String E164_NUMBER_PARAMETER = "e164Number";
+
+    /**
+     * Selects the id of the active area by the country code and call number.
+     */
+    private final CriteriaQuery<Long> activeAreaIdQuery;
+
+    /**
+     * Selects the country code by the country code.
+     */
+    private final CriteriaQuery<String> countryCodeQuery;
+
+    /**
+     * Selects the callable phone number by the phone number id.
+     */
+    private final CriteriaQuery<CallablePhoneNumber> callablePhoneNumberQuery;
+
+    /**
+     * Selects the callable phone number by the verifiable phone id.
+     */
+    private final CriteriaQuery<CallablePhoneNumber> callablePhoneNumberByVerifiablePhoneIdQuery;
+
+    /**
+     * Selects the phone number id by the area id, subscriber number and extension.
+     */
+    private final CriteriaQuery<Long> phoneNumberIdQuery;
+
+    /**
+     * Selects the phone number id without extension by the area id and subscriber number.
+     */
+    private final CriteriaQuery<Long> phoneNumberIdWithoutExtensionQuery;
+
+    /**
+     * Selects the phone number ids by the E.164 number in the order of the ids.
+     */
+    private final CriteriaQuery<Long> phoneNumberIdsByE164Query;
+
+    /**
+     * Selects the subscriber number length of the active area by the area id.
+     */
+    private final CriteriaQuery<Integer> subscriberNumberLengthQuery;
+
+    /**
+     * Selects the verifiable phone id by the verifiable data id.
+     */
+    private final CriteriaQuery<Long> verifiablePhoneIdQuery;
+
+    /**
+     * Building the queries.
+     * 
+     * @param em
+     *            the entity manager providing the criteria builder and the metamodel.
+     */
+    PreparedQueries(final EntityManager em) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        activeAreaIdQuery = cb.createQuery(Long.class);
+        Root<PhoneNumberAreaEntity> areaRoot = activeAreaIdQuery.from(PhoneNumberAreaEntity.class);
+        activeAreaIdQuery.select(areaRoot.get(PhoneNumberAreaEntity_.phoneAreaId));
+        activeAreaIdQuery.where(cb.and(
+                cb.equal(areaRoot.get(PhoneNumberAreaEntity_.callNumber),
+                        cb.parameter(String.class, CALL_NUMBER_PARAMETER)),
+                cb.equal(areaRoot.get(PhoneNumberAreaEntity_.phoneNumberCountry)
+                        .get(PhoneNumberCountryEntity_.countryISO3166A2Code),
+                        cb.parameter(String.class, COUNTRY_CODE_PARAMETER)),
+                cb.equal(areaRoot.get(PhoneNumberAreaEntity_.active), true)));
+
+        countryCodeQuery = cb.createQuery(String.class);
+        Root<PhoneNumberCountryEntity> countryRoot = countryCodeQuery.from(PhoneNumberCountryEntity.class);
+        countryCodeQuery.select(countryRoot.get(PhoneNumberCountryEntity_.countryISO3166A2Code));
+        countryCodeQuery.where(cb.equal(countryRoot.get(PhoneNumberCountryEntity_.countryISO3166A2Code),
+                cb.parameter(String.class, COUNTRY_CODE_PARAMETER)));
+
+        callablePhoneNumberQuery = cb.createQuery(CallablePhoneNumber.class);
+        Root<PhoneNumberEntity> phoneNumberRoot = callablePhoneNumberQuery.from(PhoneNumberEntity.class);
+        Join<PhoneNumberEntity, PhoneNumberAreaEntity> pna = phoneNumberRoot.join(PhoneNumberEntity_.phoneNumberArea);
+        Join<PhoneNumberAreaEntity, PhoneNumberCountryEntity> pnc = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry);
+        callablePhoneNumberQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.iddPrefix),
+                pnc.get(PhoneNumberCountryEntity_.nddPrefix), pnc.get(PhoneNumberCountryEntity_.countryCallCode),
+                pna.get(PhoneNumberAreaEntity_.callNumber), phoneNumberRoot.get(PhoneNumberEntity_.subScriberNumber),
+                phoneNumberRoot.get(PhoneNumberEntity_.extension));
+        callablePhoneNumberQuery.where(cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberId),
+                cb.parameter(Long.class, ID_PARAMETER)));
+
+        callablePhoneNumberByVerifiablePhoneIdQuery = cb.createQuery(CallablePhoneNumber.class);
+        Root<PhoneNumberVerifiablePhoneEntity> verifiablePhoneRoot = callablePhoneNumberByVerifiablePhoneIdQuery
+                .from(PhoneNumberVerifiablePhoneEntity.class);
+        Join<PhoneNumberVerifiablePhoneEntity, PhoneNumberEntity> pn = verifiablePhoneRoot
+                .join(PhoneNumberVerifiablePhoneEntity_.phoneNumber);
+        pna = pn.join(PhoneNumberEntity_.phoneNumberArea);
+        pnc = pna.join(PhoneNumberAreaEntity_.phoneNumberCountry);
+        callablePhoneNumberByVerifiablePhoneIdQuery.multiselect(pnc.get(PhoneNumberCountryEntity_.iddPrefix),
+                pnc.get(PhoneNumberCountryEntity_.nddPrefix), pnc.get(PhoneNumberCountryEntity_.countryCallCode),
+                pna.get(PhoneNumberAreaEntity_.callNumber), pn.get(PhoneNumberEntity_.subScriberNumber),
+                pn.get(PhoneNumberEntity_.extension));
+        callablePhoneNumberByVerifiablePhoneIdQuery.where(cb.equal(
+                verifiablePhoneRoot.get(PhoneNumberVerifiablePhoneEntity_.verifiablePhoneId),
+                cb.parameter(Long.class, ID_PARAMETER)));
+
+        phoneNumberIdQuery = cb.createQuery(Long.class);
+        phoneNumberRoot = phoneNumberIdQuery.from(PhoneNumberEntity.class);
+        phoneNumberIdQuery.select(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberId));
+        phoneNumberIdQuery.where(cb.and(
+                cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberArea)
+                        .get(PhoneNumberAreaEntity_.phoneAreaId), cb.parameter(Long.class, ID_PARAMETER)),
+                cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.subScriberNumber),
+                        cb.parameter(String.class, SUBSCRIBER_NUMBER_PARAMETER)),
+                cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.extension),
+                        cb.parameter(String.class, EXTENSION_PARAMETER))));
+
+        phoneNumberIdWithoutExtensionQuery = cb.createQuery(Long.class);
+        phoneNumberRoot = phoneNumberIdWithoutExtensionQuery.from(PhoneNumberEntity.class);
+        phoneNumberIdWithoutExtensionQuery.select(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberId));
+        phoneNumberIdWithoutExtensionQuery.where(cb.and(
+                cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberArea)
+                        .get(PhoneNumberAreaEntity_.phoneAreaId), cb.parameter(Long.class, ID_PARAMETER)),
+                cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.subScriberNumber),
+                        cb.parameter(String.class, SUBSCRIBER_NUMBER_PARAMETER)),
+                cb.isNull(phoneNumberRoot.get(PhoneNumberEntity_.extension))));
+
+        phoneNumberIdsByE164Query = cb.createQuery(Long.class);
+        phoneNumberRoot = phoneNumberIdsByE164Query.from(PhoneNumberEntity.class);
+        phoneNumberIdsByE164Query.select(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberId));
+        phoneNumberIdsByE164Query.where(cb.equal(phoneNumberRoot.get(PhoneNumberEntity_.e164Number),
+                cb.parameter(String.class, E164_NUMBER_PARAMETER)));
+        phoneNumberIdsByE164Query.orderBy(cb.asc(phoneNumberRoot.get(PhoneNumberEntity_.phoneNumberId)));
+
+        subscriberNumberLengthQuery = cb.createQuery(Integer.class);
+        areaRoot = subscriberNumberLengthQuery.from(PhoneNumberAreaEntity.class);
+        subscriberNumberLengthQuery.select(areaRoot.get(PhoneNumberAreaEntity_.subscriberNumberLength));
+        subscriberNumberLengthQuery.where(cb.and(
+                cb.equal(areaRoot.get(PhoneNumberAreaEntity_.phoneAreaId), cb.parameter(Long.class, ID_PARAMETER)),
+                cb.equal(areaRoot.get(PhoneNumberAreaEntity_.active), true)));
+
+        // the id attribute of the verifiable data entity of the other bundle is looked up in the metamodel
+        SingularAttribute<? super VerifiableDataEntity, Long> verifiableDataId = em.getMetamodel()
+                .entity(VerifiableDataEntity.class).getId(Long.class);
+        verifiablePhoneIdQuery = cb.createQuery(Long.class);
+        verifiablePhoneRoot = verifiablePhoneIdQuery.from(PhoneNumberVerifiablePhoneEntity.class);
+        verifiablePhoneIdQuery.select(verifiablePhoneRoot.get(PhoneNumberVerifiablePhoneEntity_.verifiablePhoneId));
+        verifiablePhoneIdQuery.where(cb.equal(
+                verifiablePhoneRoot.get(PhoneNumberVerifiablePhoneEntity_.verifiableData).get(verifiableDataId),
+                cb.parameter(Long.class, ID_PARAMETER)));
+    }
+
+    public CriteriaQuery<Long> getActiveAreaIdQuery() {
+        return activeAreaIdQuery;
+    }
+
+    public CriteriaQuery<CallablePhoneNumber> getCallablePhoneNumberByVerifiablePhoneIdQuery() {
+        return callablePhoneNumberByVerifiablePhoneIdQuery;
+    }
+
+    public CriteriaQuery<CallablePhoneNumber> getCallablePhoneNumberQuery() {
+        return callablePhoneNumberQuery;
+    }
+
+    public CriteriaQuery<String> getCountryCodeQuery() {
+        return countryCodeQuery;
+    }
+
+    public CriteriaQuery<Long> getPhoneNumberIdQuery() {
+        return phoneNumberIdQuery;
+    }
+
+    public CriteriaQuery<Long> getPhoneNumberIdWithoutExtensionQuery() {
+        return phoneNumberIdWithoutExtensionQuery;
+    }
+
+    public CriteriaQuery<Long> getPhoneNumberIdsByE164Query() {
+        return phoneNumberIdsByE164Query;
+    }
+
+    public CriteriaQuery<Integer> getSubscriberNumberLengthQuery() {
+        return subscriberNumberLengthQuery;
+    }
+
+    public CriteriaQuery<Long> getVerifiablePhoneIdQuery() {
+        return verifiablePhoneIdQuery;
+    }
+}
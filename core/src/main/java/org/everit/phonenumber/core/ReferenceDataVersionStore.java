@@ -0,0 +1,94 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import javax.persistence.EntityManager;
+
+import org.everit.phonenumber.entity.PhoneNumberReferenceDataVersionEntity;
+
+/**
+ * Reads and increments the version of the reference data stored in the database. The version is stored in the only
+ * row of the {@link PhoneNumberReferenceDataVersionEntity} table. The row is created once by {@link #createVersion()}
+ * when the {@link DatabaseInvalidationBroadcaster} starts, the modifications of the reference data only update it, so
+ * the concurrent first modifications cannot collide on the primary key.
+ */
+public class ReferenceDataVersionStore {
+
+    /**
+     * The id of the version row.
+     */
+    private static final long VERSION_ID = 1L;
+
+    /**
+     * The bulk update incrementing the version. Locks the version row until the end of the transaction, so the
+     * concurrent modifications of the reference data get different versions.
+     */
+    private static final String INCREMENT_VERSION_QUERY = "UPDATE PhoneNumberReferenceDataVersionEntity v"
+            + " SET v.dataVersion = v.dataVersion + 1 WHERE v.versionId = :versionId";
+
+    /**
+     * The {@link EntityManager} instance.
+     */
+    private EntityManager em;
+
+    /**
+     * Creates the version row if it does not exist.
+     */
+    public void createVersion() {
+        if (em.find(PhoneNumberReferenceDataVersionEntity.class, VERSION_ID) == null) {
+            em.persist(new PhoneNumberReferenceDataVersionEntity(VERSION_ID, 0));
+            em.flush();
+        }
+    }
+
+    /**
+     * Returns the current version of the reference data.
+     * 
+     * @return the version or 0 if the reference data was never modified.
+     */
+    public long getVersion() {
+        PhoneNumberReferenceDataVersionEntity entity = em.find(PhoneNumberReferenceDataVersionEntity.class,
+                VERSION_ID);
+        if (entity == null) {
+            return 0;
+        }
+        return entity.getDataVersion();
+    }
+
+    /**
+     * Increments the version of the reference data in the current transaction.
+     * 
+     * @throws IllegalStateException
+     *             if the version row was not created by {@link #createVersion()}.
+     */
+    public void incrementVersion() {
+        int updatedCount = em.createQuery(INCREMENT_VERSION_QUERY).setParameter("versionId", VERSION_ID)
+                .executeUpdate();
+        if (updatedCount == 0) {
+            throw new IllegalStateException("The version row of the reference data does not exist.");
+        }
+    }
+
+    public void setEm(final EntityManager em) {
+        this.em = em;
+    }
+}
@@ -0,0 +1,563 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.everit.phonenumber.api.dto.CallablePhoneNumber;
+import org.everit.smssender.api.MessageFormat;
+import org.everit.smssender.api.SMSSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the SMS messages through the {@link SMSSender} after the commit of the current transaction, so the slow
+ * SMS gateway does not hold the database connection and the transaction open. The messages of a rolled back
+ * transaction are dropped.
+ * <p>
+ * The messages are delivered by a bounded worker pool, the committing thread only hands them over. When the queue of
+ * the pool is full, the thread handing over a message waits for a free place at most {@link #submitTimeout}
+ * milliseconds, so a slow SMS gateway slows down the producers instead of losing their messages. Only a message that
+ * cannot be queued within the timeout is dropped with an error log. A failed delivery is retried {@link #maxAttempts}
+ * times, the retries are scheduled on a separate scheduler thread after the {@link #retryDelay}, so neither the
+ * committing thread nor the workers sleep.
+ * <p>
+ * When the dispatcher is stopped, the scheduled retries are handed over to the workers at once and the workers deliver
+ * the queue in {@link #TERMINATION_TIMEOUT} milliseconds. The pending messages are kept in memory only, the messages of
+ * a node that is killed or cannot deliver its queue within the timeout are lost.
+ */
+public class SMSDispatcher {
+
+    /**
+     * A message waiting for delivery.
+     */
+    private final class PendingSMS implements Runnable {
+
+        /**
+         * The country call code.
+         */
+        private final String countryCallCode;
+
+        /**
+         * The area call number.
+         */
+        private final String areaCallNumber;
+
+        /**
+         * The number of the subscriber.
+         */
+        private final String subscriberNumber;
+
+        /**
+         * The extension number.
+         */
+        private final String extension;
+
+        /**
+         * The body of the message.
+         */
+        private final String message;
+
+        /**
+         * The format of the message.
+         */
+        private final MessageFormat messageFormat;
+
+        /**
+         * The flag of the sender passed through to the {@link SMSSender}.
+         */
+        private final boolean option;
+
+        /**
+         * The number of the delivery attempts so far. Only the thread running the message accesses it, the executors
+         * publish it safely between the attempts.
+         */
+        private int attempt = 0;
+
+        /**
+         * The simple constructor.
+         * 
+         * @param countryCallCode
+         *            the country call code.
+         * @param areaCallNumber
+         *            the area call number.
+         * @param subscriberNumber
+         *            the number of the subscriber.
+         * @param extension
+         *            the extension number.
+         * @param message
+         *            the body of the message.
+         * @param messageFormat
+         *            the format of the message.
+         * @param option
+         *            the boolean option of the message, passed through to the {@link SMSSender}.
+         */
+        private PendingSMS(final String countryCallCode, final String areaCallNumber,
+                final String subscriberNumber, final String extension, final String message,
+                final MessageFormat messageFormat, final boolean option) {
+            this.countryCallCode = countryCallCode;
+            this.areaCallNumber = areaCallNumber;
+            this.subscriberNumber = subscriberNumber;
+            this.extension = extension;
+            this.message = message;
+            this.messageFormat = messageFormat;
+            this.option = option;
+        }
+
+        @Override
+        public void run() {
+            attempt++;
+            long startTime = System.nanoTime();
+            try {
+                smsSender.sendMessage(countryCallCode, areaCallNumber, subscriberNumber, extension, message,
+                        messageFormat, option);
+                metrics.recordOperation("smsSender.sendMessage", System.nanoTime() - startTime, null);
+            } catch (RuntimeException e) {
+                metrics.recordOperation("smsSender.sendMessage", System.nanoTime() - startTime, e);
+                if (attempt >= maxAttempts) {
+                    LOGGER.error("Cannot deliver the SMS to " + this + " after " + attempt + " attempts.", e);
+                } else {
+                    LOGGER.warn("Cannot deliver the SMS to " + this + " (attempt " + attempt + "), retrying.", e);
+                    scheduleRetry(this);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "+" + countryCallCode + areaCallNumber + subscriberNumber;
+        }
+    }
+
+    /**
+     * The logger of the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SMSDispatcher.class);
+
+    /**
+     * The milliseconds to wait for the workers delivering the queued messages when the dispatcher is stopped.
+     */
+    private static final long TERMINATION_TIMEOUT = 10000;
+
+    /**
+     * Waits for the termination of a shut down executor.
+     * 
+     * @param executorService
+     *            the shut down executor.
+     * @return <code>true</code> if the executor terminated within the {@link #TERMINATION_TIMEOUT}.
+     */
+    private static boolean awaitTermination(final ExecutorService executorService) {
+        try {
+            return executorService.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates a factory of daemon threads.
+     * 
+     * @param namePrefix
+     *            the prefix of the names of the threads, followed by the number of the thread.
+     * @return the thread factory.
+     */
+    private static ThreadFactory daemonThreadFactory(final String namePrefix) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, namePrefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * The {@link SMSSender} instance.
+     */
+    private SMSSender smsSender;
+
+    /**
+     * The {@link TransactionSynchronizationRegistry} instance. If <code>null</code>, the messages are delivered
+     * immediately.
+     */
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * The {@link PhoneNumberServiceMetricsImpl} instance recording the sending of the messages.
+     */
+    private PhoneNumberServiceMetricsImpl metrics;
+
+    /**
+     * The number of the worker threads.
+     */
+    private int threadCount = 4;
+
+    /**
+     * The maximum number of the messages waiting for a worker thread.
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * The number of the delivery attempts of a message.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * The delay before the first retry in milliseconds. Multiplied by the number of the failed attempts before the
+     * next retries.
+     */
+    private long retryDelay = 1000;
+
+    /**
+     * The maximum milliseconds to wait for a free place in the queue when a message is handed over.
+     */
+    private long submitTimeout = 30000;
+
+    /**
+     * The free places of the queue, the running messages hold a place too. Created before the {@link #executor}.
+     */
+    private Semaphore queuePermits;
+
+    /**
+     * The worker pool or <code>null</code> if the dispatcher is not running. Read by the callers and the worker
+     * threads.
+     */
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * The scheduler of the retries or <code>null</code> if the dispatcher is not running or stopping. Read by the
+     * worker threads.
+     */
+    private volatile ScheduledThreadPoolExecutor retryScheduler;
+
+    /**
+     * Stopping the worker pool. The retries not started yet are handed over to the workers without their delay and
+     * the queued messages are delivered before the threads terminate. The messages not delivered within the
+     * {@link #TERMINATION_TIMEOUT} are dropped with an error log.
+     */
+    public void destroy() {
+        ScheduledThreadPoolExecutor currentRetryScheduler = retryScheduler;
+        retryScheduler = null;
+        if (currentRetryScheduler != null) {
+            List<Runnable> retries = new ArrayList<Runnable>();
+            currentRetryScheduler.getQueue().drainTo(retries);
+            currentRetryScheduler.shutdown();
+            SMSDispatcher.awaitTermination(currentRetryScheduler);
+            for (Runnable retry : retries) {
+                retry.run();
+            }
+        }
+        ThreadPoolExecutor currentExecutor = executor;
+        if (currentExecutor != null) {
+            currentExecutor.shutdown();
+            if (!SMSDispatcher.awaitTermination(currentExecutor)) {
+                int droppedCount = currentExecutor.shutdownNow().size();
+                LOGGER.error("The SMS worker pool did not terminate, " + droppedCount + " messages are dropped.");
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Sending the message after the commit of the current transaction. If there is no active transaction, the
+     * message is sent immediately. The parameters are the same as the parameters of
+     * {@link SMSSender#sendMessage(String, String, String, String, String, MessageFormat, boolean)}.
+     * 
+     * @param countryCallCode
+     *            the country call code.
+     * @param areaCallNumber
+     *            the area call number.
+     * @param subscriberNumber
+     *            the number of the subscriber.
+     * @param extension
+     *            the extension number.
+     * @param message
+     *            the body of the message.
+     * @param messageFormat
+     *            the format of the message.
+     * @param option
+     *            the boolean option of the message, passed through to the {@link SMSSender}.
+     */
+    public void dispatch(final String countryCallCode, final String areaCallNumber, final String subscriberNumber,
+            final String extension, final String message, final MessageFormat messageFormat, final boolean option) {
+        dispatchAfterCommit(Collections.singletonList(new PendingSMS(countryCallCode, areaCallNumber,
+                subscriberNumber, extension, message, messageFormat, option)), null, null);
+    }
+
+    /**
+     * Submitting the messages after the commit of the current transaction or immediately if there is no active
+     * transaction.
+     * 
+     * @param pendingSMSs
+     *            the messages.
+     * @param recipientIds
+     *            the ids of the recipients in the order of the messages or <code>null</code>.
+     * @param undeliveredRecipientIds
+     *            the list collecting the ids of the recipients whose messages are dropped or <code>null</code>.
+     */
+    private void dispatchAfterCommit(final List<PendingSMS> pendingSMSs, final List<Long> recipientIds,
+            final List<Long> undeliveredRecipientIds) {
+        if (pendingSMSs.isEmpty()) {
+            return;
+        }
+        if ((transactionSynchronizationRegistry == null)
+                || (transactionSynchronizationRegistry.getTransactionKey() == null)) {
+            submitAll(pendingSMSs, recipientIds, undeliveredRecipientIds);
+            return;
+        }
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    submitAll(pendingSMSs, recipientIds, undeliveredRecipientIds);
+                }
+            }
+
+            @Override
+            public void beforeCompletion() {
+            }
+        });
+    }
+
+    /**
+     * Sending the messages after the commit of the current transaction. If there is no active transaction, the
+     * messages are sent immediately. One transaction synchronization is registered for the whole batch.
+     * <p>
+     * The messages are handed over one by one, the thread handing them over waits for the workers when the queue is
+     * full, so a large batch is throttled to the speed of the SMS gateway. If a message cannot be queued within the
+     * {@link #submitTimeout}, the delivery is considered stalled and the rest of the batch is dropped without waiting.
+     * The ids of the recipients of the dropped messages are added to the undeliveredRecipientIds list when the
+     * messages are handed over, that is after the commit or before the return if there is no active transaction.
+     * 
+     * @param recipientIds
+     *            the ids of the recipients in the order of the recipients. Cannot be <code>null</code>.
+     * @param recipients
+     *            the recipients of the messages. Cannot be <code>null</code>.
+     * @param messages
+     *            the bodies of the messages in the order of the recipients. Cannot be <code>null</code>.
+     * @param messageFormat
+     *            the format of the messages.
+     * @param option
+     *            the boolean option of the messages, passed through to the {@link SMSSender}.
+     * @param undeliveredRecipientIds
+     *            the list collecting the ids of the recipients whose messages are dropped. Cannot be
+     *            <code>null</code>.
+     * 
+     * @throws IllegalArgumentException
+     *             if the recipientIds, recipients, messages or undeliveredRecipientIds parameter is <code>null</code>
+     *             or the sizes of the recipientIds, recipients and messages are different.
+     */
+    public void dispatchAll(final List<Long> recipientIds, final List<CallablePhoneNumber> recipients,
+            final List<String> messages, final MessageFormat messageFormat, final boolean option,
+            final List<Long> undeliveredRecipientIds) {
+        if ((recipientIds == null) || (recipients == null) || (messages == null)
+                || (undeliveredRecipientIds == null) || (recipientIds.size() != recipients.size())
+                || (recipients.size() != messages.size())) {
+            throw new IllegalArgumentException("The recipientIds, recipients, messages or undeliveredRecipientIds"
+                    + " parameter is null or the sizes of the recipientIds, recipients and messages are different.");
+        }
+        List<PendingSMS> pendingSMSs = new ArrayList<PendingSMS>(recipients.size());
+        for (int i = 0; i < recipients.size(); i++) {
+            CallablePhoneNumber recipient = recipients.get(i);
+            pendingSMSs.add(new PendingSMS(recipient.getCountryCallCode(), recipient.getAreaCallNumber(),
+                    recipient.getSubscriberNumber(), recipient.getExtension(), messages.get(i), messageFormat,
+                    option));
+        }
+        dispatchAfterCommit(pendingSMSs, recipientIds, undeliveredRecipientIds);
+    }
+
+    /**
+     * Starting the worker pool and the scheduler of the retries.
+     * 
+     * @throws IllegalArgumentException
+     *             if the threadCount or queueCapacity or maxAttempts is not positive or the retryDelay or
+     *             submitTimeout is negative.
+     */
+    public void init() {
+        if ((threadCount < 1) || (queueCapacity < 1) || (maxAttempts < 1) || (retryDelay < 0) || (submitTimeout < 0)) {
+            throw new IllegalArgumentException("The threadCount, queueCapacity and maxAttempts must be positive, the"
+                    + " retryDelay and submitTimeout cannot be negative.");
+        }
+        // the queue is bounded by the permits, so the producers can wait for a free place
+        queuePermits = new Semaphore(queueCapacity + threadCount);
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), SMSDispatcher.daemonThreadFactory("phonenumber-sms-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        retryScheduler = new ScheduledThreadPoolExecutor(1,
+                SMSDispatcher.daemonThreadFactory("phonenumber-sms-retry-"));
+    }
+
+    /**
+     * Handing over the failed message to the worker pool after the {@link #retryDelay} multiplied by the number of
+     * the failed attempts. If the dispatcher is stopping, the message is retried at once on the current thread.
+     * 
+     * @param pendingSMS
+     *            the failed message.
+     */
+    private void scheduleRetry(final PendingSMS pendingSMS) {
+        ScheduledThreadPoolExecutor currentRetryScheduler = retryScheduler;
+        if (currentRetryScheduler != null) {
+            try {
+                currentRetryScheduler.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        submit(pendingSMS);
+                    }
+                }, retryDelay * pendingSMS.attempt, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("The retry scheduler is stopped.", e);
+            }
+        }
+        LOGGER.warn("The SMS dispatcher is stopping, the SMS to " + pendingSMS + " is retried without delay.");
+        pendingSMS.run();
+    }
+
+    public void setMaxAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setMetrics(final PhoneNumberServiceMetricsImpl metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setQueueCapacity(final int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public void setSmsSender(final SMSSender smsSender) {
+        this.smsSender = smsSender;
+    }
+
+    public void setSubmitTimeout(final long submitTimeout) {
+        this.submitTimeout = submitTimeout;
+    }
+
+    public void setThreadCount(final int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void setTransactionSynchronizationRegistry(
+            final TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+
+    /**
+     * Handing over the message to the worker pool. If the queue of the pool is full, the current thread waits for a
+     * free place at most {@link #submitTimeout} milliseconds. The message is dropped with an error log if it cannot be
+     * queued within the timeout or the dispatcher is not running.
+     * 
+     * @param pendingSMS
+     *            the message.
+     * @return <code>true</code> if the message is queued.
+     */
+    private boolean submit(final PendingSMS pendingSMS) {
+        ThreadPoolExecutor currentExecutor = executor;
+        if ((currentExecutor == null) || currentExecutor.isShutdown()) {
+            LOGGER.error("The SMS dispatcher is not running, the SMS to " + pendingSMS + " is dropped.");
+            return false;
+        }
+        final Semaphore permits = queuePermits;
+        try {
+            if (!permits.tryAcquire(submitTimeout, TimeUnit.MILLISECONDS)) {
+                LOGGER.error("The SMS queue is full for " + submitTimeout + " milliseconds, the SMS to " + pendingSMS
+                        + " is dropped.");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting for the SMS queue, the SMS to " + pendingSMS + " is dropped.", e);
+            return false;
+        }
+        try {
+            currentExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        pendingSMS.run();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            LOGGER.error("The SMS dispatcher is stopped, the SMS to " + pendingSMS + " is dropped.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Submitting the messages one by one. After the first message that cannot be queued, the rest of the messages are
+     * dropped without waiting for the queue.
+     * 
+     * @param pendingSMSs
+     *            the messages.
+     * @param recipientIds
+     *            the ids of the recipients in the order of the messages or <code>null</code>.
+     * @param undeliveredRecipientIds
+     *            the list collecting the ids of the recipients whose messages are dropped or <code>null</code>.
+     */
+    private void submitAll(final List<PendingSMS> pendingSMSs, final List<Long> recipientIds,
+            final List<Long> undeliveredRecipientIds) {
+        int droppedCount = 0;
+        for (int i = 0; i < pendingSMSs.size(); i++) {
+            if ((droppedCount == 0) && submit(pendingSMSs.get(i))) {
+                continue;
+            }
+            droppedCount++;
+            if (undeliveredRecipientIds != null) {
+                undeliveredRecipientIds.add(recipientIds.get(i));
+            }
+        }
+        if (droppedCount > 1) {
+            LOGGER.error("The SMS delivery is stalled, " + droppedCount + " messages of the batch are dropped.");
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+
+/**
+ * Bounded cache of the parsed Velocity templates keyed by the content of the template. The least recently used
+ * template is dropped if the cache is full. The parsed templates are immutable, so the merge runs without locking.
+ * <p>
+ * If the {@link #renderThreadCount} is positive, the {@link #init()} starts a worker pool and
+ * {@link #mergeAll(String, List)} splits the large batches between the workers and the calling thread.
+ */
+public class VelocityTemplateCache {
+
+    /**
+     * The name of the templates used in the error messages of Velocity.
+     */
+    private static final String TEMPLATE_NAME = "ERROR";
+
+    /**
+     * The minimum number of the messages rendered by one thread in {@link #mergeAll(String, List)}. Smaller
+     * batches are not worth the hand-off to the workers.
+     */
+    private static final int MIN_RENDER_CHUNK_SIZE = 100;
+
+    /**
+     * Merging the template with the variables into the writer.
+     * 
+     * @param template
+     *            the parsed template.
+     * @param variables
+     *            the variables of the template.
+     * @return the merged template.
+     */
+    private static String merge(final Template template, final Map<String, Object> variables) {
+        StringWriter writer = new StringWriter();
+        template.merge(new VelocityContext(variables), writer);
+        return writer.toString();
+    }
+
+    /**
+     * Merging the template with a range of the variables.
+     * 
+     * @param template
+     *            the parsed template.
+     * @param variablesList
+     *            the variables of the messages.
+     * @param results
+     *            the array receiving the messages at the index of their variables.
+     * @param fromIndex
+     *            the first index of the range, inclusive.
+     * @param toIndex
+     *            the last index of the range, exclusive.
+     */
+    private static void mergeRange(final Template template, final List<Map<String, Object>> variablesList,
+            final String[] results, final int fromIndex, final int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            results[i] = VelocityTemplateCache.merge(template, variablesList.get(i));
+        }
+    }
+
+    /**
+     * The Velocity runtime owning the parsed templates.
+     */
+    private final RuntimeInstance runtimeInstance;
+
+    /**
+     * The maximum number of the cached templates.
+     */
+    private int maxSize = 64;
+
+    /**
+     * The number of the worker threads of {@link #mergeAll(String, List)}. Zero means the calling thread renders
+     * all messages.
+     */
+    private int renderThreadCount = 0;
+
+    /**
+     * The worker pool or <code>null</code> if the {@link #renderThreadCount} is zero.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The parsed templates by the template content in access order. Guarded by itself.
+     */
+    private final Map<String, Template> templates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Template> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Creating and initializing the Velocity runtime of the cache.
+     */
+    public VelocityTemplateCache() {
+        runtimeInstance = new RuntimeInstance();
+        runtimeInstance.init();
+    }
+
+    /**
+     * Stopping the worker pool.
+     */
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the parsed template. The template is parsed and cached if not cached yet.
+     * 
+     * @param templateContent
+     *            the content of the template. Cannot be <code>null</code>.
+     * @return the parsed template.
+     * 
+     * @throws ParseErrorException
+     *             if the template is not valid.
+     */
+    private Template getTemplate(final String templateContent) {
+        Template template;
+        synchronized (templates) {
+            template = templates.get(templateContent);
+        }
+        if (template == null) {
+            template = parse(templateContent);
+            synchronized (templates) {
+                templates.put(templateContent, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Starting the worker pool if the {@link #renderThreadCount} is positive.
+     */
+    public void init() {
+        if (renderThreadCount < 0) {
+            throw new IllegalArgumentException("The renderThreadCount is negative.");
+        }
+        if (renderThreadCount > 0) {
+            executor = Executors.newFixedThreadPool(renderThreadCount, new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(r, "phonenumber-render-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Merging the template with the variables. The template is parsed only at the first use.
+     * 
+     * @param templateContent
+     *            the content of the template. Cannot be <code>null</code>.
+     * @param variables
+     *            the variables of the template. Cannot be <code>null</code>.
+     * @return the merged template.
+     * 
+     * @throws IllegalArgumentException
+     *             if the templateContent or variables parameter is <code>null</code>.
+     * @throws ParseErrorException
+     *             if the template is not valid.
+     */
+    public String merge(final String templateContent, final Map<String, Object> variables) {
+        if ((templateContent == null) || (variables == null)) {
+            throw new IllegalArgumentException("The templateContent or variables parameter is null.");
+        }
+        return VelocityTemplateCache.merge(getTemplate(templateContent), variables);
+    }
+
+    /**
+     * Merging the template with every element of the variables list. The template is parsed only once. The large
+     * lists are rendered in parallel if the worker pool is running.
+     * 
+     * @param templateContent
+     *            the content of the template. Cannot be <code>null</code>.
+     * @param variablesList
+     *            the variables of the messages. Cannot be <code>null</code> and cannot contain <code>null</code>.
+     * @return the merged templates in the order of the variables.
+     * 
+     * @throws IllegalArgumentException
+     *             if the templateContent or variablesList parameter is <code>null</code>.
+     * @throws ParseErrorException
+     *             if the template is not valid.
+     */
+    public List<String> mergeAll(final String templateContent, final List<Map<String, Object>> variablesList) {
+        if ((templateContent == null) || (variablesList == null)) {
+            throw new IllegalArgumentException("The templateContent or variablesList parameter is null.");
+        }
+        final Template template = getTemplate(templateContent);
+        final String[] results = new String[variablesList.size()];
+        ExecutorService currentExecutor = executor;
+        int chunkCount = Math.min(renderThreadCount + 1, results.length / MIN_RENDER_CHUNK_SIZE);
+        if ((currentExecutor == null) || (chunkCount < 2)) {
+            VelocityTemplateCache.mergeRange(template, variablesList, results, 0, results.length);
+            return Arrays.asList(results);
+        }
+
+        int chunkSize = ((results.length + chunkCount) - 1) / chunkCount;
+        List<Future<?>> futures = new ArrayList<Future<?>>(chunkCount - 1);
+        for (int i = chunkSize; i < results.length; i += chunkSize) {
+            final int fromIndex = i;
+            final int toIndex = Math.min(i + chunkSize, results.length);
+            futures.add(currentExecutor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    VelocityTemplateCache.mergeRange(template, variablesList, results, fromIndex, toIndex);
+                }
+            }));
+        }
+        VelocityTemplateCache.mergeRange(template, variablesList, results, 0, chunkSize);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering the messages.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Cannot render the messages.", e.getCause());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Parsing the template.
+     * 
+     * @param templateContent
+     *            the content of the template.
+     * @return the parsed template.
+     * 
+     * @throws ParseErrorException
+     *             if the template is not valid.
+     */
+    private Template parse(final String templateContent) {
+        Template template = new Template();
+        template.setName(TEMPLATE_NAME);
+        template.setRuntimeServices(runtimeInstance);
+        try {
+            template.setData(runtimeInstance.parse(new StringReader(templateContent), TEMPLATE_NAME));
+        } catch (ParseException e) {
+            throw new ParseErrorException(e, TEMPLATE_NAME);
+        }
+        template.initDocument();
+        return template;
+    }
+
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void setRenderThreadCount(final int renderThreadCount) {
+        this.renderThreadCount = renderThreadCount;
+    }
+}
@@ -0,0 +1,310 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the verification requests per phone number and optionally per country call code with token buckets. A
+ * bucket holds at most capacity tokens, a request takes one token and one token is refilled in every refillInterval
+ * milliseconds.
+ * <p>
+ * Every phone number id and country call code has its own bucket in a {@link ConcurrentHashMap}, the keys never share
+ * a limit. A bucket is one {@link AtomicLong} holding the time when the bucket becomes full again (the generic cell
+ * rate algorithm) updated by compare-and-set, so there is no lock on the request path. A full bucket carries no state,
+ * so the buckets are removed by a sweep once they are full again: the sweep runs in a request once in every
+ * {@link #sweepInterval} milliseconds or, at most once in every {@link #minSweepInterval} milliseconds, when the map
+ * of the phone numbers holds more than {@link #maxBucketCount} buckets. The buckets still limiting a key are never
+ * dropped, so the map is capped instead: while it holds {@link #bucketCountLimit} buckets, the requests of the phone
+ * numbers without a bucket are rejected until a sweep frees place. The phone numbers already limited are not reset by
+ * a flood of new phone numbers, and the memory stays bounded.
+ */
+public class VerificationRateLimiter {
+
+    /**
+     * The value of a removed bucket. A request finding it takes a new bucket from the map.
+     */
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    /**
+     * Removes the full buckets of the map.
+     * 
+     * @param buckets
+     *            the buckets.
+     * @param now
+     *            the current time in nanoseconds.
+     * @param <K>
+     *            the type of the keys.
+     */
+    private static <K> void removeFullBuckets(final ConcurrentMap<K, AtomicLong> buckets, final long now) {
+        Iterator<AtomicLong> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            AtomicLong bucket = iterator.next();
+            long fullTime = bucket.get();
+            if ((fullTime != REMOVED) && (fullTime <= now) && bucket.compareAndSet(fullTime, REMOVED)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the key if there is one.
+     * 
+     * @param buckets
+     *            the buckets.
+     * @param key
+     *            the key of the bucket.
+     * @param intervalNanos
+     *            the refill interval of one token in nanoseconds.
+     * @param toleranceNanos
+     *            the refill time of the capacity minus one token in nanoseconds.
+     * @param limit
+     *            the number of the buckets that stops creating a new bucket.
+     * @param now
+     *            the current time in nanoseconds.
+     * @param <K>
+     *            the type of the keys.
+     * @return <code>true</code> if a token was taken, <code>false</code> if the bucket is empty or the key has no
+     *         bucket and the map holds limit buckets.
+     */
+    private static <K> boolean tryAcquire(final ConcurrentMap<K, AtomicLong> buckets, final K key,
+            final long intervalNanos, final long toleranceNanos, final int limit, final long now) {
+        while (true) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= limit) {
+                    return false;
+                }
+                AtomicLong newBucket = new AtomicLong(now);
+                bucket = buckets.putIfAbsent(key, newBucket);
+                if (bucket == null) {
+                    bucket = newBucket;
+                }
+            }
+            long fullTime = bucket.get();
+            while (fullTime != REMOVED) {
+                long start = Math.max(fullTime, now);
+                if ((start - now) > toleranceNanos) {
+                    return false;
+                }
+                if (bucket.compareAndSet(fullTime, start + intervalNanos)) {
+                    return true;
+                }
+                fullTime = bucket.get();
+            }
+            // removed by a concurrent sweep
+            buckets.remove(key, bucket);
+        }
+    }
+
+    /**
+     * The number of the requests a phone number can send at once.
+     */
+    private int phoneNumberCapacity = 10;
+
+    /**
+     * The milliseconds to refill one request of a phone number. <code>0</code> disables the limit of the phone
+     * numbers.
+     */
+    private long phoneNumberRefillInterval = 6000;
+
+    /**
+     * The number of the requests the phone numbers of a country call code can send at once.
+     */
+    private int countryCapacity = 1000;
+
+    /**
+     * The milliseconds to refill one request of a country call code. <code>0</code> disables the limit of the
+     * countries.
+     */
+    private long countryRefillInterval = 0;
+
+    /**
+     * The milliseconds between the sweeps of the full buckets.
+     */
+    private long sweepInterval = 60000;
+
+    /**
+     * The number of the buckets of the phone numbers triggering a sweep before the {@link #sweepInterval} elapses.
+     */
+    private int maxBucketCount = 100000;
+
+    /**
+     * The minimum milliseconds between two sweeps triggered by the {@link #maxBucketCount}.
+     */
+    private long minSweepInterval = 1000;
+
+    /**
+     * The number of the buckets of the phone numbers that rejects the requests of the phone numbers without a bucket.
+     */
+    private int bucketCountLimit = 1000000;
+
+    /**
+     * The start of the time of the buckets, the nanoseconds are measured from it.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The buckets by the phone number ids.
+     */
+    private final ConcurrentMap<Long, AtomicLong> phoneNumberBuckets = new ConcurrentHashMap<Long, AtomicLong>();
+
+    /**
+     * The buckets by the country call codes.
+     */
+    private final ConcurrentMap<String, AtomicLong> countryBuckets = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * The time of the next sweep in nanoseconds.
+     */
+    private final AtomicLong nextSweepTime = new AtomicLong();
+
+    /**
+     * The earliest time of a sweep triggered by the {@link #maxBucketCount} in nanoseconds.
+     */
+    private final AtomicLong nextBucketCountSweepTime = new AtomicLong();
+
+    /**
+     * The lock held by the sweeping thread, the other threads skip the sweep instead of waiting for it.
+     */
+    private final Lock sweepLock = new ReentrantLock();
+
+    /**
+     * Checks the configuration.
+     * 
+     * @throws IllegalArgumentException
+     *             if the capacities or the maxBucketCount or the sweepInterval is not positive or the refill intervals
+     *             or the minSweepInterval are negative or the bucketCountLimit is less than the maxBucketCount.
+     */
+    public void init() {
+        if ((phoneNumberCapacity < 1) || (countryCapacity < 1)) {
+            throw new IllegalArgumentException("The phoneNumberCapacity or countryCapacity is not positive.");
+        }
+        if ((phoneNumberRefillInterval < 0) || (countryRefillInterval < 0)) {
+            throw new IllegalArgumentException("The phoneNumberRefillInterval or countryRefillInterval is negative.");
+        }
+        if ((maxBucketCount < 1) || (sweepInterval < 1)) {
+            throw new IllegalArgumentException("The maxBucketCount or sweepInterval is not positive.");
+        }
+        if (minSweepInterval < 0) {
+            throw new IllegalArgumentException("The minSweepInterval is negative.");
+        }
+        if (bucketCountLimit < maxBucketCount) {
+            throw new IllegalArgumentException("The bucketCountLimit is less than the maxBucketCount.");
+        }
+    }
+
+    /**
+     * Returns the current time of the buckets and sweeps the full buckets if the sweep is due. A sweep is O(n), so the
+     * sweeps triggered by the number of the buckets are at least {@link #minSweepInterval} milliseconds apart.
+     * 
+     * @return the current time in nanoseconds.
+     */
+    private long now() {
+        long now = System.nanoTime() - startNanos;
+        boolean due = (now >= nextSweepTime.get())
+                || ((now >= nextBucketCountSweepTime.get()) && (phoneNumberBuckets.size() > maxBucketCount));
+        if (due && sweepLock.tryLock()) {
+            try {
+                nextSweepTime.set(now + TimeUnit.MILLISECONDS.toNanos(sweepInterval));
+                nextBucketCountSweepTime.set(now + TimeUnit.MILLISECONDS.toNanos(minSweepInterval));
+                VerificationRateLimiter.removeFullBuckets(phoneNumberBuckets, now);
+                VerificationRateLimiter.removeFullBuckets(countryBuckets, now);
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+        return now;
+    }
+
+    public void setBucketCountLimit(final int bucketCountLimit) {
+        this.bucketCountLimit = bucketCountLimit;
+    }
+
+    public void setCountryCapacity(final int countryCapacity) {
+        this.countryCapacity = countryCapacity;
+    }
+
+    public void setCountryRefillInterval(final long countryRefillInterval) {
+        this.countryRefillInterval = countryRefillInterval;
+    }
+
+    public void setMaxBucketCount(final int maxBucketCount) {
+        this.maxBucketCount = maxBucketCount;
+    }
+
+    public void setMinSweepInterval(final long minSweepInterval) {
+        this.minSweepInterval = minSweepInterval;
+    }
+
+    public void setPhoneNumberCapacity(final int phoneNumberCapacity) {
+        this.phoneNumberCapacity = phoneNumberCapacity;
+    }
+
+    public void setPhoneNumberRefillInterval(final long phoneNumberRefillInterval) {
+        this.phoneNumberRefillInterval = phoneNumberRefillInterval;
+    }
+
+    public void setSweepInterval(final long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * Takes a request from the bucket of the country call code.
+     * 
+     * @param countryCallCode
+     *            the country call code. Cannot be <code>null</code>.
+     * @return <code>true</code> if the request is allowed, <code>false</code> if the country call code has sent too
+     *         many requests.
+     */
+    public boolean tryAcquireCountry(final String countryCallCode) {
+        if (countryRefillInterval == 0) {
+            return true;
+        }
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(countryRefillInterval);
+        return VerificationRateLimiter.tryAcquire(countryBuckets, countryCallCode, intervalNanos,
+                intervalNanos * (countryCapacity - 1), Integer.MAX_VALUE, now());
+    }
+
+    /**
+     * Takes a request from the bucket of the phone number.
+     * 
+     * @param phoneNumberId
+     *            the id of the phone number.
+     * @return <code>true</code> if the request is allowed, <code>false</code> if the phone number has sent too many
+     *         requests or it has no bucket and the number of the buckets reached the bucketCountLimit.
+     */
+    public boolean tryAcquirePhoneNumber(final long phoneNumberId) {
+        if (phoneNumberRefillInterval == 0) {
+            return true;
+        }
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(phoneNumberRefillInterval);
+        return VerificationRateLimiter.tryAcquire(phoneNumberBuckets, phoneNumberId, intervalNanos,
+                intervalNanos * (phoneNumberCapacity - 1), bucketCountLimit, now());
+    }
+}
@@ -0,0 +1,188 @@
+package org.everit.phonenumber.core;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory index of the verification tokens created by this node. Resolves the verifiable phone of a token
+ * without querying the database. The index is a {@link ConcurrentHashMap}, the lookups and the insertions do not
+ * block each other. The expired entries are removed by a sweep that runs in a {@link #put} call once in every
+ * {@link #sweepInterval} milliseconds or when the index is full. If the index is still full after removing the
+ * expired entries, the sweep drops arbitrary entries too, so a missing entry must be resolved from the database.
+ * <p>
+ * An entry is used only if its verifiable data id matches the id returned by the verify service for the token, so
+ * the entries of rolled back transactions cannot cause wrong results.
+ */
+public class VerificationTokenIndex {
+
+    /**
+     * An entry of the index.
+     */
+    private static final class TokenEntry {
+
+        /**
+         * The id of the verifiable data of the token.
+         */
+        private final long verifiableDataId;
+
+        /**
+         * The id of the verifiable phone of the token.
+         */
+        private final long verifiablePhoneId;
+
+        /**
+         * The end of the validity of the token in milliseconds.
+         */
+        private final long tokenValidityEnd;
+
+        /**
+         * The simple constructor.
+         * 
+         * @param verifiableDataId
+         *            the id of the verifiable data of the token.
+         * @param verifiablePhoneId
+         *            the id of the verifiable phone of the token.
+         * @param tokenValidityEnd
+         *            the end of the validity of the token in milliseconds.
+         */
+        private TokenEntry(final long verifiableDataId, final long verifiablePhoneId, final long tokenValidityEnd) {
+            this.verifiableDataId = verifiableDataId;
+            this.verifiablePhoneId = verifiablePhoneId;
+            this.tokenValidityEnd = tokenValidityEnd;
+        }
+    }
+
+    /**
+     * The divisor of the {@link #maxSize} giving the number of the entries a full sweep frees up, so the sweeps of a
+     * full index are amortized over many insertions.
+     */
+    private static final int EVICTION_DIVISOR = 10;
+
+    /**
+     * The maximum number of the tokens in the index.
+     */
+    private int maxSize = 100000;
+
+    /**
+     * The milliseconds between the sweeps of the expired entries.
+     */
+    private long sweepInterval = 60000;
+
+    /**
+     * The entries by the tokens.
+     */
+    private final ConcurrentMap<String, TokenEntry> entries = new ConcurrentHashMap<String, TokenEntry>();
+
+    /**
+     * The time of the next sweep in milliseconds.
+     */
+    private final AtomicLong nextSweepTime = new AtomicLong();
+
+    /**
+     * The lock held by the sweeping thread, the other threads skip the sweep instead of waiting for it.
+     */
+    private final Lock sweepLock = new ReentrantLock();
+
+    /**
+     * Adds the token to the index.
+     * 
+     * @param tokenUUID
+     *            the token.
+     * @param verifiableDataId
+     *            the id of the verifiable data of the token.
+     * @param verifiablePhoneId
+     *            the id of the verifiable phone of the token.
+     * @param tokenValidityEndDate
+     *            the end of the validity of the token.
+     */
+    public void put(final String tokenUUID, final long verifiableDataId, final long verifiablePhoneId,
+            final Date tokenValidityEndDate) {
+        entries.put(tokenUUID, new TokenEntry(verifiableDataId, verifiablePhoneId, tokenValidityEndDate.getTime()));
+        long now = System.currentTimeMillis();
+        if (((now >= nextSweepTime.get()) || (entries.size() > maxSize)) && sweepLock.tryLock()) {
+            try {
+                sweep(now);
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the verifiable phone id of the token and removes the token from the index.
+     * 
+     * @param tokenUUID
+     *            the token.
+     * @param verifiableDataId
+     *            the id of the verifiable data returned by the verify service for the token.
+     * @return the id of the verifiable phone or <code>null</code> if the token is not in the index, expired or
+     *         belongs to another verifiable data.
+     */
+    public Long removeVerifiablePhoneId(final String tokenUUID, final long verifiableDataId) {
+        TokenEntry entry = entries.remove(tokenUUID);
+        if ((entry == null) || (entry.verifiableDataId != verifiableDataId)
+                || (entry.tokenValidityEnd < System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.verifiablePhoneId;
+    }
+
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void setSweepInterval(final long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * Removes the expired entries. If the index is still full, removes arbitrary entries until a tenth of the
+     * {@link #maxSize} is free.
+     * 
+     * @param now
+     *            the current time in milliseconds.
+     */
+    private void sweep(final long now) {
+        nextSweepTime.set(now + sweepInterval);
+        Iterator<TokenEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().tokenValidityEnd < now) {
+                iterator.remove();
+            }
+        }
+        if (entries.size() > maxSize) {
+            int targetSize = maxSize - (maxSize / EVICTION_DIVISOR);
+            iterator = entries.values().iterator();
+            while (iterator.hasNext() && (entries.size() > targetSize)) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+}
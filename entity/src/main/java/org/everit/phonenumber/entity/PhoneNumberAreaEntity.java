@@ -30,7 +30,9 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 /**
- * The entity of the phone number area.
+ * The entity of the phone number area. The areas are looked up by the country, the call number and the active flag,
+ * and only one active area is allowed for a country and call number. JPA 2.0 cannot describe these (partial)
+ * indexes, they are created by the scripts in the META-INF/sql folder of this bundle.
  */
 @Entity
 @Table(name = "PHONENUMBER_AREA")
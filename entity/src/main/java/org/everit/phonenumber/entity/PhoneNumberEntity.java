@@ -28,12 +28,17 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 /**
- * The entity of the phone number.
+ * The entity of the phone number. The area, subscriber number and extension of a phone number are unique together.
+ * Most databases do not compare the <code>null</code> values in unique constraints, so the uniqueness of the phone
+ * numbers without extension needs the partial index of the database scripts.
  */
 @Entity
-@Table(name = "PHONENUMBER_NUMBER")
+@Table(name = "PHONENUMBER_NUMBER", uniqueConstraints = @UniqueConstraint(
+        name = "UQ_PHONENUMBER_NUMBER_AREA_SUBSCRIBER_EXTENSION",
+        columnNames = { "AREA_ID", "SUBSCRIBER_NUMBER", "EXTENSION" }))
 public class PhoneNumberEntity {
 
     /**
@@ -63,6 +68,15 @@ public class PhoneNumberEntity {
     @JoinColumn(name = "AREA_ID", referencedColumnName = "PHONE_AREA_ID")
     private PhoneNumberAreaEntity phoneNumberArea;
 
+    /**
+     * The canonical E.164 form of the number: "+" and the digits of the country call code, the area call number and
+     * the subscriber number, without the extension. Denormalized for the reverse lookup. <code>null</code> for the
+     * phone numbers saved before the column existed and for the phone numbers of a country whose call code was
+     * changed by the numbering plan import, until filled.
+     */
+    @Column(name = "E164_NUMBER", length = 16)
+    private String e164Number;
+
     /**
      * The default constructor.
      */
@@ -89,6 +103,10 @@ public class PhoneNumberEntity {
         this.phoneNumberArea = phoneNumberArea;
     }
 
+    public String getE164Number() {
+        return e164Number;
+    }
+
     public String getExtension() {
         return extension;
     }
@@ -105,6 +123,10 @@ public class PhoneNumberEntity {
         return subScriberNumber;
     }
 
+    public void setE164Number(final String e164Number) {
+        this.e164Number = e164Number;
+    }
+
     public void setExtension(final String extension) {
         this.extension = extension;
     }
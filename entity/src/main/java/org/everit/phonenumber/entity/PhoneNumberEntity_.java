@@ -29,6 +29,7 @@ import javax.persistence.metamodel.StaticMetamodel;
 @StaticMetamodel(PhoneNumberEntity.class)
 public abstract class PhoneNumberEntity_ {
 
+	public static volatile SingularAttribute<PhoneNumberEntity, String> e164Number;
 	public static volatile SingularAttribute<PhoneNumberEntity, String> extension;
 	public static volatile SingularAttribute<PhoneNumberEntity, Long> phoneNumberId;
 	public static volatile SingularAttribute<PhoneNumberEntity, PhoneNumberAreaEntity> phoneNumberArea;
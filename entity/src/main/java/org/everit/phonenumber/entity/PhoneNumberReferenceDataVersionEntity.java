@@ -0,0 +1,86 @@
+package org.everit.phonenumber.entity;
+
+/*
+ * Copyright (c) 2011, Everit Kft.
+ *
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The entity of the version of the country and area reference data. The table has one row, the version is
+ * incremented by every modification of the reference data, so the nodes of a cluster can detect the modifications
+ * of the other nodes.
+ */
+@Entity
+@Table(name = "PHONENUMBER_REFERENCE_DATA_VERSION")
+public class PhoneNumberReferenceDataVersionEntity {
+
+    /**
+     * The id of the row.
+     */
+    @Id
+    @Column(name = "VERSION_ID")
+    private long versionId;
+
+    /**
+     * The version of the reference data.
+     */
+    @Column(name = "DATA_VERSION", nullable = false)
+    private long dataVersion;
+
+    /**
+     * The default constructor.
+     */
+    public PhoneNumberReferenceDataVersionEntity() {
+    }
+
+    /**
+     * The simple constructor.
+     * 
+     * @param versionId
+     *            the id of the row.
+     * @param dataVersion
+     *            the version of the reference data.
+     */
+    public PhoneNumberReferenceDataVersionEntity(final long versionId, final long dataVersion) {
+        this.versionId = versionId;
+        this.dataVersion = dataVersion;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public long getVersionId() {
+        return versionId;
+    }
+
+    public void setDataVersion(final long dataVersion) {
+        this.dataVersion = dataVersion;
+    }
+
+    public void setVersionId(final long versionId) {
+        this.versionId = versionId;
+    }
+
+}
@@ -28,14 +28,17 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import org.everit.verifiabledata.entity.VerifiableDataEntity;
 
 /**
- * The entity of the verifiable phone.
+ * The entity of the verifiable phone. The verifiable data is unique, the verifiable phone is looked up by the
+ * verifiable data at every verification.
  */
 @Entity
-@Table(name = "PHONENUMBER_VERIFIABLE_PHONE")
+@Table(name = "PHONENUMBER_VERIFIABLE_PHONE", uniqueConstraints = @UniqueConstraint(
+        name = "UQ_PHONENUMBER_VERIFIABLE_PHONE_VERIFIABLE_DATA", columnNames = { "VERIFIABLE_DATA_ID" }))
 public class PhoneNumberVerifiablePhoneEntity {
 
     /**
@@ -0,0 +1,35 @@
+--
+-- Copyright (c) 2011, Everit Kft.
+--
+-- All rights reserved.
+--
+-- This library is free software; you can redistribute it and/or
+-- modify it under the terms of the GNU Lesser General Public
+-- License as published by the Free Software Foundation; either
+-- version 3 of the License, or (at your option) any later version.
+--
+-- This library is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+-- Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public
+-- License along with this library; if not, write to the Free Software
+-- Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+-- MA 02110-1301  USA
+--
+
+-- Indexes of the phonenumber tables on H2. Run once after the tables are created. H2 has no partial indexes, the
+-- "one active area per country and call number" and the "one phone number without extension" rules are enforced by
+-- the service only. The foreign keys are indexed by H2 automatically.
+
+-- The active area lookup by country and call number and the listing of the areas of a country by call number.
+CREATE INDEX IF NOT EXISTS IX_PHONENUMBER_AREA_COUNTRY_CALL_NUMBER
+    ON PHONENUMBER_AREA (COUNTRY_CODE_ID, CALL_NUMBER, ACTIVE);
+
+-- The phone number lookup by its parts. Also declared on the entity.
+ALTER TABLE PHONENUMBER_NUMBER ADD CONSTRAINT IF NOT EXISTS UQ_PHONENUMBER_NUMBER_AREA_SUBSCRIBER_EXTENSION
+    UNIQUE (AREA_ID, SUBSCRIBER_NUMBER, EXTENSION);
+
+-- The reverse lookup of the phone numbers by the E.164 number.
+CREATE INDEX IF NOT EXISTS IX_PHONENUMBER_NUMBER_E164 ON PHONENUMBER_NUMBER (E164_NUMBER);
@@ -0,0 +1,45 @@
+--
+-- Copyright (c) 2011, Everit Kft.
+--
+-- All rights reserved.
+--
+-- This library is free software; you can redistribute it and/or
+-- modify it under the terms of the GNU Lesser General Public
+-- License as published by the Free Software Foundation; either
+-- version 3 of the License, or (at your option) any later version.
+--
+-- This library is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+-- Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public
+-- License along with this library; if not, write to the Free Software
+-- Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+-- MA 02110-1301  USA
+--
+
+-- Indexes and unique constraints of the phonenumber tables on PostgreSQL. Run once after the tables are created.
+
+-- The active area lookup by country and call number and the listing of the areas of a country by call number.
+CREATE INDEX IX_PHONENUMBER_AREA_COUNTRY_CALL_NUMBER ON PHONENUMBER_AREA (COUNTRY_CODE_ID, CALL_NUMBER, ACTIVE);
+
+-- Only one active area is allowed for a country and call number, any number of inactive ones.
+CREATE UNIQUE INDEX UQ_PHONENUMBER_AREA_ACTIVE_CALL_NUMBER ON PHONENUMBER_AREA (COUNTRY_CODE_ID, CALL_NUMBER)
+    WHERE ACTIVE;
+
+-- The unique constraints UQ_PHONENUMBER_VERIFIABLE_PHONE_VERIFIABLE_DATA (VERIFIABLE_DATA_ID) and
+-- UQ_PHONENUMBER_NUMBER_AREA_SUBSCRIBER_EXTENSION (AREA_ID, SUBSCRIBER_NUMBER, EXTENSION) are declared on the
+-- entities, so the schema generated by Hibernate already contains them and this script does not add them again. The
+-- latter leads with AREA_ID, so it indexes the foreign key too.
+
+-- The NULL extensions are distinct in the unique constraint, the phone numbers without extension need their own index.
+CREATE UNIQUE INDEX UQ_PHONENUMBER_NUMBER_AREA_SUBSCRIBER ON PHONENUMBER_NUMBER (AREA_ID, SUBSCRIBER_NUMBER)
+    WHERE EXTENSION IS NULL;
+
+-- The reverse lookup of the phone numbers by the E.164 number.
+CREATE INDEX IX_PHONENUMBER_NUMBER_E164 ON PHONENUMBER_NUMBER (E164_NUMBER);
+
+-- PostgreSQL does not index the foreign keys automatically.
+CREATE INDEX IX_PHONENUMBER_VERIFIABLE_PHONE_NUMBER ON PHONENUMBER_VERIFIABLE_PHONE (PHONE_NUMBER_ID);
+CREATE INDEX IX_PHONENUMBER_VERIFICATION_REQUEST_PHONE ON PHONENUMBER_VERIFICATION_REQUEST (VERIFIABLE_PHONE_ID);
@@ -21,29 +21,53 @@ package org.everit.phonenumber.itests.core;
  * MA 02110-1301  USA
  */
 
+import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.PersistenceException;
 
 import junit.framework.Assert;
 
+import org.everit.phonenumber.api.NumberingPlanImporter;
 import org.everit.phonenumber.api.PhoneNumberService;
+import org.everit.phonenumber.api.PhoneNumberServiceMetrics;
 import org.everit.phonenumber.api.PhoneVerificationResult;
+import org.everit.phonenumber.api.ReferenceDataInvalidationBroadcaster;
+import org.everit.phonenumber.api.ReferenceDataInvalidationListener;
 import org.everit.phonenumber.api.dto.Area;
 import org.everit.phonenumber.api.dto.CallablePhoneNumber;
 import org.everit.phonenumber.api.dto.Country;
+import org.everit.phonenumber.api.dto.NumberingPlanImportResult;
+import org.everit.phonenumber.api.dto.OperationStatistics;
+import org.everit.phonenumber.api.dto.ParsedPhoneNumber;
+import org.everit.phonenumber.api.dto.PhoneNumberBatchSaveResult;
+import org.everit.phonenumber.api.dto.PhoneNumberData;
+import org.everit.phonenumber.api.dto.VerificationRequestBatchResult;
 import org.everit.phonenumber.api.enums.PhoneNumberConfirmationResult;
 import org.everit.phonenumber.api.exceptions.DuplicateCountryException;
+import org.everit.phonenumber.api.exceptions.DuplicatePhoneNumberException;
 import org.everit.phonenumber.api.exceptions.DuplicateSelectableAreaException;
+import org.everit.phonenumber.api.exceptions.InvalidNumberingPlanException;
 import org.everit.phonenumber.api.exceptions.InvalidPhoneNumberException;
 import org.everit.phonenumber.api.exceptions.NoSuchAreaException;
+import org.everit.phonenumber.api.exceptions.NoSuchCountryException;
 import org.everit.phonenumber.api.exceptions.NoSuchPhoneNumberException;
 import org.everit.phonenumber.api.exceptions.NonPositiveSubscriberNumberLengthException;
+import org.everit.phonenumber.api.exceptions.SuppressedPhoneNumberException;
+import org.everit.phonenumber.api.exceptions.VerificationRateLimitExceededException;
+import org.everit.phonenumber.api.util.CallablePhoneNumberIterator;
+import org.everit.phonenumber.api.util.PhoneNumberFormatter;
+import org.everit.phonenumber.api.util.PhoneNumberSet;
 import org.everit.smssender.dummy.core.api.DummySMSSender;
 import org.everit.smssender.dummy.core.api.dto.DummySMS;
 import org.everit.verifiabledata.api.enums.VerificationLengthBase;
@@ -109,6 +133,16 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
      */
     private static final int MAX_RANDOM_VALUE = 1000000;
 
+    /**
+     * The milliseconds to wait for the asynchronous delivery of an SMS.
+     */
+    private static final long SMS_DELIVERY_TIMEOUT = 10000;
+
+    /**
+     * The milliseconds between the checks of the delivered SMS.
+     */
+    private static final long SMS_POLL_INTERVAL = 10;
+
     /**
      * The {@link PhoneNumberService} instance.
      */
@@ -119,6 +153,21 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
      */
     private DummySMSSender dummySMSSender;
 
+    /**
+     * The {@link PhoneNumberServiceMetrics} instance.
+     */
+    private PhoneNumberServiceMetrics phoneNumberServiceMetrics;
+
+    /**
+     * The {@link NumberingPlanImporter} instance.
+     */
+    private NumberingPlanImporter numberingPlanImporter;
+
+    /**
+     * The {@link ReferenceDataInvalidationBroadcaster} instance.
+     */
+    private ReferenceDataInvalidationBroadcaster invalidationBroadcaster;
+
     private void areaTestGetActiveAreaErrors() {
         Area a = AREAS.get(0);
         try {
@@ -145,6 +194,175 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         }
     }
 
+    private void areaTestImportNumberingPlan() {
+        NumberingPlanImportResult result = numberingPlanImporter.importNumberingPlan(new StringReader(
+                "# country, call code, idd, ndd, area, name, length\n"
+                        + "QD,9995,00,0,1,Plan 1,6\n"
+                        + "QD,9995,00,0,2,\"Plan 2, old\",6\n"
+                        + "\n"
+                        + "QD,9995,00,0,3,Plan 3,6\n"));
+        Assert.assertEquals(1, result.getInsertedCountryCount());
+        Assert.assertEquals(3, result.getInsertedAreaCount());
+        Assert.assertEquals("Plan 2, old", phoneNumberService.getActiveAreaByCountryAndCallNumber("QD", "2")
+                .getName());
+
+        result = numberingPlanImporter.importNumberingPlan(new StringReader("QD,9995,00,06,1,Plan 1,6\n"
+                + "QD,9995,00,06,2,Plan 2,7\n"
+                + "QD,9995,00,06,4,Plan 4,6\n"));
+        Assert.assertEquals(0, result.getInsertedCountryCount());
+        Assert.assertEquals(1, result.getUpdatedCountryCount());
+        Assert.assertEquals(1, result.getInsertedAreaCount());
+        Assert.assertEquals(1, result.getUpdatedAreaCount());
+        Assert.assertEquals(1, result.getInactivatedAreaCount());
+        Assert.assertEquals(1, result.getUnchangedAreaCount());
+
+        Assert.assertEquals("06", phoneNumberService.getCountry("QD").getNddPrefix());
+        Area updatedArea = phoneNumberService.getActiveAreaByCountryAndCallNumber("QD", "2");
+        Assert.assertEquals("Plan 2", updatedArea.getName());
+        Assert.assertEquals(7, updatedArea.getSubscriberNumberLength());
+        Assert.assertNull(phoneNumberService.getActiveAreaByCountryAndCallNumber("QD", "3"));
+        Assert.assertEquals(3, phoneNumberService.listActiveAreasBycountryISO3166A2Code("QD", null, null).size());
+
+        try {
+            numberingPlanImporter.importNumberingPlan(new StringReader("QD,9995,00,06,5,Plan 5,6\n"
+                    + "QD,9995,00,06,6,Plan 6,0\n"));
+            Assert.fail("Expect InvalidNumberingPlanException, but not throw the method.");
+        } catch (InvalidNumberingPlanException e) {
+            Assert.assertNotNull(e);
+        }
+        Assert.assertNull(phoneNumberService.getActiveAreaByCountryAndCallNumber("QD", "5"));
+
+        try {
+            numberingPlanImporter.importNumberingPlan(null);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void areaTestInactivateAreas() {
+        phoneNumberService.saveCountry("QA", "00", "0", "9993");
+        long firstAreaId = phoneNumberService.saveArea("QA", "1", "Inactivate 1", 6);
+        long secondAreaId = phoneNumberService.saveArea("QA", "2", "Inactivate 2", 6);
+        long thirdAreaId = phoneNumberService.saveArea("QA", "3", "Inactivate 3", 6);
+        Assert.assertEquals(3, phoneNumberService.listActiveAreasBycountryISO3166A2Code("QA", null, null).size());
+
+        phoneNumberService.inactivateArea(firstAreaId);
+        Assert.assertFalse(phoneNumberService.getAreaById(firstAreaId).isActive());
+        Assert.assertNull(phoneNumberService.getActiveAreaByCountryAndCallNumber("QA", "1"));
+        // inactivating an inactive area has no effect
+        phoneNumberService.inactivateArea(firstAreaId);
+
+        Assert.assertEquals(2,
+                phoneNumberService.inactivateAreas(Arrays.asList(firstAreaId, secondAreaId, thirdAreaId, 0L)));
+        Assert.assertTrue(phoneNumberService.listActiveAreasBycountryISO3166A2Code("QA", null, null).isEmpty());
+        Assert.assertEquals(0, phoneNumberService.inactivateAreas(new ArrayList<Long>()));
+
+        // the call number of an inactive area can be reused
+        phoneNumberService.saveArea("QA", "1", "Inactivate 1 new", 6);
+        Assert.assertEquals("Inactivate 1 new", phoneNumberService.getActiveAreaByCountryAndCallNumber("QA", "1")
+                .getName());
+
+        try {
+            phoneNumberService.inactivateArea(0L);
+            Assert.fail("Expect NoSuchAreaException, but not throw the method.");
+        } catch (NoSuchAreaException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.inactivateAreas(null);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.inactivateAreas(Arrays.asList(firstAreaId, null));
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void areaTestInactivateCountry() {
+        phoneNumberService.saveCountry("QB", "00", "0", "9994");
+        long firstAreaId = phoneNumberService.saveArea("QB", "1", "Inactivate 1", 6);
+        long secondAreaId = phoneNumberService.saveArea("QB", "2", "Inactivate 2", 6);
+        Assert.assertTrue(phoneNumberService.getCountry("QB").isSelectable());
+
+        phoneNumberService.inactivateCountry("QB");
+        Assert.assertFalse(phoneNumberService.getCountry("QB").isSelectable());
+        Assert.assertFalse(phoneNumberService.getAreaById(firstAreaId).isActive());
+        Assert.assertFalse(phoneNumberService.getAreaById(secondAreaId).isActive());
+        Assert.assertTrue(phoneNumberService.listActiveAreasBycountryISO3166A2Code("QB", null, null).isEmpty());
+        for (Country country : phoneNumberService.listActiveCountries(null, null)) {
+            Assert.assertFalse("QB".equals(country.getCountryISO3166A2Code()));
+        }
+
+        // inactivating an inactive country has no effect
+        phoneNumberService.inactivateCountry("QB");
+        Assert.assertFalse(phoneNumberService.getCountry("QB").isSelectable());
+
+        try {
+            phoneNumberService.inactivateCountry("QC");
+            Assert.fail("Expect NoSuchCountryException, but not throw the method.");
+        } catch (NoSuchCountryException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.inactivateCountry(null);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void areaTestListActiveAreasAfter() {
+        phoneNumberService.saveArea("EH", "20", "Keyset 20", 6);
+        phoneNumberService.saveArea("EH", "40", "Keyset 40", 6);
+        phoneNumberService.saveArea("EH", "60", "Keyset 60", 6);
+
+        List<Area> firstPage = phoneNumberService.listActiveAreasBycountryISO3166A2CodeAfter("EH", null, 2);
+        Assert.assertEquals(2, firstPage.size());
+        Assert.assertEquals("20", firstPage.get(0).getCallNumber());
+        Assert.assertEquals("40", firstPage.get(1).getCallNumber());
+
+        // saving areas before and after the position of the paging
+        phoneNumberService.saveArea("EH", "30", "Keyset 30", 6);
+        phoneNumberService.saveArea("EH", "50", "Keyset 50", 6);
+
+        List<Area> secondPage = phoneNumberService.listActiveAreasBycountryISO3166A2CodeAfter("EH",
+                firstPage.get(1).getCallNumber(), 2);
+        Assert.assertEquals(2, secondPage.size());
+        Assert.assertEquals("50", secondPage.get(0).getCallNumber());
+        Assert.assertEquals("60", secondPage.get(1).getCallNumber());
+
+        Assert.assertTrue(phoneNumberService.listActiveAreasBycountryISO3166A2CodeAfter("EH",
+                secondPage.get(1).getCallNumber(), 2).isEmpty());
+
+        List<Area> allAreas = phoneNumberService.listActiveAreasBycountryISO3166A2Code("EH", null, null);
+        Assert.assertEquals(5, allAreas.size());
+        for (int i = 1; i < allAreas.size(); i++) {
+            Assert.assertTrue(allAreas.get(i - 1).getCallNumber().compareTo(allAreas.get(i).getCallNumber()) < 0);
+        }
+
+        try {
+            phoneNumberService.listActiveAreasBycountryISO3166A2CodeAfter(null, null, 1);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.listActiveAreasBycountryISO3166A2CodeAfter("EH", null, 0);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
     private void areaTestListActiveAreasErrors() {
         try {
             phoneNumberService.listActiveAreasBycountryISO3166A2Code("HU", -1L, null);
@@ -298,6 +516,85 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         Assert.assertNull(country);
     }
 
+    private void countryTestInvalidationBroadcast() {
+        // the listeners stand for the caches of the other nodes of the cluster
+        final CountDownLatch latch = new CountDownLatch(3);
+        List<ReferenceDataInvalidationListener> listeners = new ArrayList<ReferenceDataInvalidationListener>();
+        for (int i = 0; i < 3; i++) {
+            listeners.add(new ReferenceDataInvalidationListener() {
+
+                private boolean notified;
+
+                @Override
+                public synchronized void referenceDataInvalidated() {
+                    if (!notified) {
+                        notified = true;
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            for (ReferenceDataInvalidationListener listener : listeners) {
+                invalidationBroadcaster.addListener(listener);
+            }
+            phoneNumberService.saveCountry("QE", "00", "0", "9996");
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assert.assertNotNull(phoneNumberService.getCountry("QE"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Assert.fail(e.getMessage());
+        } finally {
+            for (ReferenceDataInvalidationListener listener : listeners) {
+                invalidationBroadcaster.removeListener(listener);
+            }
+        }
+
+        try {
+            invalidationBroadcaster.addListener(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void countryTestListActiveCountriesAfter() {
+        List<Country> allCountries = phoneNumberService.listActiveCountries(null, null);
+        for (int i = 1; i < allCountries.size(); i++) {
+            Assert.assertTrue(allCountries.get(i - 1).getCountryISO3166A2Code()
+                    .compareTo(allCountries.get(i).getCountryISO3166A2Code()) < 0);
+        }
+
+        List<Country> firstPage = phoneNumberService.listActiveCountriesAfter(null, 3);
+        Assert.assertEquals(3, firstPage.size());
+        String lastCountryCode = firstPage.get(2).getCountryISO3166A2Code();
+        Assert.assertEquals(allCountries.get(2).getCountryISO3166A2Code(), lastCountryCode);
+
+        // saving countries before and after the position of the paging
+        phoneNumberService.saveCountry("AA", "00", "0", "9991");
+        phoneNumberService.saveCountry("ZZ", "00", "0", "9992");
+
+        List<String> pagedCountryCodes = new ArrayList<String>();
+        List<Country> page = phoneNumberService.listActiveCountriesAfter(lastCountryCode, 3);
+        while (!page.isEmpty()) {
+            for (Country country : page) {
+                pagedCountryCodes.add(country.getCountryISO3166A2Code());
+            }
+            page = phoneNumberService.listActiveCountriesAfter(
+                    page.get(page.size() - 1).getCountryISO3166A2Code(), 3);
+        }
+        Assert.assertFalse(pagedCountryCodes.contains("AA"));
+        Assert.assertEquals("ZZ", pagedCountryCodes.get(pagedCountryCodes.size() - 1));
+        Assert.assertEquals(allCountries.size() - 3 + 1, pagedCountryCodes.size());
+
+        try {
+            phoneNumberService.listActiveCountriesAfter(null, 0);
+            Assert.fail("Expect IllegalArgumentException, but not throw the method.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
     private void countryTestListActiveCountriesErrors() {
         try {
             phoneNumberService.listActiveCountries(null, -1L);
@@ -459,6 +756,14 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         areaTestListActiveAreasSuccess();
 
         areaTestListActiveAreasErrors();
+
+        areaTestListActiveAreasAfter();
+
+        areaTestInactivateAreas();
+
+        areaTestInactivateCountry();
+
+        areaTestImportNumberingPlan();
     }
 
     private void internalTestCountry() {
@@ -473,13 +778,35 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         countryTestListActiveCountriesSuccess();
 
         countryTestListActiveCountriesErrors();
+
+        countryTestListActiveCountriesAfter();
+
+        countryTestInvalidationBroadcast();
+    }
+
+    private void internalTestParse() {
+        parseTestParseSuccess();
+
+        parseTestParseErrors();
     }
 
     private void internalTestPhoneNumber() {
         phoneNumberTestSavePhoneNumberAndUpdatePhoneNumberSuccess();
 
+        phoneNumberTestGetCallablePhoneNumbers();
+
+        phoneNumberTestGetCallablePhoneNumbersAfter();
+
         phoneNumberTestSavePhoneNumberErrors();
 
+        phoneNumberTestSavePhoneNumbers();
+
+        phoneNumberTestFindOrCreatePhoneNumber();
+
+        phoneNumberTestFindPhoneNumberIdsByE164();
+
+        phoneNumberTestPhoneNumberFormatter();
+
         phoneNumberTestUpdatePhoneNumberErrors();
     }
 
@@ -487,19 +814,25 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         int halfListNumber = phoneNumberIdsList.size() / 2;
         List<DummySMS> expiredVerifiablePhoneSMSs = new ArrayList<DummySMS>();
         for (int i = 0; i < halfListNumber; i++) {
+            DummySMS previousDummySMS = dummySMSSender.getLatestDummySMS();
             phoneNumberService.createVerificationRequestViaSMS(phoneNumberIdsList.get(i), "$acceptToken\n$rejectToken",
                     getExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
-            DummySMS latestDummySMS = dummySMSSender.getLatestDummySMS();
-            Assert.assertNotNull(latestDummySMS);
+            DummySMS latestDummySMS = waitForNewDummySMS(previousDummySMS);
             expiredVerifiablePhoneSMSs.add(latestDummySMS);
         }
 
         verifiablePhoneTestCreateVerificationRequestAndVerifyPhoneNumberSuccess();
 
+        verifiablePhoneTestCreateVerificationRequestsViaSMS();
+
         verifiablePhoneTestCreateVerificationsRequestErrors();
 
         verifiablePhoneTestVerifyPhoneNumberErrors();
 
+        verifiablePhoneTestSuppressedPhoneNumbers();
+
+        verifiablePhoneTestRateLimit();
+
         boolean change = true;
         for (DummySMS sms : expiredVerifiablePhoneSMSs) {
             String message = sms.getMessage();
@@ -514,6 +847,259 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
             Assert.assertEquals(PhoneNumberConfirmationResult.FAILED, verifyPhoneNumber.getResult());
             change = !change;
         }
+
+        verifiablePhoneTestMetrics();
+    }
+
+    private void parseTestParseErrors() {
+        try {
+            phoneNumberService.parse(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.parse(null, "HU");
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void parseTestParseSuccess() {
+        Area area = AREAS.get(0);
+        ParsedPhoneNumber parsedPhoneNumber = phoneNumberService.parse("+36 20 123-4567");
+        Assert.assertNotNull(parsedPhoneNumber);
+        Assert.assertEquals(area.getCountryCode(), parsedPhoneNumber.getCountryISO3166A2Code());
+        Assert.assertEquals(area.getCallNumber(), parsedPhoneNumber.getAreaCallNumber());
+        Assert.assertEquals(areaIdsList.get(0).longValue(), parsedPhoneNumber.getAreaId());
+        Assert.assertEquals("1234567", parsedPhoneNumber.getSubscriberNumber());
+
+        parsedPhoneNumber = phoneNumberService.parse("0036201234567");
+        Assert.assertNotNull(parsedPhoneNumber);
+        Assert.assertEquals(areaIdsList.get(0).longValue(), parsedPhoneNumber.getAreaId());
+
+        parsedPhoneNumber = phoneNumberService.parse("06 (20) 1234567", "HU");
+        Assert.assertNotNull(parsedPhoneNumber);
+        Assert.assertEquals(areaIdsList.get(0).longValue(), parsedPhoneNumber.getAreaId());
+        Assert.assertEquals("1234567", parsedPhoneNumber.getSubscriberNumber());
+
+        parsedPhoneNumber = phoneNumberService.parse("00 49 176 12345678", "HU");
+        Assert.assertNotNull(parsedPhoneNumber);
+        Assert.assertEquals("DE", parsedPhoneNumber.getCountryISO3166A2Code());
+        Assert.assertEquals("176", parsedPhoneNumber.getAreaCallNumber());
+        Assert.assertEquals("12345678", parsedPhoneNumber.getSubscriberNumber());
+
+        parsedPhoneNumber = phoneNumberService.parse("+53 7 12345678");
+        Assert.assertNotNull(parsedPhoneNumber);
+        Assert.assertEquals("CU", parsedPhoneNumber.getCountryISO3166A2Code());
+        Assert.assertEquals("7", parsedPhoneNumber.getAreaCallNumber());
+
+        Assert.assertNull(phoneNumberService.parse("+36 20 123456"));
+        Assert.assertNull(phoneNumberService.parse("+36 99 1234567"));
+        Assert.assertNull(phoneNumberService.parse("+36 20 123x4567"));
+        Assert.assertNull(phoneNumberService.parse(""));
+    }
+
+    private void phoneNumberTestFindOrCreatePhoneNumber() {
+        for (String sn : PHONENUMBERS) {
+            int index = 0;
+            for (Area a : AREAS) {
+                if (sn.length() == a.getSubscriberNumberLength()) {
+                    long areaId = areaIdsList.get(index);
+                    Assert.assertNull(phoneNumberService.findPhoneNumberId(areaId, sn, "2"));
+                    long phoneNumberId = phoneNumberService.findOrCreatePhoneNumber(areaId, sn, "2");
+                    Assert.assertTrue(phoneNumberId > 0L);
+                    Assert.assertEquals(Long.valueOf(phoneNumberId), phoneNumberService.findPhoneNumberId(areaId, sn,
+                            "2"));
+                    Assert.assertEquals(phoneNumberId, phoneNumberService.findOrCreatePhoneNumber(areaId, sn, "2"));
+
+                    Assert.assertNull(phoneNumberService.findPhoneNumberId(areaId, sn, null));
+                    long withoutExtensionId = phoneNumberService.findOrCreatePhoneNumber(areaId, sn, null);
+                    Assert.assertTrue(withoutExtensionId != phoneNumberId);
+                    Assert.assertEquals(Long.valueOf(withoutExtensionId), phoneNumberService.findPhoneNumberId(areaId,
+                            sn, null));
+                    Assert.assertEquals(withoutExtensionId, phoneNumberService.findOrCreatePhoneNumber(areaId, sn,
+                            null));
+                    break;
+                }
+                index++;
+            }
+        }
+
+        try {
+            phoneNumberService.findPhoneNumberId(areaIdsList.get(0), null, null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.findOrCreatePhoneNumber(areaIdsList.get(0), null, null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.findOrCreatePhoneNumber(0L, PHONENUMBERS.get(0), null);
+            Assert.fail("Expect NoSuchAreaException, but the method not throws.");
+        } catch (NoSuchAreaException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.findOrCreatePhoneNumber(areaIdsList.get(0), "", null);
+            Assert.fail("Expect InvalidNumberException, but the method not throws.");
+        } catch (InvalidPhoneNumberException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void phoneNumberTestFindPhoneNumberIdsByE164() {
+        List<String> e164Numbers = new ArrayList<String>();
+        List<Long> phoneNumberIds = new ArrayList<Long>();
+        for (String sn : PHONENUMBERS) {
+            int index = 0;
+            for (Area a : AREAS) {
+                if (sn.length() == a.getSubscriberNumberLength()) {
+                    long phoneNumberId = phoneNumberService.savePhoneNumber(areaIdsList.get(index), sn, "3");
+                    String e164Number = "+" + phoneNumberService.getCountry(a.getCountryCode()).getCountryCallCode()
+                            + a.getCallNumber() + sn;
+                    List<Long> result = phoneNumberService.findPhoneNumberIdsByE164(e164Number);
+                    Assert.assertTrue(result.contains(phoneNumberId));
+                    Assert.assertTrue(result.contains(phoneNumberService.findPhoneNumberId(areaIdsList.get(index),
+                            sn, "2")));
+                    e164Numbers.add(e164Number);
+                    phoneNumberIds.add(phoneNumberId);
+                    break;
+                }
+                index++;
+            }
+        }
+        Assert.assertTrue(phoneNumberService.findPhoneNumberIdsByE164("+0").isEmpty());
+
+        e164Numbers.add("+0");
+        Map<String, List<Long>> result = phoneNumberService.findPhoneNumberIdsByE164(e164Numbers);
+        Assert.assertEquals(e164Numbers.size() - 1, result.size());
+        for (int i = 0; i < phoneNumberIds.size(); i++) {
+            Assert.assertTrue(result.get(e164Numbers.get(i)).contains(phoneNumberIds.get(i)));
+        }
+
+        Assert.assertEquals(0, phoneNumberService.fillMissingE164Numbers(Integer.MAX_VALUE));
+
+        try {
+            phoneNumberService.findPhoneNumberIdsByE164((String) null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.findPhoneNumberIdsByE164(Arrays.asList("+0", null));
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.fillMissingE164Numbers(0);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void phoneNumberTestGetCallablePhoneNumbers() {
+        List<Long> ids = new ArrayList<Long>(phoneNumberIdsList);
+        ids.add(0L);
+        Map<Long, CallablePhoneNumber> callablePhoneNumbers = phoneNumberService.getCallablePhoneNumbers(ids);
+        Assert.assertEquals(phoneNumberIdsList.size(), callablePhoneNumbers.size());
+        Assert.assertNull(callablePhoneNumbers.get(0L));
+        for (Long phoneNumberId : phoneNumberIdsList) {
+            CallablePhoneNumber expected = phoneNumberService.getCallablePhoneNumber(phoneNumberId);
+            CallablePhoneNumber actual = callablePhoneNumbers.get(phoneNumberId);
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.getCountryIDD(), actual.getCountryIDD());
+            Assert.assertEquals(expected.getCountryNDD(), actual.getCountryNDD());
+            Assert.assertEquals(expected.getCountryCallCode(), actual.getCountryCallCode());
+            Assert.assertEquals(expected.getAreaCallNumber(), actual.getAreaCallNumber());
+            Assert.assertEquals(expected.getSubscriberNumber(), actual.getSubscriberNumber());
+            Assert.assertEquals(expected.getExtension(), actual.getExtension());
+        }
+
+        Assert.assertTrue(phoneNumberService.getCallablePhoneNumbers(new ArrayList<Long>()).isEmpty());
+
+        try {
+            phoneNumberService.getCallablePhoneNumbers(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.getCallablePhoneNumbers(Arrays.asList(1L, null));
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void phoneNumberTestGetCallablePhoneNumbersAfter() {
+        List<Long> iteratedIds = new ArrayList<Long>();
+        CallablePhoneNumberIterator iterator = new CallablePhoneNumberIterator(phoneNumberService, 3);
+        while (iterator.hasNext()) {
+            Map.Entry<Long, CallablePhoneNumber> entry = iterator.next();
+            if (!iteratedIds.isEmpty()) {
+                Assert.assertTrue(iteratedIds.get(iteratedIds.size() - 1) < entry.getKey());
+            }
+            iteratedIds.add(entry.getKey());
+            Assert.assertEquals(phoneNumberService.getCallablePhoneNumber(entry.getKey()).getSubscriberNumber(),
+                    entry.getValue().getSubscriberNumber());
+        }
+        Assert.assertTrue(iteratedIds.containsAll(phoneNumberIdsList));
+
+        SortedMap<Long, CallablePhoneNumber> page = phoneNumberService.getCallablePhoneNumbersAfter(0, 2);
+        Assert.assertEquals(Math.min(2, iteratedIds.size()), page.size());
+        Assert.assertEquals(iteratedIds.get(0), page.firstKey());
+        Assert.assertTrue(phoneNumberService.getCallablePhoneNumbersAfter(
+                iteratedIds.get(iteratedIds.size() - 1), 2).isEmpty());
+
+        try {
+            phoneNumberService.getCallablePhoneNumbersAfter(0, 0);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
+    private void phoneNumberTestPhoneNumberFormatter() {
+        long phoneNumberId = phoneNumberIdsList.get(0);
+        CallablePhoneNumber callablePhoneNumber = phoneNumberService.getCallablePhoneNumber(phoneNumberId);
+        String e164Number = PhoneNumberFormatter.appendE164(callablePhoneNumber, new StringBuilder()).toString();
+        Assert.assertTrue(phoneNumberService.findPhoneNumberIdsByE164(e164Number).contains(phoneNumberId));
+
+        String national = callablePhoneNumber.getCountryNDD() + callablePhoneNumber.getAreaCallNumber()
+                + callablePhoneNumber.getSubscriberNumber();
+        Assert.assertEquals(national, PhoneNumberFormatter.appendNational(callablePhoneNumber, new StringBuilder())
+                .toString());
+        Country ownCountry = new Country("", callablePhoneNumber.getCountryIDD(), callablePhoneNumber.getCountryNDD(),
+                callablePhoneNumber.getCountryCallCode(), true);
+        Assert.assertEquals(national, PhoneNumberFormatter.appendDialable(callablePhoneNumber, ownCountry,
+                new StringBuilder()).toString());
+
+        Country otherCountry = new Country("", "99", "9", "9" + callablePhoneNumber.getCountryCallCode(), true);
+        CharBuffer charBuffer = CharBuffer.allocate(e164Number.length() + 1);
+        PhoneNumberFormatter.appendDialable(callablePhoneNumber, otherCountry, charBuffer).flip();
+        Assert.assertEquals("99" + e164Number.substring(1), charBuffer.toString());
+
+        try {
+            PhoneNumberFormatter.appendE164(null, new StringBuilder());
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
     }
 
     private void phoneNumberTestSavePhoneNumberAndUpdatePhoneNumberSuccess() {
@@ -565,6 +1151,74 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         }
     }
 
+    private void phoneNumberTestSavePhoneNumbers() {
+        List<PhoneNumberData> phoneNumbers = new ArrayList<PhoneNumberData>();
+        List<Integer> validIndexes = new ArrayList<Integer>();
+        for (String sn : PHONENUMBERS) {
+            int index = 0;
+            for (Area a : AREAS) {
+                if (sn.length() == a.getSubscriberNumberLength()) {
+                    validIndexes.add(phoneNumbers.size());
+                    phoneNumbers.add(new PhoneNumberData(areaIdsList.get(index), sn, "1"));
+                    break;
+                }
+                index++;
+            }
+        }
+        int nullIndex = phoneNumbers.size();
+        phoneNumbers.add(null);
+        int nullSubscriberNumberIndex = phoneNumbers.size();
+        phoneNumbers.add(new PhoneNumberData(areaIdsList.get(0), null, null));
+        int noSuchAreaIndex = phoneNumbers.size();
+        phoneNumbers.add(new PhoneNumberData(0L, PHONENUMBERS.get(0), null));
+        int invalidLengthIndex = phoneNumbers.size();
+        phoneNumbers.add(new PhoneNumberData(areaIdsList.get(0), "", null));
+        int duplicateIndex = phoneNumbers.size();
+        PhoneNumberData firstValidPhoneNumber = phoneNumbers.get(validIndexes.get(0));
+        phoneNumbers.add(new PhoneNumberData(firstValidPhoneNumber.getAreaId(),
+                firstValidPhoneNumber.getSubscriberNumber(), firstValidPhoneNumber.getExtension()));
+
+        PhoneNumberBatchSaveResult result = phoneNumberService.savePhoneNumbers(phoneNumbers);
+        Assert.assertNotNull(result);
+        Assert.assertEquals(phoneNumbers.size(), result.getPhoneNumberIds().size());
+        Assert.assertEquals(phoneNumbers.size() - validIndexes.size(), result.getFailures().size());
+        for (Integer i : validIndexes) {
+            Long phoneNumberId = result.getPhoneNumberIds().get(i);
+            Assert.assertNotNull(phoneNumberId);
+            CallablePhoneNumber callablePhoneNumber = phoneNumberService.getCallablePhoneNumber(phoneNumberId);
+            Assert.assertNotNull(callablePhoneNumber);
+            Assert.assertEquals(phoneNumbers.get(i).getSubscriberNumber(), callablePhoneNumber.getSubscriberNumber());
+            Assert.assertEquals("1", callablePhoneNumber.getExtension());
+        }
+        Assert.assertNull(result.getPhoneNumberIds().get(nullIndex));
+        Assert.assertTrue(result.getFailures().get(nullIndex) instanceof IllegalArgumentException);
+        Assert.assertTrue(result.getFailures().get(nullSubscriberNumberIndex) instanceof IllegalArgumentException);
+        Assert.assertTrue(result.getFailures().get(noSuchAreaIndex) instanceof NoSuchAreaException);
+        Assert.assertTrue(result.getFailures().get(invalidLengthIndex) instanceof InvalidPhoneNumberException);
+        Assert.assertTrue(result.getFailures().get(duplicateIndex) instanceof DuplicatePhoneNumberException);
+        Assert.assertNull(result.getPhoneNumberIds().get(duplicateIndex));
+
+        PhoneNumberBatchSaveResult duplicateResult = phoneNumberService.savePhoneNumbers(Arrays
+                .asList(firstValidPhoneNumber));
+        Assert.assertNull(duplicateResult.getPhoneNumberIds().get(0));
+        Assert.assertTrue(duplicateResult.getFailures().get(0) instanceof DuplicatePhoneNumberException);
+
+        try {
+            phoneNumberService.savePhoneNumber(firstValidPhoneNumber.getAreaId(),
+                    firstValidPhoneNumber.getSubscriberNumber(), firstValidPhoneNumber.getExtension());
+            Assert.fail("Expect DuplicatePhoneNumberException, but the method not throws.");
+        } catch (DuplicatePhoneNumberException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.savePhoneNumbers(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
     private void phoneNumberTestUpdatePhoneNumberErrors() {
         try {
             phoneNumberService.updatePhoneNumber(0L, 1L, "", "");
@@ -599,14 +1253,27 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         this.dummySMSSender = dummySMSSender;
     }
 
+    public void setInvalidationBroadcaster(final ReferenceDataInvalidationBroadcaster invalidationBroadcaster) {
+        this.invalidationBroadcaster = invalidationBroadcaster;
+    }
+
+    public void setNumberingPlanImporter(final NumberingPlanImporter numberingPlanImporter) {
+        this.numberingPlanImporter = numberingPlanImporter;
+    }
+
     public void setPhoneNumberService(final PhoneNumberService phoneNumberService) {
         this.phoneNumberService = phoneNumberService;
     }
 
+    public void setPhoneNumberServiceMetrics(final PhoneNumberServiceMetrics phoneNumberServiceMetrics) {
+        this.phoneNumberServiceMetrics = phoneNumberServiceMetrics;
+    }
+
     @Override
     public void test() {
         internalTestCountry();
         internalTestArea();
+        internalTestParse();
         internalTestPhoneNumber();
         internalTestVerifiablePhone();
     }
@@ -616,11 +1283,11 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         int halfListNumber = phoneNumberIdsList.size() / 2;
         boolean change = true;
         for (int i = halfListNumber; i < phoneNumberIdsList.size(); i++) {
+            DummySMS previousDummySMS = dummySMSSender.getLatestDummySMS();
             phoneNumberService.createVerificationRequestViaSMS(phoneNumberIdsList.get(i), "$acceptToken\n$rejectToken",
                     getNotExpiredTokenValidityEndDate(), random.nextInt(MAX_RANDOM_VALUE),
                     getRandomVerificationLengthBase());
-            DummySMS latestDummySMS = dummySMSSender.getLatestDummySMS();
-            Assert.assertNotNull(latestDummySMS);
+            DummySMS latestDummySMS = waitForNewDummySMS(previousDummySMS);
             String message = latestDummySMS.getMessage();
             String[] splitMessage = message.split("\n");
             PhoneVerificationResult verifyPhoneNumber = null;
@@ -645,6 +1312,55 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         Assert.assertNull(verifyPhoneNumber.getVerifiablePhoneId());
     }
 
+    private void verifiablePhoneTestCreateVerificationRequestsViaSMS() {
+        try {
+            phoneNumberService.createVerificationRequestsViaSMS(null, "", getNotExpiredTokenValidityEndDate(), 1L,
+                    getRandomVerificationLengthBase());
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.createVerificationRequestsViaSMS(Arrays.asList(phoneNumberIdsList.get(0), null), "",
+                    getNotExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.createVerificationRequestsViaSMS(phoneNumberIdsList, "",
+                    getNotExpiredTokenValidityEndDate(), 0L, getRandomVerificationLengthBase());
+            Assert.fail("Expect NonPositiveVerificationLength, but the method not throws.");
+        } catch (NonPositiveVerificationLength e) {
+            Assert.assertNotNull(e);
+        }
+
+        List<Long> phoneNumberIds = new ArrayList<Long>(phoneNumberIdsList);
+        phoneNumberIds.add(0L);
+        phoneNumberIds.add(phoneNumberIdsList.get(0));
+        DummySMS previousDummySMS = dummySMSSender.getLatestDummySMS();
+        VerificationRequestBatchResult batchResult = phoneNumberService.createVerificationRequestsViaSMS(
+                phoneNumberIds, "$acceptToken\n$rejectToken", getNotExpiredTokenValidityEndDate(), MAX_RANDOM_VALUE,
+                getRandomVerificationLengthBase());
+        Assert.assertEquals(Arrays.asList(0L), batchResult.getMissingPhoneNumberIds());
+        Assert.assertTrue(batchResult.getSuppressedPhoneNumberIds().isEmpty());
+        Assert.assertTrue(batchResult.getRateLimitedPhoneNumberIds().isEmpty());
+        Assert.assertTrue(batchResult.getUndeliveredPhoneNumberIds().isEmpty());
+
+        // the messages are delivered by parallel workers, any of them can arrive first
+        DummySMS latestDummySMS = waitForNewDummySMS(previousDummySMS);
+        String[] splitMessage = latestDummySMS.getMessage().split("\n");
+        PhoneVerificationResult verifyPhoneNumber = phoneNumberService.verifyPhoneNumber(splitMessage[0]);
+        Assert.assertNotNull(verifyPhoneNumber);
+        Assert.assertEquals(PhoneNumberConfirmationResult.SUCCESS, verifyPhoneNumber.getResult());
+        CallablePhoneNumber callablePhone = phoneNumberService
+                .getCallablePhoneNumberByVerifiableId(verifyPhoneNumber.getVerifiablePhoneId());
+        Assert.assertNotNull(callablePhone);
+        Assert.assertTrue(PHONENUMBERS.contains(callablePhone.getSubscriberNumber()));
+    }
+
     private void verifiablePhoneTestCreateVerificationsRequestErrors() {
         try {
             phoneNumberService.createVerificationRequestViaSMS(1L, null, getNotExpiredTokenValidityEndDate(), 1L,
@@ -685,6 +1401,106 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
         }
     }
 
+    private void verifiablePhoneTestMetrics() {
+        Map<String, OperationStatistics> statistics = phoneNumberServiceMetrics.getOperationStatistics();
+        OperationStatistics createStatistics = statistics.get("createVerificationRequestViaSMS");
+        Assert.assertNotNull(createStatistics);
+        Assert.assertTrue(createStatistics.getCount() > createStatistics.getErrorCount());
+        Assert.assertTrue(createStatistics.getErrorCountsByType().get("IllegalArgumentException") > 0);
+        long histogramSum = 0;
+        for (long bucketCount : createStatistics.getLatencyHistogram()) {
+            histogramSum += bucketCount;
+        }
+        Assert.assertEquals(createStatistics.getCount(), histogramSum);
+        Assert.assertEquals(phoneNumberServiceMetrics.getLatencyBucketBounds().length + 1,
+                createStatistics.getLatencyHistogram().length);
+
+        Assert.assertTrue(statistics.get("velocity.merge").getCount() > 0);
+        Assert.assertTrue(statistics.get("smsSender.sendMessage").getCount() > 0);
+        Assert.assertTrue(statistics.get("verifyPhoneNumber").getCount() > 0);
+        OperationStatistics databaseStatistics = statistics.get("createVerificationRequestViaSMS.database");
+        Assert.assertEquals(createStatistics.getCount(), databaseStatistics.getCount());
+        Assert.assertTrue(databaseStatistics.getTotalNanos() > 0);
+
+        Map<PhoneNumberConfirmationResult, Long> confirmationResultCounts = phoneNumberServiceMetrics
+                .getConfirmationResultCounts();
+        Assert.assertTrue(confirmationResultCounts.get(PhoneNumberConfirmationResult.SUCCESS) > 0);
+        Assert.assertTrue(confirmationResultCounts.get(PhoneNumberConfirmationResult.REJECTED) > 0);
+        Assert.assertTrue(confirmationResultCounts.get(PhoneNumberConfirmationResult.FAILED) > 0);
+    }
+
+    private void verifiablePhoneTestRateLimit() {
+        long limitedPhoneNumberId = phoneNumberIdsList.get(phoneNumberIdsList.size() - 1);
+        try {
+            for (int i = 0; i < 20; i++) {
+                phoneNumberService.createVerificationRequestViaSMS(limitedPhoneNumberId, "$acceptToken\n$rejectToken",
+                        getNotExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
+            }
+            Assert.fail("Expect VerificationRateLimitExceededException, but the method not throws.");
+        } catch (VerificationRateLimitExceededException e) {
+            Assert.assertNotNull(e);
+        }
+
+        VerificationRequestBatchResult batchResult = phoneNumberService.createVerificationRequestsViaSMS(
+                Arrays.asList(limitedPhoneNumberId), "$acceptToken\n$rejectToken",
+                getNotExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
+        Assert.assertEquals(Arrays.asList(limitedPhoneNumberId), batchResult.getRateLimitedPhoneNumberIds());
+        Assert.assertTrue(batchResult.getMissingPhoneNumberIds().isEmpty());
+        Assert.assertTrue(batchResult.getSuppressedPhoneNumberIds().isEmpty());
+    }
+
+    private void verifiablePhoneTestSuppressedPhoneNumbers() {
+        long suppressedPhoneNumberId = phoneNumberIdsList.get(0);
+        PhoneNumberSet suppressedPhoneNumbers = phoneNumberService.getPhoneNumberSet(Arrays.asList(
+                suppressedPhoneNumberId, 0L));
+        Assert.assertEquals(1, suppressedPhoneNumbers.size());
+        Assert.assertTrue(suppressedPhoneNumbers.contains(phoneNumberService
+                .getCallablePhoneNumber(suppressedPhoneNumberId)));
+        Assert.assertFalse(suppressedPhoneNumbers.contains(phoneNumberService
+                .getCallablePhoneNumber(phoneNumberIdsList.get(1))));
+        Assert.assertEquals(PhoneNumberSet.encode("36", "20", "1234567"), PhoneNumberSet.encode("362", "0", "1234567"));
+        Assert.assertEquals(PhoneNumberSet.NOT_ENCODABLE, PhoneNumberSet.encode("36", "20", "123456X"));
+        Assert.assertEquals(PhoneNumberSet.encode("1340", "", "7771234"), PhoneNumberSet.encode("1-340", "",
+                "777 1234"));
+        Assert.assertTrue(new PhoneNumberSet(new long[] { PhoneNumberSet.encode("1340", "", "7771234") })
+                .contains("1-340", "", "7771234"));
+        Assert.assertEquals(PhoneNumberSet.NOT_ENCODABLE, PhoneNumberSet.encode("36", "20", "1234567890123456"));
+        Assert.assertFalse(PhoneNumberSet.NOT_ENCODABLE == PhoneNumberSet.encode("36", "20", "12345678901234"));
+
+        phoneNumberService.replaceSuppressedPhoneNumbers(suppressedPhoneNumbers);
+        try {
+            try {
+                phoneNumberService.createVerificationRequestViaSMS(suppressedPhoneNumberId, "",
+                        getNotExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
+                Assert.fail("Expect SuppressedPhoneNumberException, but the method not throws.");
+            } catch (SuppressedPhoneNumberException e) {
+                Assert.assertNotNull(e);
+            }
+
+            VerificationRequestBatchResult batchResult = phoneNumberService.createVerificationRequestsViaSMS(
+                    Arrays.asList(suppressedPhoneNumberId, phoneNumberIdsList.get(1)), "$acceptToken\n$rejectToken",
+                    getNotExpiredTokenValidityEndDate(), 1L, getRandomVerificationLengthBase());
+            Assert.assertEquals(Arrays.asList(suppressedPhoneNumberId), batchResult.getSuppressedPhoneNumberIds());
+            Assert.assertTrue(batchResult.getMissingPhoneNumberIds().isEmpty());
+        } finally {
+            phoneNumberService.replaceSuppressedPhoneNumbers(PhoneNumberSet.EMPTY);
+        }
+
+        try {
+            phoneNumberService.replaceSuppressedPhoneNumbers(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+
+        try {
+            phoneNumberService.getPhoneNumberSet(null);
+            Assert.fail("Expect IllegalArgumentException, but the method not throws.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e);
+        }
+    }
+
     private void verifiablePhoneTestVerifyPhoneNumberErrors() {
         try {
             phoneNumberService.verifyPhoneNumber(null);
@@ -693,4 +1509,22 @@ public class PhoneNumberServiceTestImpl implements PhoneNumberServiceTest {
             Assert.assertNotNull(e);
         }
     }
+
+    private DummySMS waitForNewDummySMS(final DummySMS previousDummySMS) {
+        long deadline = System.currentTimeMillis() + SMS_DELIVERY_TIMEOUT;
+        DummySMS latestDummySMS = dummySMSSender.getLatestDummySMS();
+        while ((latestDummySMS == null) || (latestDummySMS == previousDummySMS)) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Expect a new SMS, but the SMS is not delivered.");
+            }
+            try {
+                Thread.sleep(SMS_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            latestDummySMS = dummySMSSender.getLatestDummySMS();
+        }
+        return latestDummySMS;
+    }
 }